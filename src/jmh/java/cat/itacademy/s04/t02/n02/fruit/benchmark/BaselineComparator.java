@@ -0,0 +1,75 @@
+package cat.itacademy.s04.t02.n02.fruit.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+public final class BaselineComparator {
+
+    private BaselineComparator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path baselinePath = Path.of(args[0]);
+        Path resultPath = Path.of(args[1]);
+        double threshold = Double.parseDouble(args[2]);
+        boolean failOnRegression = Boolean.parseBoolean(args[3]);
+
+        if (!Files.exists(resultPath)) {
+            System.out.println("No benchmark results at " + resultPath);
+            return;
+        }
+        if (!Files.exists(baselinePath)) {
+            System.out.println("No baseline at " + baselinePath + "; copy " + resultPath + " there to create one");
+            return;
+        }
+
+        Map<String, Score> baseline = read(baselinePath);
+        Map<String, Score> current = read(resultPath);
+
+        int regressions = 0;
+        System.out.printf("%n%-70s %14s %14s %9s%n", "benchmark", "baseline", "current", "change");
+        for (Map.Entry<String, Score> entry : new TreeMap<>(current).entrySet()) {
+            Score now = entry.getValue();
+            Score before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-70s %14s %14.3f %9s%n", entry.getKey(), "-", now.value(), "new");
+                continue;
+            }
+            double change = (now.value() - before.value()) / before.value();
+            boolean regressed = now.higherIsBetter() ? change < -threshold : change > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%%%s%n", entry.getKey(), before.value(), now.value(),
+                    change * 100, regressed ? "  REGRESSION" : "");
+        }
+        System.out.printf("%d regression(s) beyond %.0f%%%n", regressions, threshold * 100);
+
+        if (failOnRegression && regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Score> read(Path path) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(path.toFile())) {
+            StringBuilder key = new StringBuilder(run.path("benchmark").asText());
+            run.path("params").fields().forEachRemaining(param ->
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText()));
+            JsonNode metric = run.path("primaryMetric");
+            boolean higherIsBetter = "thrpt".equals(run.path("mode").asText());
+            scores.put(key.toString(), new Score(metric.path("score").asDouble(), higherIsBetter));
+        }
+        return scores;
+    }
+
+    private record Score(double value, boolean higherIsBetter) {
+    }
+}
@@ -0,0 +1,156 @@
+package cat.itacademy.s04.t02.n02.fruit.benchmark;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Measures time-to-first-request of the packaged application: each JVM configuration starts the jar
+ * {@code runs} times and is timed until {@code GET /fruits?limit=1} answers 200. The database is taken from the
+ * usual {@code SPRING_DATASOURCE_*} environment variables.
+ */
+public final class StartupBenchmark {
+
+    private static final Duration READY_TIMEOUT = Duration.ofMinutes(2);
+    private static final String JAVA = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path jar = Path.of(args[0]);
+        Path workDir = Path.of(args[1]);
+        int runs = Integer.parseInt(args[2]);
+
+        if (!Files.exists(jar)) {
+            System.out.println("No application jar at " + jar + "; run the package phase first");
+            return;
+        }
+        boolean aot = hasAotClasses(jar);
+        Path application = extract(jar, workDir.resolve("application"));
+        Path archive = workDir.resolve("application.jsa");
+        train(application, archive, aot, workDir.resolve("training.log"));
+
+        Map<String, List<String>> variants = new LinkedHashMap<>();
+        variants.put("jit", List.of());
+        variants.put("jit+lazy", List.of("-Dspring.main.lazy-initialization=true"));
+        variants.put("jit+cds", List.of("-XX:SharedArchiveFile=" + archive));
+        if (aot) {
+            variants.put("aot", List.of("-Dspring.aot.enabled=true"));
+            variants.put("aot+cds", List.of("-Dspring.aot.enabled=true", "-XX:SharedArchiveFile=" + archive));
+        } else {
+            System.out.println("Jar has no AOT classes; build it with -Pfast-start to measure the aot variants");
+        }
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        System.out.printf("%n%-12s %10s %10s %10s%n", "variant", "min ms", "median ms", "max ms");
+        for (Map.Entry<String, List<String>> variant : variants.entrySet()) {
+            List<Long> times = new ArrayList<>();
+            for (int run = 0; run < runs; run++) {
+                long millis = timeToFirstRequest(application, variant.getValue(), client, workDir.resolve(variant.getKey() + ".log"));
+                if (millis < 0) {
+                    break;
+                }
+                times.add(millis);
+            }
+            if (times.size() < runs) {
+                System.out.printf("%-12s %10s %10s %10s  (see %s.log)%n", variant.getKey(), "failed", "-", "-", variant.getKey());
+                continue;
+            }
+            times.sort(null);
+            System.out.printf("%-12s %10d %10d %10d%n", variant.getKey(), times.get(0), times.get(times.size() / 2),
+                    times.get(times.size() - 1));
+        }
+    }
+
+    private static boolean hasAotClasses(Path jar) throws IOException {
+        try (JarFile file = new JarFile(jar.toFile())) {
+            return file.stream().anyMatch(entry -> entry.getName().endsWith("__ApplicationContextInitializer.class"));
+        }
+    }
+
+    private static Path extract(Path jar, Path destination) throws IOException, InterruptedException {
+        run(List.of(JAVA, "-Djarmode=tools", "-jar", jar.toString(), "extract", "--force",
+                "--destination", destination.toString()), destination.resolveSibling("extract.log"));
+        try (Stream<Path> files = Files.list(destination)) {
+            return files.filter(file -> file.toString().endsWith(".jar")).findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No application jar in " + destination));
+        }
+    }
+
+    /**
+     * Same training run as the Dockerfile: the context is refreshed without touching the database and the JVM
+     * writes the loaded classes to the archive on exit.
+     */
+    private static void train(Path application, Path archive, boolean aot, Path log) throws IOException, InterruptedException {
+        Files.deleteIfExists(archive);
+        List<String> command = new ArrayList<>(List.of(JAVA, "-XX:ArchiveClassesAtExit=" + archive,
+                "-Dspring.context.exit=onRefresh",
+                "-Dfruits.schema.migrate-on-start=false",
+                "-Dspring.flyway.locations=classpath:db/migration/common",
+                "-Dspring.jpa.hibernate.ddl-auto=none",
+                "-Dspring.jpa.properties.hibernate.boot.allow_jdbc_metadata_access=false"));
+        if (aot) {
+            command.add("-Dspring.aot.enabled=true");
+        }
+        command.addAll(List.of("-jar", application.toString()));
+        run(command, log);
+    }
+
+    private static long timeToFirstRequest(Path application, List<String> jvmArgs, HttpClient client, Path log)
+            throws IOException, InterruptedException {
+        int port = freePort();
+        List<String> command = new ArrayList<>(List.of(JAVA));
+        command.addAll(jvmArgs);
+        command.addAll(List.of("-Dserver.port=" + port, "-jar", application.toString()));
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/fruits?limit=1")).build();
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        try {
+            while (process.isAlive() && System.nanoTime() - start < READY_TIMEOUT.toNanos()) {
+                try {
+                    if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                } catch (IOException notListeningYet) {
+                    // keep polling until the server is up
+                }
+                Thread.sleep(10);
+            }
+            return -1;
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static void run(List<String> command, Path log) throws IOException, InterruptedException {
+        Files.createDirectories(log.getParent());
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException(String.join(" ", command) + " failed; see " + log);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
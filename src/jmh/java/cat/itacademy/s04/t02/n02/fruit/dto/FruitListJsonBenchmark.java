@@ -0,0 +1,42 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FruitListJsonBenchmark {
+
+    @Param({"1", "100", "1000", "10000"})
+    public int size;
+
+    private ObjectMapper objectMapper;
+    private List<FruitResponseDTO> fruits;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        fruits = IntStream.range(0, size)
+                .mapToObj(i -> new FruitResponseDTO((long) i, "Fruit" + i, i % 50 + 1,
+                        (long) (i % 20), "Supplier" + (i % 20), "Spain"))
+                .toList();
+    }
+
+    @Benchmark
+    public byte[] encodeList() throws Exception {
+        return objectMapper.writeValueAsBytes(fruits);
+    }
+}
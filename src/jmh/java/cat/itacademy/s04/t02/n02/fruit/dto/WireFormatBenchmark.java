@@ -0,0 +1,84 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufMapper;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoding cost of GET /fruits per wire format. The payload size and its gzipped size are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WireFormatBenchmark {
+
+    @Param({"json", "json-normalized", "smile", "cbor", "protobuf"})
+    public String format;
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private ObjectWriter writer;
+    private Object payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<FruitResponseDTO> fruits = IntStream.range(0, size)
+                .mapToObj(i -> new FruitResponseDTO((long) i, "Fruit" + i, i % 50 + 1,
+                        (long) (i % 20), "Supplier" + (i % 20), "Spain"))
+                .toList();
+        payload = fruits;
+        switch (format) {
+            case "json" -> writer = Jackson2ObjectMapperBuilder.json().build().writer();
+            case "json-normalized" -> {
+                writer = Jackson2ObjectMapperBuilder.json().build().writer();
+                payload = FruitCatalogDTO.of(fruits);
+            }
+            case "smile" -> writer = Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build().writer();
+            case "cbor" -> writer = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build().writer();
+            case "protobuf" -> {
+                try (InputStream schema = new ClassPathResource("proto/catalog.proto").getInputStream()) {
+                    writer = new ProtobufMapper().writer(ProtobufSchemaLoader.std.load(schema).withRootType("FruitList"));
+                }
+                payload = Map.of("fruits", fruits);
+            }
+            default -> throw new IllegalArgumentException("Unknown format " + format);
+        }
+        System.out.printf("%n%s x %d: %d bytes, %d gzipped%n", format, size, encode().length, encodeGzipped().length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return writer.writeValueAsBytes(payload);
+    }
+
+    @Benchmark
+    public byte[] encodeGzipped() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            writer.writeValue(gzip, payload);
+        }
+        return bytes.toByteArray();
+    }
+}
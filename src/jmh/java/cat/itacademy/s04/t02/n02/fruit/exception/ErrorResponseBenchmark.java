@@ -0,0 +1,34 @@
+package cat.itacademy.s04.t02.n02.fruit.exception;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ErrorResponseBenchmark {
+
+    private GlobalExceptionHandler handler;
+    private MockHttpServletRequest request;
+
+    @Setup
+    public void setUp() {
+        handler = new GlobalExceptionHandler();
+        request = new MockHttpServletRequest("GET", "/fruits/999");
+    }
+
+    @Benchmark
+    public ResponseEntity<ErrorResponse> buildResponse() {
+        return handler.buildResponse(HttpStatus.NOT_FOUND, "Fruit not found: 999", request);
+    }
+}
@@ -0,0 +1,39 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FruitMappingBenchmark {
+
+    private FruitServiceImpl fruitService;
+    private Fruit fruit;
+
+    @Setup
+    public void setUp() {
+        fruitService = new FruitServiceImpl(null, null, null, null, null, null, null);
+        fruit = new Fruit(42L, "Banana", 5, new Supplier(7L, "FreshFarm", "Spain"));
+    }
+
+    @Benchmark
+    public FruitResponseDTO mapToDto() {
+        return fruitService.mapToDto(fruit);
+    }
+
+    @Benchmark
+    public FruitResponseDTO projectionConstructor() {
+        return new FruitResponseDTO(42L, "Banana", 5, 7L, "FreshFarm", "Spain");
+    }
+}
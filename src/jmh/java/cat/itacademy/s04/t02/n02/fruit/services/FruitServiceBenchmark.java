@@ -0,0 +1,88 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.FruitApiMySqlApplication;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitPageDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import cat.itacademy.s04.t02.n02.fruit.repository.SupplierRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FruitServiceBenchmark {
+
+    private static final int SUPPLIERS = 50;
+    private static final int FRUITS = 10_000;
+
+    private ConfigurableApplicationContext context;
+    private FruitService fruitService;
+    private List<Long> fruitIds;
+    private List<Long> supplierIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(FruitApiMySqlApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:benchmark;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                        "logging.level.root=WARN")
+                .run();
+        fruitService = context.getBean(FruitService.class);
+
+        SupplierRepository supplierRepository = context.getBean(SupplierRepository.class);
+        FruitRepository fruitRepository = context.getBean(FruitRepository.class);
+        List<Supplier> suppliers = supplierRepository.saveAll(IntStream.range(0, SUPPLIERS)
+                .mapToObj(i -> new Supplier(null, "Supplier" + i, i % 2 == 0 ? "Spain" : "Italy"))
+                .toList());
+        List<Fruit> fruits = fruitRepository.saveAll(IntStream.range(0, FRUITS)
+                .mapToObj(i -> new Fruit(null, "Fruit" + i, i % 50 + 1, suppliers.get(i % SUPPLIERS)))
+                .toList());
+        supplierIds = suppliers.stream().map(Supplier::getId).toList();
+        fruitIds = fruits.stream().map(Fruit::getId).toList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public FruitResponseDTO getFruitById() {
+        return fruitService.getFruitById(fruitIds.get(ThreadLocalRandom.current().nextInt(fruitIds.size())));
+    }
+
+    @Benchmark
+    public FruitPageDTO getFruitsPage() {
+        return fruitService.getFruitsPage(null, 100);
+    }
+
+    @Benchmark
+    public List<FruitResponseDTO> getFruitsBySupplierId() {
+        return fruitService.getFruitsBySupplierId(supplierIds.get(ThreadLocalRandom.current().nextInt(SUPPLIERS)));
+    }
+
+    @Benchmark
+    public FruitResponseDTO addFruit() {
+        Long supplierId = supplierIds.get(ThreadLocalRandom.current().nextInt(SUPPLIERS));
+        return fruitService.addFruit(new FruitRequestDTO("Benchmark", 3, supplierId));
+    }
+}
@@ -3,7 +3,8 @@ package cat.itacademy.s04.t02.n02.fruit;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
-@SpringBootApplication
+// R2DBC is only on the classpath with -Preactive, where it belongs to ReactiveFruitApplication
+@SpringBootApplication(excludeName = "org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration")
 public class FruitApiMySqlApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,12 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String SUPPLIERS_BY_ID = "suppliersById";
+    public static final String SUPPLIERS_BY_NAME = "suppliersByName";
+}
@@ -0,0 +1,29 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import cat.itacademy.s04.t02.n02.fruit.filters.ConcurrencyLimitFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(name = "fruits.concurrency.limit-enabled", havingValue = "true")
+public class ConcurrencyLimitConfig {
+
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            @Value("${fruits.concurrency.max-in-flight}") int maxInFlight,
+            @Value("${fruits.concurrency.acquire-timeout:2s}") Duration acquireTimeout,
+            ObjectMapper objectMapper) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration =
+                new FilterRegistrationBean<>(new ConcurrencyLimitFilter(maxInFlight, acquireTimeout, objectMapper));
+        registration.addUrlPatterns("/fruits/*", "/fruits", "/suppliers/*", "/suppliers", "/changes");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
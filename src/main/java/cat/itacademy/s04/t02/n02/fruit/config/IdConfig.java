@@ -0,0 +1,35 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import cat.itacademy.s04.t02.n02.fruit.model.SnowflakeIdGenerator;
+import cat.itacademy.s04.t02.n02.fruit.model.SnowflakeIds;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Sharded catalogs take their ids from {@link SnowflakeIds}, which are only unique while every instance has its own
+ * node id, so startup fails instead of guessing one. Unsharded catalogs use identity columns.
+ */
+@Configuration
+public class IdConfig {
+
+    private final boolean sharded;
+
+    public IdConfig(@Value("${fruits.ids.node-id:}") Integer nodeId,
+                    @Value("${fruits.sharding.enabled:false}") boolean sharded) {
+        if (sharded && nodeId == null) {
+            throw new IllegalStateException(
+                    "fruits.ids.node-id (FRUITS_NODE_ID) must be set, to a value unique to each instance, when sharding is enabled");
+        }
+        if (nodeId != null) {
+            SnowflakeIds.configure(nodeId);
+        }
+        this.sharded = sharded;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer snowflakeIdsCustomizer() {
+        return properties -> properties.put(SnowflakeIdGenerator.ENABLED, sharded);
+    }
+}
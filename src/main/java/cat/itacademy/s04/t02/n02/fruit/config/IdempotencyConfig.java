@@ -0,0 +1,49 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import cat.itacademy.s04.t02.n02.fruit.filters.IdempotencyFilter;
+import cat.itacademy.s04.t02.n02.fruit.filters.IdempotencyStore;
+import cat.itacademy.s04.t02.n02.fruit.filters.InMemoryIdempotencyStore;
+import cat.itacademy.s04.t02.n02.fruit.filters.JdbcIdempotencyStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Locale;
+
+@Configuration
+public class IdempotencyConfig {
+
+    @Bean
+    public IdempotencyStore idempotencyStore(@Value("${fruits.idempotency.store:memory}") String store,
+                                             @Value("${fruits.idempotency.ttl:PT24H}") Duration ttl,
+                                             @Value("${fruits.idempotency.max-bytes:67108864}") long maxBytes,
+                                             ObjectProvider<JdbcTemplate> jdbcTemplate) {
+        InMemoryIdempotencyStore memory = new InMemoryIdempotencyStore(maxBytes, ttl);
+        return switch (store.toLowerCase(Locale.ROOT)) {
+            case "memory" -> memory;
+            case "jdbc" -> new JdbcIdempotencyStore(jdbcTemplate.getObject(), memory, ttl, Clock.systemUTC());
+            default -> throw new IllegalArgumentException("Unknown idempotency store: " + store);
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilter(
+            IdempotencyStore idempotencyStore,
+            @Value("${fruits.idempotency.wait-timeout:PT10S}") Duration waitTimeout,
+            @Value("${fruits.idempotency.lease:PT1M}") Duration lease,
+            ObjectMapper objectMapper) {
+        FilterRegistrationBean<IdempotencyFilter> registration = new FilterRegistrationBean<>(
+                new IdempotencyFilter(idempotencyStore, waitTimeout, lease, objectMapper));
+        registration.addUrlPatterns("/fruits/*", "/fruits", "/suppliers/*", "/suppliers");
+        // ahead of the concurrency limit so replays and waiting duplicates do not hold a permit
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 5);
+        return registration;
+    }
+}
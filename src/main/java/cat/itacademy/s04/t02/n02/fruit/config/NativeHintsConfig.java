@@ -0,0 +1,72 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.CatalogChangeDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitBulkItemResultDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitCatalogDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitBulkResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitLookupDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitPageDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitStatsGroupDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitWeightDeltaDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.NormalizedFruitDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierLookupDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.VersionedIdDTO;
+import cat.itacademy.s04.t02.n02.fruit.exception.ErrorResponse;
+import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+import cat.itacademy.s04.t02.n02.fruit.model.SnowflakeIdGenerator;
+import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+/**
+ * Reachability metadata for the native image. Controller signatures are covered by Spring AOT already; these are
+ * the types that are also bound outside of them (export rows, filter error bodies, NDJSON bulk lines, SSE change
+ * events, protobuf messages) and the reflection and resources Hibernate, Flyway and the protobuf schema need.
+ */
+@Configuration
+@ImportRuntimeHints(NativeHintsConfig.FruitRuntimeHints.class)
+@RegisterReflectionForBinding({
+        ErrorResponse.class,
+        FruitRequestDTO.class, FruitResponseDTO.class, FruitPageDTO.class, FruitLookupDTO.class,
+        FruitBulkItemResultDTO.class, FruitBulkResponseDTO.class, FruitWeightDeltaDTO.class,
+        FruitStatsDTO.class, FruitStatsGroupDTO.class,
+        SupplierRequestDTO.class, SupplierResponseDTO.class, SupplierLookupDTO.class,
+        CatalogChangeDTO.class, FruitCatalogDTO.class, NormalizedFruitDTO.class
+})
+public class NativeHintsConfig {
+
+    static class FruitRuntimeHints implements RuntimeHintsRegistrar {
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            // Entities are instantiated and populated field by field; Lombok accessors are plain compiled methods
+            hints.reflection().registerType(Fruit.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                    MemberCategory.DECLARED_FIELDS, MemberCategory.INVOKE_PUBLIC_METHODS);
+            hints.reflection().registerType(Supplier.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                    MemberCategory.DECLARED_FIELDS, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+            // Instantiated by Hibernate from @SnowflakeId
+            hints.reflection().registerType(SnowflakeIdGenerator.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+
+            // JPQL "select new ..." constructor expressions
+            hints.reflection().registerType(FruitResponseDTO.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+            hints.reflection().registerType(FruitStatsGroupDTO.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+            hints.reflection().registerType(CollectionVersionDTO.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+            hints.reflection().registerType(VersionedIdDTO.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+
+            // Spring Boot only registers the default db/migration/* location
+            hints.resources().registerPattern("db/migration/*/*.sql");
+            hints.resources().registerPattern(ProtobufCatalogHttpMessageConverter.SCHEMA_LOCATION);
+        }
+    }
+}
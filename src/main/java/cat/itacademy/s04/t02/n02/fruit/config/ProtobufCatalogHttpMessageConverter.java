@@ -0,0 +1,122 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitCatalogDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.exception.ErrorResponse;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufMapper;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the fruit and supplier responses as {@code application/x-protobuf}, following the messages in
+ * {@code proto/catalog.proto}. Protobuf has no top-level lists, so lists are sent as their {@code ...List} message.
+ * Requests are still read as JSON, CBOR or Smile.
+ */
+public class ProtobufCatalogHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final MediaType APPLICATION_PROTOBUF = new MediaType("application", "x-protobuf");
+    static final String SCHEMA_LOCATION = "proto/catalog.proto";
+
+    private final Map<Class<?>, ObjectWriter> messageWriters;
+    private final Map<Class<?>, ListMessage> listWriters;
+
+    public ProtobufCatalogHttpMessageConverter() {
+        super(APPLICATION_PROTOBUF);
+        ProtobufMapper mapper = new ProtobufMapper();
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        mapper.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        ProtobufSchema schema = loadSchema();
+
+        this.messageWriters = Map.of(
+                FruitResponseDTO.class, mapper.writer(schema.withRootType("Fruit")),
+                SupplierResponseDTO.class, mapper.writer(schema.withRootType("Supplier")),
+                FruitCatalogDTO.class, mapper.writer(schema.withRootType("FruitCatalog")),
+                ErrorResponse.class, mapper.writer(schema.withRootType("Error")));
+        this.listWriters = Map.of(
+                FruitResponseDTO.class, new ListMessage("fruits", mapper.writer(schema.withRootType("FruitList"))),
+                SupplierResponseDTO.class,
+                new ListMessage("suppliers", mapper.writer(schema.withRootType("SupplierList"))));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return messageWriters.containsKey(clazz) || List.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (!canWrite(mediaType)) {
+            return false;
+        }
+        if (List.class.isAssignableFrom(clazz)) {
+            return listMessage(type) != null;
+        }
+        return messageWriters.containsKey(clazz);
+    }
+
+    @Override
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        if (value instanceof List<?> list) {
+            ListMessage message = listMessage(type);
+            message.writer().writeValue(outputMessage.getBody(), Map.of(message.field(), list));
+        } else {
+            messageWriters.get(value.getClass()).writeValue(outputMessage.getBody(), value);
+        }
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Protobuf request bodies are not supported", inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Protobuf request bodies are not supported", inputMessage);
+    }
+
+    private ListMessage listMessage(Type type) {
+        Class<?> element = type == null ? null : ResolvableType.forType(type).asCollection().resolveGeneric(0);
+        return element == null ? null : listWriters.get(element);
+    }
+
+    private static ProtobufSchema loadSchema() {
+        try (InputStream schema = new ClassPathResource(SCHEMA_LOCATION).getInputStream()) {
+            return ProtobufSchemaLoader.std.load(schema);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load " + SCHEMA_LOCATION, e);
+        }
+    }
+
+    private record ListMessage(String field, ObjectWriter writer) {
+    }
+}
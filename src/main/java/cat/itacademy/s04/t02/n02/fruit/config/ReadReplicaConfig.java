@@ -0,0 +1,82 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import cat.itacademy.s04.t02.n02.fruit.datasource.ReplicaBalancing;
+import cat.itacademy.s04.t02.n02.fruit.datasource.ReplicaPool;
+import cat.itacademy.s04.t02.n02.fruit.datasource.ReplicaRoutingDataSource;
+import cat.itacademy.s04.t02.n02.fruit.filters.ReadYourWritesFilter;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@ConditionalOnProperty(name = "fruits.datasource.read-replicas-enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaPool replicaPool(DataSourceProperties properties,
+                                   @Value("${fruits.datasource.replica-urls}") List<String> urls,
+                                   @Value("${fruits.datasource.replica-username:}") String username,
+                                   @Value("${fruits.datasource.replica-password:}") String password,
+                                   @Value("${fruits.datasource.replica-pool-size:${spring.datasource.hikari.maximum-pool-size:10}}") int poolSize,
+                                   @Value("${fruits.datasource.balancing:round_robin}") String balancing,
+                                   @Value("${fruits.datasource.max-replica-lag:PT5S}") Duration maxLag,
+                                   @Value("${fruits.datasource.lag-query:SHOW REPLICA STATUS}") String lagQuery,
+                                   ObjectProvider<MeterRegistry> meterRegistry) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + (i + 1));
+            replica.setJdbcUrl(urls.get(i).trim());
+            replica.setUsername(username.isBlank() ? properties.determineUsername() : username);
+            replica.setPassword(password.isBlank() ? properties.determinePassword() : password);
+            replica.setMaximumPoolSize(poolSize);
+            replica.setReadOnly(true);
+            meterRegistry.ifAvailable(registry ->
+                    replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+            replicas.put(replica.getPoolName(), replica);
+        }
+        return new ReplicaPool(replicas, ReplicaBalancing.valueOf(balancing.trim().toUpperCase()), maxLag, lagQuery);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaPool replicaPool) {
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primaryDataSource, replicaPool));
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+            @Value("${fruits.datasource.read-your-writes-window:PT5S}") Duration window) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(window, Clock.systemUTC()));
+        registration.addUrlPatterns("/fruits/*", "/fruits", "/suppliers/*", "/suppliers");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+        return registration;
+    }
+}
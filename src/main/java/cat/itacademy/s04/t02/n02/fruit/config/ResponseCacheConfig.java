@@ -0,0 +1,52 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import cat.itacademy.s04.t02.n02.fruit.controllers.ETags;
+import cat.itacademy.s04.t02.n02.fruit.filters.ResponseBodyCache;
+import cat.itacademy.s04.t02.n02.fruit.filters.ResponseBodyCacheFilter;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitService;
+import cat.itacademy.s04.t02.n02.fruit.services.SupplierService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Configuration
+@ConditionalOnProperty(name = "fruits.response-cache.enabled", havingValue = "true", matchIfMissing = true)
+public class ResponseCacheConfig {
+
+    @Bean
+    public ResponseBodyCache responseBodyCache(
+            @Value("${fruits.response-cache.max-bytes:67108864}") long maxBytes,
+            @Value("${fruits.response-cache.ttl:PT1M}") Duration ttl,
+            @Value("${server.compression.enabled:false}") boolean gzip,
+            @Value("${server.compression.min-response-size:2KB}") DataSize gzipMinSize,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        ResponseBodyCache cache = new ResponseBodyCache(maxBytes, ttl,
+                gzip ? gzipMinSize.toBytes() : Long.MAX_VALUE);
+        meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, cache.entries(), "responseBodies"));
+        return cache;
+    }
+
+    @Bean
+    public FilterRegistrationBean<ResponseBodyCacheFilter> responseBodyCacheFilter(
+            ResponseBodyCache responseBodyCache, SupplierService supplierService, FruitService fruitService) {
+        ResponseBodyCacheFilter filter = new ResponseBodyCacheFilter(responseBodyCache,
+                key -> key.collection().equals(ResponseBodyCache.SUPPLIERS)
+                        ? ETags.suppliers(supplierService.getSuppliersVersion())
+                        : ETags.fruitsOfSupplier(key.supplierId(),
+                                fruitService.getFruitsVersionBySupplierId(key.supplierId())));
+        FilterRegistrationBean<ResponseBodyCacheFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/fruits", "/suppliers");
+        // ahead of the concurrency limit, since hits never touch the database
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 7);
+        return registration;
+    }
+}
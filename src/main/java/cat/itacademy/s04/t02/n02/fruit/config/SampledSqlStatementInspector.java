@@ -0,0 +1,29 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+public class SampledSqlStatementInspector implements StatementInspector {
+
+    private static final Logger log = LoggerFactory.getLogger("cat.itacademy.s04.t02.n02.fruit.sql");
+
+    private final double sampleRate;
+
+    public SampledSqlStatementInspector(double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("SQL log sample rate must be between 0 and 1");
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        if (sampleRate > 0 && log.isDebugEnabled() && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            log.debug(sql);
+        }
+        return sql;
+    }
+}
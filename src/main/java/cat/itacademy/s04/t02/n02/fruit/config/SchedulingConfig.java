@@ -0,0 +1,9 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
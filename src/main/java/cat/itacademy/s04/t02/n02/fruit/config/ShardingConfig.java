@@ -0,0 +1,81 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardDataSources;
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardRouter;
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+public class ShardingConfig {
+
+    @Bean
+    public ShardRouter shardRouter(ObjectProvider<ShardDataSources> shardDataSources,
+                                   PlatformTransactionManager transactionManager) {
+        ShardDataSources shards = shardDataSources.getIfAvailable();
+        return new ShardRouter(shards == null ? 1 : shards.dataSources().size() + 1, transactionManager);
+    }
+
+    /**
+     * The primary database is shard 0 and keeps everything but the fruits of the suppliers hashed to another shard.
+     * Its bean names match {@link ReadReplicaConfig}'s, so the context refuses to start with both enabled.
+     */
+    @Configuration
+    @ConditionalOnProperty(name = "fruits.sharding.enabled", havingValue = "true")
+    static class ShardedDataSourceConfig {
+
+        @Bean
+        @FlywayDataSource
+        @ConfigurationProperties("spring.datasource.hikari")
+        public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+            return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        }
+
+        @Bean
+        public ShardDataSources shardDataSources(DataSourceProperties properties,
+                                                 @Value("${fruits.sharding.shard-urls}") List<String> urls,
+                                                 @Value("${fruits.sharding.shard-username:}") String username,
+                                                 @Value("${fruits.sharding.shard-password:}") String password,
+                                                 @Value("${fruits.sharding.shard-pool-size:${spring.datasource.hikari.maximum-pool-size:10}}") int poolSize,
+                                                 ObjectProvider<MeterRegistry> meterRegistry) {
+            List<DataSource> shards = new ArrayList<>();
+            for (int i = 0; i < urls.size(); i++) {
+                HikariDataSource shard = new HikariDataSource();
+                shard.setPoolName("shard-" + (i + 1));
+                shard.setJdbcUrl(urls.get(i).trim());
+                shard.setUsername(username.isBlank() ? properties.determineUsername() : username);
+                shard.setPassword(password.isBlank() ? properties.determinePassword() : password);
+                shard.setMaximumPoolSize(poolSize);
+                meterRegistry.ifAvailable(registry ->
+                        shard.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+                shards.add(shard);
+            }
+            return new ShardDataSources(List.copyOf(shards));
+        }
+
+        @Bean
+        @Primary
+        public DataSource dataSource(HikariDataSource primaryDataSource, ShardDataSources shardDataSources) {
+            List<DataSource> shards = new ArrayList<>();
+            shards.add(primaryDataSource);
+            shards.addAll(shardDataSources.dataSources());
+            return new LazyConnectionDataSourceProxy(new ShardRoutingDataSource(shards));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardDataSources;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+
+@Configuration
+public class StartupConfig {
+
+    /**
+     * Spring AOT fixes {@code spring.flyway.enabled} at build time, so the class data sharing training run of the
+     * image build, which has no database, turns migrations off through this property instead. Extra shards get
+     * the same migrations as the primary database.
+     */
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy(
+            @Value("${fruits.schema.migrate-on-start:true}") boolean migrateOnStart,
+            ObjectProvider<ShardDataSources> shardDataSources) {
+        return flyway -> {
+            if (migrateOnStart) {
+                flyway.migrate();
+                shardDataSources.ifAvailable(shards -> shards.dataSources().forEach(shard ->
+                        Flyway.configure().configuration(flyway.getConfiguration()).dataSource(shard).load().migrate()));
+            }
+        };
+    }
+
+    /**
+     * Keeps beans with scheduled jobs eager under {@code spring.main.lazy-initialization}; otherwise their jobs
+     * would not start until a request first touched them.
+     */
+    @Bean
+    static LazyInitializationExcludeFilter scheduledBeansExcludeFilter() {
+        return (beanName, beanDefinition, beanType) -> beanType != null
+                && !MethodIntrospector.selectMethods(beanType, (MethodIntrospector.MetadataLookup<Scheduled>) method ->
+                        AnnotatedElementUtils.findMergedAnnotation(method, Scheduled.class)).isEmpty();
+    }
+}
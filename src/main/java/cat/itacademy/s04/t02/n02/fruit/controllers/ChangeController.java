@@ -0,0 +1,34 @@
+package cat.itacademy.s04.t02.n02.fruit.controllers;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.CatalogChangesDTO;
+import cat.itacademy.s04.t02.n02.fruit.services.ChangeFeedService;
+import cat.itacademy.s04.t02.n02.fruit.services.ChangeStreamer;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/changes")
+public class ChangeController {
+
+    private final ChangeFeedService changeFeedService;
+    private final ChangeStreamer changeStreamer;
+
+    public ChangeController(ChangeFeedService changeFeedService, ChangeStreamer changeStreamer) {
+        this.changeFeedService = changeFeedService;
+        this.changeStreamer = changeStreamer;
+    }
+
+    @GetMapping
+    public ResponseEntity<CatalogChangesDTO> getChanges(@RequestParam(required = false) String since,
+                                                        @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(changeFeedService.getChanges(since, limit));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(required = false) String since,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return changeStreamer.subscribe(lastEventId != null ? lastEventId : since);
+    }
+}
@@ -0,0 +1,46 @@
+package cat.itacademy.s04.t02.n02.fruit.controllers;
+
+public final class ETags {
+
+    private ETags() {
+    }
+
+    static String of(Long id, long version) {
+        return "\"" + id + "-" + version + "\"";
+    }
+
+    public static String suppliers(String version) {
+        return ofCollection("suppliers", version);
+    }
+
+    public static String fruitsOfSupplier(Long supplierId, String version) {
+        return ofCollection("fruits?supplierId=" + supplierId, version);
+    }
+
+    static String fruitsPage(String after, Integer limit, String version) {
+        return ofCollection("fruits?after=" + after + "&limit=" + limit, version);
+    }
+
+    /**
+     * Weak, since a collection is also served as CBOR, Smile, protobuf or gzip, and Tomcat only compresses
+     * responses whose ETag is weak. The query is part of the tag, so every filter and page has its own.
+     */
+    private static String ofCollection(String query, String version) {
+        return "W/\"" + Integer.toUnsignedString(query.hashCode(), 36) + "-" + version + "\"";
+    }
+
+    static Long expectedVersion(Long id, String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String prefix = "\"" + id + "-";
+        String tag = ifMatch.trim();
+        if (tag.startsWith(prefix) && tag.endsWith("\"")) {
+            try {
+                return Long.parseLong(tag.substring(prefix.length(), tag.length() - 1));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return -1L;
+    }
+}
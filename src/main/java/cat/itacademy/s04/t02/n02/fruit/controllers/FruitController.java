@@ -1,23 +1,65 @@
 package cat.itacademy.s04.t02.n02.fruit.controllers;
 
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitBulkResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitCatalogDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitLookupDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitPageDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitWeightDeltaDTO;
+import cat.itacademy.s04.t02.n02.fruit.services.CatalogSearchService;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitBulkService;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitExportFormat;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitExportService;
 import cat.itacademy.s04.t02.n02.fruit.services.FruitService;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitStatsService;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitWeightService;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
 import java.util.List;
 
 @RestController
 @RequestMapping("/fruits")
 public class FruitController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final FruitService fruitService;
+    private final FruitBulkService fruitBulkService;
+    private final FruitExportService fruitExportService;
+    private final FruitStatsService fruitStatsService;
+    private final CatalogSearchService catalogSearchService;
+    private final FruitWeightService fruitWeightService;
+    private final ObjectMapper objectMapper;
 
-    public FruitController(FruitService fruitService) {
+    public FruitController(FruitService fruitService,
+                           FruitBulkService fruitBulkService,
+                           FruitExportService fruitExportService,
+                           FruitStatsService fruitStatsService,
+                           CatalogSearchService catalogSearchService,
+                           FruitWeightService fruitWeightService,
+                           ObjectMapper objectMapper) {
         this.fruitService = fruitService;
+        this.fruitBulkService = fruitBulkService;
+        this.fruitExportService = fruitExportService;
+        this.fruitStatsService = fruitStatsService;
+        this.catalogSearchService = catalogSearchService;
+        this.fruitWeightService = fruitWeightService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
@@ -26,22 +68,106 @@ public class FruitController {
         return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<FruitBulkResponseDTO> createFruits(@RequestBody List<FruitRequestDTO> requests) {
+        return ResponseEntity.ok(fruitBulkService.addFruits(requests));
+    }
+
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<FruitBulkResponseDTO> createFruitsFromNdjson(InputStream body) {
+        try (MappingIterator<FruitRequestDTO> lines = objectMapper.readerFor(FruitRequestDTO.class).readValues(body)) {
+            return ResponseEntity.ok(fruitBulkService.addFruits(ndjsonLines(lines)));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid NDJSON payload: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportFruits(@RequestParam(defaultValue = "ndjson") String format) {
+        FruitExportFormat exportFormat = FruitExportFormat.from(format);
+        StreamingResponseBody body = out -> fruitExportService.exportFruits(exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"fruits." + exportFormat.name().toLowerCase() + "\"")
+                .body(body);
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<FruitStatsDTO> getFruitStats() {
+        return ResponseEntity.ok(fruitStatsService.getStats());
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<FruitResponseDTO>> searchFruits(@RequestParam(required = false) String q,
+                                                               @RequestParam(defaultValue = "false") boolean fuzzy,
+                                                               @RequestParam(required = false) Integer minWeight,
+                                                               @RequestParam(required = false) Integer maxWeight,
+                                                               @RequestParam(required = false) String country,
+                                                               @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(catalogSearchService.searchFruits(q, fuzzy, minWeight, maxWeight, country, limit));
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<FruitResponseDTO> getFruitById(@PathVariable Long id) {
+    public ResponseEntity<FruitResponseDTO> getFruitById(@PathVariable Long id, WebRequest webRequest) {
+        if (webRequest.checkNotModified(ETags.of(id, fruitService.getFruitVersion(id)))) {
+            return null;
+        }
         return ResponseEntity.ok(fruitService.getFruitById(id));
     }
 
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<FruitLookupDTO>> getFruitsByIds(@RequestParam List<Long> ids) {
+        return ResponseEntity.ok(fruitService.getFruitsByIds(ids));
+    }
+
     @GetMapping
-    public ResponseEntity<List<FruitResponseDTO>> listFruits(@RequestParam(required = false) Long supplierId) {
+    public ResponseEntity<List<FruitResponseDTO>> listFruits(@RequestParam(required = false) Long supplierId,
+                                                             @RequestParam(required = false) Integer limit,
+                                                             @RequestParam(required = false) String after,
+                                                             WebRequest webRequest) {
+        // The version is read before the fruits, so the tag can only be older than the body, never newer
+        String eTag = supplierId != null
+                ? ETags.fruitsOfSupplier(supplierId, fruitService.getFruitsVersionBySupplierId(supplierId))
+                : ETags.fruitsPage(after, limit, fruitService.getFruitsPageVersion(after, limit));
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
         if (supplierId != null) {
             return ResponseEntity.ok(fruitService.getFruitsBySupplierId(supplierId));
         }
-        return ResponseEntity.ok(fruitService.getAllFruits());
+        FruitPageDTO page = fruitService.getFruitsPage(after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.fruits());
+    }
+
+    @GetMapping(params = "view=normalized")
+    public ResponseEntity<FruitCatalogDTO> listFruitsNormalized(@RequestParam(required = false) Long supplierId,
+                                                                @RequestParam(required = false) Integer limit,
+                                                                @RequestParam(required = false) String after,
+                                                                WebRequest webRequest) {
+        ResponseEntity<List<FruitResponseDTO>> fruits = listFruits(supplierId, limit, after, webRequest);
+        if (fruits == null) {
+            return null;
+        }
+        return ResponseEntity.status(fruits.getStatusCode())
+                .headers(fruits.getHeaders())
+                .body(FruitCatalogDTO.of(fruits.getBody()));
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<FruitResponseDTO> updateFruit(@PathVariable Long id, @Valid @RequestBody FruitRequestDTO request) {
-        return ResponseEntity.ok(fruitService.updateFruit(id, request));
+    public ResponseEntity<FruitResponseDTO> updateFruit(@PathVariable Long id, @Valid @RequestBody FruitRequestDTO request,
+                                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return ResponseEntity.ok(fruitService.updateFruit(id, request, ETags.expectedVersion(id, ifMatch)));
+    }
+
+    @PatchMapping("/{id}/weight")
+    public ResponseEntity<Void> adjustFruitWeight(@PathVariable Long id, @Valid @RequestBody FruitWeightDeltaDTO request) {
+        fruitWeightService.addWeightDelta(id, request.delta());
+        return ResponseEntity.accepted().build();
     }
 
     @DeleteMapping("/{id}")
@@ -49,4 +175,27 @@ public class FruitController {
         fruitService.deleteFruit(id);
         return ResponseEntity.noContent().build();
     }
+
+    // Lines are parsed as the bulk service asks for them, so only one batch of them is held at a time
+    private static Iterator<FruitRequestDTO> ndjsonLines(MappingIterator<FruitRequestDTO> lines) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return lines.hasNextValue();
+                } catch (IOException | RuntimeJsonMappingException e) {
+                    throw new IllegalArgumentException("Invalid NDJSON payload: " + e.getMessage());
+                }
+            }
+
+            @Override
+            public FruitRequestDTO next() {
+                try {
+                    return lines.nextValue();
+                } catch (IOException | RuntimeJsonMappingException e) {
+                    throw new IllegalArgumentException("Invalid NDJSON payload: " + e.getMessage());
+                }
+            }
+        };
+    }
 }
@@ -1,13 +1,19 @@
 package cat.itacademy.s04.t02.n02.fruit.controllers;
 
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierLookupDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.SupplierRequestDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierUpsertDTO;
+import cat.itacademy.s04.t02.n02.fruit.services.CatalogSearchService;
+import cat.itacademy.s04.t02.n02.fruit.services.SupplierDeleteMode;
 import cat.itacademy.s04.t02.n02.fruit.services.SupplierService;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -16,9 +22,11 @@ import java.util.List;
 public class SupplierController {
 
     private final SupplierService supplierService;
+    private final CatalogSearchService catalogSearchService;
 
-    public SupplierController(SupplierService supplierService) {
+    public SupplierController(SupplierService supplierService, CatalogSearchService catalogSearchService) {
         this.supplierService = supplierService;
+        this.catalogSearchService = catalogSearchService;
     }
 
     @PostMapping
@@ -33,13 +41,32 @@ public class SupplierController {
     }
 
     @GetMapping
-    public ResponseEntity<List<SupplierResponseDTO>> getAllSuppliers() {
+    public ResponseEntity<List<SupplierResponseDTO>> getAllSuppliers(WebRequest webRequest) {
+        if (webRequest.checkNotModified(ETags.suppliers(supplierService.getSuppliersVersion()))) {
+            return null;
+        }
         List<SupplierResponseDTO> suppliers = supplierService.getAllSuppliers();
         return ResponseEntity.ok(suppliers);
     }
 
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<SupplierLookupDTO>> getSuppliersByIds(@RequestParam List<Long> ids) {
+        return ResponseEntity.ok(supplierService.getSuppliersByIds(ids));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<SupplierResponseDTO>> searchSuppliers(@RequestParam(required = false) String q,
+                                                                     @RequestParam(defaultValue = "false") boolean fuzzy,
+                                                                     @RequestParam(required = false) String country,
+                                                                     @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(catalogSearchService.searchSuppliers(q, fuzzy, country, limit));
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<SupplierResponseDTO> getSupplierById(@PathVariable Long id) {
+    public ResponseEntity<SupplierResponseDTO> getSupplierById(@PathVariable Long id, WebRequest webRequest) {
+        if (webRequest.checkNotModified(ETags.of(id, supplierService.getSupplierVersion(id)))) {
+            return null;
+        }
         SupplierResponseDTO supplier = supplierService.getSupplierById(id);
         return ResponseEntity.ok(supplier);
     }
@@ -47,10 +74,11 @@ public class SupplierController {
     @PutMapping("/{id}")
     public ResponseEntity<?> updateSupplier(
             @PathVariable Long id,
-            @Valid @RequestBody SupplierRequestDTO request) {
+            @Valid @RequestBody SupplierRequestDTO request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
 
         try {
-            SupplierResponseDTO updated = supplierService.updateSupplier(id, request);
+            SupplierResponseDTO updated = supplierService.updateSupplier(id, request, ETags.expectedVersion(id, ifMatch));
             return ResponseEntity.ok(updated);
         } catch (EntityNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
@@ -59,14 +87,23 @@ public class SupplierController {
         }
     }
 
+    @PutMapping("/by-name/{name}")
+    public ResponseEntity<SupplierResponseDTO> upsertSupplier(@PathVariable String name,
+                                                              @Valid @RequestBody SupplierUpsertDTO request) {
+        return ResponseEntity.ok(supplierService.upsertSupplierByName(name, request));
+    }
+
     @DeleteMapping("/{id}")
-    public ResponseEntity<?> deleteSupplier(@PathVariable Long id) {
+    public ResponseEntity<?> deleteSupplier(
+            @PathVariable Long id,
+            @RequestParam(required = false) String mode,
+            @RequestParam(required = false) Long to) {
         try {
-            supplierService.deleteSupplier(id);
+            supplierService.deleteSupplier(id, SupplierDeleteMode.from(mode), to);
             return ResponseEntity.noContent().build();
         } catch (EntityNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
-        } catch (IllegalStateException e) {
+        } catch (IllegalStateException | IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
@@ -0,0 +1,178 @@
+package cat.itacademy.s04.t02.n02.fruit.datasource;
+
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.migration.Context;
+import org.flywaydb.core.api.migration.JavaMigration;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * V1: creates the tables on an empty database, or brings a database created by the former
+ * {@code ddl-auto=update} up to the same shape. Such databases are baselined at 0, so this runs on them too. Hibernate
+ * gave their unique and foreign key constraints hashed names ({@code UK...}, {@code FK...}), and they have no
+ * version columns or {@code idx_fruits_supplier_id}, all of which later migrations and {@code validate} expect.
+ */
+@Component
+public class CreateOrUpgradeTablesMigration implements JavaMigration {
+
+    @Override
+    public MigrationVersion getVersion() {
+        return MigrationVersion.fromVersion("1");
+    }
+
+    @Override
+    public String getDescription() {
+        return "create or upgrade tables";
+    }
+
+    @Override
+    public Integer getChecksum() {
+        return null;
+    }
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return true;
+    }
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            if (!hasTable(connection, "suppliers")) {
+                createTables(statement);
+                return;
+            }
+            upgradeTables(connection, statement);
+        }
+    }
+
+    private static void createTables(Statement statement) throws SQLException {
+        statement.execute("""
+                create table suppliers (
+                    id bigint not null auto_increment,
+                    name varchar(255) not null,
+                    country varchar(255) not null,
+                    version bigint default 0 not null,
+                    primary key (id),
+                    constraint uk_suppliers_name unique (name)
+                )""");
+        statement.execute("""
+                create table fruits (
+                    id bigint not null auto_increment,
+                    name varchar(255) not null,
+                    weight_in_kilos integer not null,
+                    supplier_id bigint not null,
+                    version bigint default 0 not null,
+                    primary key (id),
+                    constraint fk_fruits_supplier foreign key (supplier_id) references suppliers (id)
+                )""");
+        statement.execute("create index idx_fruits_supplier_id on fruits (supplier_id)");
+    }
+
+    private static void upgradeTables(Connection connection, Statement statement) throws SQLException {
+        boolean mysql = DatabaseDriver.fromProductName(connection.getMetaData().getDatabaseProductName())
+                == DatabaseDriver.MYSQL;
+        String quote = connection.getMetaData().getIdentifierQuoteString();
+
+        for (String table : List.of("suppliers", "fruits")) {
+            if (!hasColumn(connection, table, "version")) {
+                statement.execute("alter table " + table + " add column version bigint default 0 not null");
+            }
+        }
+
+        List<String> nameConstraints = constraints(connection, "suppliers", "UNIQUE", "name");
+        if (nameConstraints.isEmpty()) {
+            statement.execute("alter table suppliers add constraint uk_suppliers_name unique (name)");
+        } else if (nameConstraints.stream().noneMatch("uk_suppliers_name"::equalsIgnoreCase)) {
+            // V4 drops it by this name; MySQL keeps a unique constraint as an index of the same name
+            String hashed = quote + nameConstraints.get(0) + quote;
+            statement.execute(mysql
+                    ? "alter table suppliers rename index " + hashed + " to uk_suppliers_name"
+                    : "alter table suppliers rename constraint " + hashed + " to uk_suppliers_name");
+        }
+
+        // The foreign key keeps its hashed name, since nothing refers to it and MySQL cannot rename one
+        List<String> supplierKeys = constraints(connection, "fruits", "FOREIGN KEY", "supplier_id");
+        if (supplierKeys.isEmpty()) {
+            statement.execute("alter table fruits add constraint fk_fruits_supplier "
+                    + "foreign key (supplier_id) references suppliers (id)");
+        }
+
+        if (!hasIndex(connection, "fruits", "idx_fruits_supplier_id")) {
+            // MySQL backs the foreign key with an index of the same name, which V2 would otherwise leave behind
+            if (mysql && !supplierKeys.isEmpty() && hasIndex(connection, "fruits", supplierKeys.get(0))) {
+                statement.execute("alter table fruits rename index " + quote + supplierKeys.get(0) + quote
+                        + " to idx_fruits_supplier_id");
+            } else {
+                statement.execute("create index idx_fruits_supplier_id on fruits (supplier_id)");
+            }
+        }
+    }
+
+    private static boolean hasTable(Connection connection, String table) throws SQLException {
+        try (ResultSet tables = connection.getMetaData()
+                .getTables(connection.getCatalog(), connection.getSchema(), table, null)) {
+            return tables.next();
+        }
+    }
+
+    private static boolean hasColumn(Connection connection, String table, String column) throws SQLException {
+        try (ResultSet columns = connection.getMetaData()
+                .getColumns(connection.getCatalog(), connection.getSchema(), table, column)) {
+            return columns.next();
+        }
+    }
+
+    private static boolean hasIndex(Connection connection, String table, String index) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet indexes = metaData.getIndexInfo(connection.getCatalog(), connection.getSchema(), table, false, false)) {
+            while (indexes.next()) {
+                if (index.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Names of the constraints of {@code type} on exactly {@code column}. MySQL reports the database as the catalog
+     * and H2 as the schema, so whichever the driver fills in is the one compared against.
+     */
+    private static List<String> constraints(Connection connection, String table, String type, String column)
+            throws SQLException {
+        String schema = connection.getSchema() != null ? connection.getSchema() : connection.getCatalog();
+        List<String> names = new ArrayList<>();
+        try (PreparedStatement query = connection.prepareStatement("""
+                select tc.constraint_name
+                from information_schema.table_constraints tc
+                join information_schema.key_column_usage kcu
+                    on kcu.constraint_schema = tc.constraint_schema
+                    and kcu.constraint_name = tc.constraint_name
+                    and kcu.table_name = tc.table_name
+                where tc.table_schema = ? and tc.table_name = ? and tc.constraint_type = ?
+                group by tc.constraint_name
+                having count(*) = 1 and max(kcu.column_name) = ?""")) {
+            query.setString(1, schema);
+            query.setString(2, table);
+            query.setString(3, type);
+            query.setString(4, column);
+            try (ResultSet rows = query.executeQuery()) {
+                while (rows.next()) {
+                    names.add(rows.getString(1));
+                }
+            }
+        }
+        return names;
+    }
+}
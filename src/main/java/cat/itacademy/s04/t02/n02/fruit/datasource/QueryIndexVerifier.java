@@ -0,0 +1,238 @@
+package cat.itacademy.s04.t02.n02.fruit.datasource;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.SingularAttribute;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.mapping.PropertyPath;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks at startup that the first column each repository query method filters on is the leading column of an
+ * index. Derived queries are resolved through their {@link PartTree}; {@code @Query} JPQL is resolved from its
+ * first {@code alias.property} predicate. Set {@code fruits.schema.index-check} to {@code off}, {@code warn}
+ * or {@code fail}.
+ */
+@Component
+public class QueryIndexVerifier {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryIndexVerifier.class);
+
+    private static final Pattern ROOT = Pattern.compile(
+            "\\b(?:from|update(?:\\s+versioned)?)\\s+(\\w+)\\s+(?:as\\s+)?(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern JOIN = Pattern.compile(
+            "\\bjoin\\s+(?:fetch\\s+)?(\\w+)\\.(\\w+)\\s+(?:as\\s+)?(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WHERE = Pattern.compile(
+            "\\bwhere\\b(.*?)(?:\\border\\s+by\\b|\\bgroup\\s+by\\b|$)", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern PATH = Pattern.compile("\\b(\\w+)\\.(\\w+)\\b");
+
+    private final ApplicationContext applicationContext;
+    private final EntityManagerFactory entityManagerFactory;
+    private final DataSource dataSource;
+    private final String mode;
+
+    public QueryIndexVerifier(ApplicationContext applicationContext,
+                              EntityManagerFactory entityManagerFactory,
+                              DataSource dataSource,
+                              @Value("${fruits.schema.index-check:warn}") String mode) {
+        this.applicationContext = applicationContext;
+        this.entityManagerFactory = entityManagerFactory;
+        this.dataSource = dataSource;
+        this.mode = mode.toLowerCase(Locale.ROOT);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verify() {
+        if (mode.equals("off")) {
+            return;
+        }
+        List<String> findings = findUnindexedQueries();
+        if (findings.isEmpty()) {
+            log.info("Every repository query method filters on an indexed column");
+            return;
+        }
+        findings.forEach(log::warn);
+        if (mode.equals("fail")) {
+            throw new IllegalStateException(findings.size() + " repository query method(s) lack a supporting index");
+        }
+    }
+
+    public List<String> findUnindexedQueries() {
+        return findUnindexedQueries(loadLeadingIndexColumns());
+    }
+
+    List<String> findUnindexedQueries(Map<String, Set<String>> leadingColumns) {
+        List<String> findings = new ArrayList<>();
+        Repositories repositories = new Repositories(applicationContext);
+        for (Class<?> domainType : repositories) {
+            RepositoryInformation information = repositories.getRequiredRepositoryInformation(domainType);
+            for (Method method : information.getQueryMethods()) {
+                if (!Repository.class.isAssignableFrom(method.getDeclaringClass())) {
+                    // Methods of custom fragments are implemented by hand, not derived
+                    continue;
+                }
+                lookupColumn(method, information.getDomainType())
+                        .filter(column -> !leadingColumns.getOrDefault(column.table(), Set.of()).contains(column.name()))
+                        .ifPresent(column -> findings.add(information.getRepositoryInterface().getSimpleName() + "."
+                                + method.getName() + " filters on " + column + " without a supporting index"));
+            }
+        }
+        findings.sort(null);
+        return findings;
+    }
+
+    Optional<IndexedColumn> lookupColumn(Method method, Class<?> domainType) {
+        Query query = AnnotatedElementUtils.findMergedAnnotation(method, Query.class);
+        if (query == null) {
+            return new PartTree(method.getName(), domainType).getParts().stream()
+                    .findFirst()
+                    .map(Part::getProperty)
+                    .flatMap(path -> resolve(domainType, path.getSegment(), Optional.ofNullable(path.next())
+                            .map(PropertyPath::getSegment).orElse(null)));
+        }
+        if (query.nativeQuery()) {
+            return Optional.empty();
+        }
+        return fromJpql(query.value());
+    }
+
+    private Optional<IndexedColumn> fromJpql(String jpql) {
+        Matcher root = ROOT.matcher(jpql);
+        Matcher where = WHERE.matcher(jpql);
+        if (!root.find() || !where.find()) {
+            return Optional.empty();
+        }
+        Map<String, Class<?>> entities = new HashMap<>();
+        Map<String, String[]> joins = new HashMap<>();
+        entities.put(root.group(2), entityClass(root.group(1)));
+        Matcher join = JOIN.matcher(jpql);
+        while (join.find()) {
+            Class<?> parent = entities.get(join.group(1));
+            if (parent != null) {
+                entities.put(join.group(3), associationTarget(parent, join.group(2)));
+                joins.put(join.group(3), new String[]{join.group(1), join.group(2)});
+            }
+        }
+
+        Matcher path = PATH.matcher(where.group(1));
+        while (path.find()) {
+            String alias = path.group(1);
+            if (!entities.containsKey(alias)) {
+                continue;
+            }
+            String[] parent = joins.get(alias);
+            if (parent != null && path.group(2).equals(idAttribute(entities.get(alias)))) {
+                // s.id on "join f.supplier s" is the foreign key column of f
+                return resolve(entities.get(parent[0]), parent[1], null);
+            }
+            return resolve(entities.get(alias), path.group(2), null);
+        }
+        return Optional.empty();
+    }
+
+    private Optional<IndexedColumn> resolve(Class<?> entity, String property, String nestedProperty) {
+        if (nestedProperty != null && !nestedProperty.equals(idAttribute(associationTarget(entity, property)))) {
+            return Optional.empty();
+        }
+        AbstractEntityPersister persister = (AbstractEntityPersister) entityManagerFactory
+                .unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel()
+                .getEntityDescriptor(entity);
+        String[] columns = persister.getPropertyColumnNames(property);
+        return Optional.of(new IndexedColumn(persister.getTableName().toLowerCase(Locale.ROOT),
+                columns[0].toLowerCase(Locale.ROOT)));
+    }
+
+    private Class<?> entityClass(String entityName) {
+        return entityManagerFactory.getMetamodel().getEntities().stream()
+                .filter(entity -> entity.getName().equals(entityName))
+                .map(EntityType::getJavaType)
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown entity " + entityName));
+    }
+
+    private Class<?> associationTarget(Class<?> entity, String property) {
+        Attribute<?, ?> attribute = entityManagerFactory.getMetamodel().entity(entity).getAttribute(property);
+        return attribute.getJavaType();
+    }
+
+    private String idAttribute(Class<?> entity) {
+        return entityManagerFactory.getMetamodel().entity(entity).getSingularAttributes().stream()
+                .filter(SingularAttribute::isId)
+                .map(Attribute::getName)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private Map<String, Set<String>> loadLeadingIndexColumns() {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            DatabaseMetaData metaData = connection.getMetaData();
+            Map<String, Set<String>> leading = new HashMap<>();
+            for (EntityType<?> entity : entityManagerFactory.getMetamodel().getEntities()) {
+                String table = ((AbstractEntityPersister) entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                        .getMappingMetamodel().getEntityDescriptor(entity.getJavaType())).getTableName();
+                Set<String> columns = leading.computeIfAbsent(table.toLowerCase(Locale.ROOT), key -> new HashSet<>());
+                try (ResultSet keys = metaData.getPrimaryKeys(connection.getCatalog(), connection.getSchema(), table)) {
+                    while (keys.next()) {
+                        if (keys.getShort("KEY_SEQ") == 1) {
+                            columns.add(keys.getString("COLUMN_NAME").toLowerCase(Locale.ROOT));
+                        }
+                    }
+                }
+                try (ResultSet indexes = metaData.getIndexInfo(connection.getCatalog(), connection.getSchema(), table, false, false)) {
+                    while (indexes.next()) {
+                        if (indexes.getShort("ORDINAL_POSITION") == 1 && indexes.getString("COLUMN_NAME") != null) {
+                            columns.add(indexes.getString("COLUMN_NAME").toLowerCase(Locale.ROOT));
+                        }
+                    }
+                }
+            }
+            return leading;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot read index metadata", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    record IndexedColumn(String table, String name) {
+        @Override
+        public String toString() {
+            return table + "." + name;
+        }
+    }
+}
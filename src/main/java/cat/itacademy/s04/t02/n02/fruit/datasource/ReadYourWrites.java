@@ -0,0 +1,21 @@
+package cat.itacademy.s04.t02.n02.fruit.datasource;
+
+public final class ReadYourWrites {
+
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    public static void requirePrimary() {
+        PRIMARY_REQUIRED.set(Boolean.TRUE);
+    }
+
+    public static boolean isPrimaryRequired() {
+        return Boolean.TRUE.equals(PRIMARY_REQUIRED.get());
+    }
+
+    public static void clear() {
+        PRIMARY_REQUIRED.remove();
+    }
+}
@@ -0,0 +1,6 @@
+package cat.itacademy.s04.t02.n02.fruit.datasource;
+
+public enum ReplicaBalancing {
+    ROUND_ROBIN,
+    LEAST_CONNECTIONS
+}
@@ -0,0 +1,122 @@
+package cat.itacademy.s04.t02.n02.fruit.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ReplicaPool implements AutoCloseable {
+
+    private static final List<String> LAG_COLUMNS = List.of("Seconds_Behind_Source", "Seconds_Behind_Master");
+
+    private final List<Replica> replicas;
+    private final ReplicaBalancing balancing;
+    private final Duration maxLag;
+    private final String lagQuery;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaPool(Map<String, DataSource> replicas, ReplicaBalancing balancing, Duration maxLag, String lagQuery) {
+        this.replicas = replicas.entrySet().stream()
+                .map(entry -> new Replica(entry.getKey(), entry.getValue()))
+                .toList();
+        this.balancing = balancing;
+        this.maxLag = maxLag;
+        this.lagQuery = lagQuery;
+    }
+
+    public String select() {
+        List<Replica> available = replicas.stream().filter(Replica::isAvailable).toList();
+        if (available.isEmpty()) {
+            return null;
+        }
+        return switch (balancing) {
+            case ROUND_ROBIN -> available.get(Math.floorMod(next.getAndIncrement(), available.size())).name;
+            case LEAST_CONNECTIONS -> available.stream()
+                    .min(Comparator.comparingInt(Replica::activeConnections))
+                    .orElseThrow().name;
+        };
+    }
+
+    @Scheduled(fixedDelayString = "${fruits.datasource.lag-check-interval:PT5S}")
+    public void checkLag() {
+        for (Replica replica : replicas) {
+            replica.lag = probe(replica.dataSource);
+        }
+    }
+
+    public Map<String, DataSource> dataSources() {
+        Map<String, DataSource> dataSources = new LinkedHashMap<>();
+        replicas.forEach(replica -> dataSources.put(replica.name, replica.dataSource));
+        return dataSources;
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private Duration probe(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(lagQuery)) {
+            if (!rs.next()) {
+                return Duration.ZERO;
+            }
+            long seconds = rs.getLong(lagColumn(rs.getMetaData()));
+            return rs.wasNull() ? null : Duration.ofSeconds(seconds);
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private int lagColumn(ResultSetMetaData metaData) throws SQLException {
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            for (String column : LAG_COLUMNS) {
+                if (column.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                    return i;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile Duration lag = Duration.ZERO;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        private boolean isAvailable() {
+            Duration current = lag;
+            return current != null && current.compareTo(maxLag) <= 0;
+        }
+
+        private int activeConnections() {
+            if (dataSource instanceof HikariDataSource hikari) {
+                HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+                return pool == null ? 0 : pool.getActiveConnections();
+            }
+            return 0;
+        }
+    }
+}
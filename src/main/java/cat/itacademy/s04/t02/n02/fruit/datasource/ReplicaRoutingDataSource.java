@@ -0,0 +1,34 @@
+package cat.itacademy.s04.t02.n02.fruit.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+
+    private final ReplicaPool replicaPool;
+
+    public ReplicaRoutingDataSource(DataSource primary, ReplicaPool replicaPool) {
+        this.replicaPool = replicaPool;
+        Map<Object, Object> targets = new HashMap<>(replicaPool.dataSources());
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || ReadYourWrites.isPrimaryRequired()) {
+            return PRIMARY;
+        }
+        String replica = replicaPool.select();
+        return replica != null ? replica : PRIMARY;
+    }
+}
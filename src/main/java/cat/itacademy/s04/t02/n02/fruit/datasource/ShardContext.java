@@ -0,0 +1,28 @@
+package cat.itacademy.s04.t02.n02.fruit.datasource;
+
+final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    static int current() {
+        Integer shard = CURRENT.get();
+        return shard != null ? shard : 0;
+    }
+
+    static Integer enter(int shard) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        return previous;
+    }
+
+    static void restore(Integer previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package cat.itacademy.s04.t02.n02.fruit.datasource;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * The shards after the primary database, which is always shard 0.
+ */
+public record ShardDataSources(List<DataSource> dataSources) implements AutoCloseable {
+
+    @Override
+    public void close() throws Exception {
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package cat.itacademy.s04.t02.n02.fruit.datasource;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Runs fruit work on the shard that owns a supplier, or on every shard at once. Work joins the caller's
+ * transaction when it is already bound to that shard, so with a single shard nothing changes. Work for another
+ * shard runs on a virtual thread of its own: the caller's thread may hold an open-in-view entity manager, and with
+ * it a connection, that belongs to its current shard.
+ */
+public class ShardRouter implements AutoCloseable {
+
+    private final int shardCount;
+    private final TransactionTemplate joinRead;
+    private final TransactionTemplate joinWrite;
+    private final TransactionTemplate newRead;
+    private final TransactionTemplate newWrite;
+    private final ExecutorService executor;
+
+    public ShardRouter(int shardCount, PlatformTransactionManager transactionManager) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shardCount = shardCount;
+        this.joinRead = template(transactionManager, TransactionDefinition.PROPAGATION_REQUIRED, true);
+        this.joinWrite = template(transactionManager, TransactionDefinition.PROPAGATION_REQUIRED, false);
+        this.newRead = template(transactionManager, TransactionDefinition.PROPAGATION_REQUIRES_NEW, true);
+        this.newWrite = template(transactionManager, TransactionDefinition.PROPAGATION_REQUIRES_NEW, false);
+        this.executor = shardCount > 1 ? Executors.newVirtualThreadPerTaskExecutor() : null;
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    public int shardFor(long supplierId) {
+        return shardCount == 1 ? 0 : (int) Math.floorMod(mix(supplierId), (long) shardCount);
+    }
+
+    public <T> T read(int shard, Supplier<T> work) {
+        return execute(shard, true, work);
+    }
+
+    public <T> T write(int shard, Supplier<T> work) {
+        return execute(shard, false, work);
+    }
+
+    public void run(int shard, Runnable work) {
+        execute(shard, false, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs the read on every shard in parallel and returns the results in shard order.
+     */
+    public <T> List<T> readAll(Supplier<T> work) {
+        return readEach(shard -> work.get());
+    }
+
+    /**
+     * Like {@link #readAll}, for reads that depend on the shard they run on.
+     */
+    public <T> List<T> readEach(IntFunction<T> work) {
+        if (shardCount == 1) {
+            return List.of(read(0, () -> work.apply(0)));
+        }
+        List<Future<T>> futures = new ArrayList<>(shardCount);
+        for (int shard = 0; shard < shardCount; shard++) {
+            int target = shard;
+            futures.add(executor.submit(() -> inTransaction(target, newRead, () -> work.apply(target))));
+        }
+        List<T> results = new ArrayList<>(shardCount);
+        for (Future<T> future : futures) {
+            results.add(await(future));
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private <T> T execute(int shard, boolean readOnly, Supplier<T> work) {
+        if (shard < 0 || shard >= shardCount) {
+            throw new IllegalArgumentException("Unknown shard " + shard);
+        }
+        if (shard != ShardContext.current() && executor != null) {
+            return await(executor.submit(() -> inTransaction(shard, readOnly ? newRead : newWrite, work)));
+        }
+        boolean join = readOnly || !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        return inTransaction(shard, join ? (readOnly ? joinRead : joinWrite) : newWrite, work);
+    }
+
+    private <T> T inTransaction(int shard, TransactionTemplate template, Supplier<T> work) {
+        Integer previous = ShardContext.enter(shard);
+        try {
+            return template.execute(status -> work.get());
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a shard", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Shard query failed", e.getCause());
+        }
+    }
+
+    // MurmurHash3 finalizer, so that consecutive supplier ids still spread evenly over the shards
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static TransactionTemplate template(PlatformTransactionManager transactionManager, int propagation,
+                                                boolean readOnly) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(propagation);
+        template.setReadOnly(readOnly);
+        return template;
+    }
+}
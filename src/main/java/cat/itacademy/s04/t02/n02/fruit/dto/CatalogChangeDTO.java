@@ -0,0 +1,6 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+public record CatalogChangeDTO(String token, String entity, Long id, String operation, @JsonRawValue String data) {
+}
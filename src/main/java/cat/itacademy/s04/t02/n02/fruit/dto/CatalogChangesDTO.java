@@ -0,0 +1,6 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import java.util.List;
+
+public record CatalogChangesDTO(List<CatalogChangeDTO> changes, String nextToken, boolean hasMore) {
+}
@@ -0,0 +1,16 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+/**
+ * Row count, highest id, sum of row versions and a hash of every (id, version) pair of a query's result. Count, id and
+ * version sum alone miss a row leaving a filtered result while another one joins it, so the hash, a sum of a per-row
+ * mix modulo 2^31 - 1, is what changes then, unless the two rows happen to mix to the same value.
+ */
+public record CollectionVersionDTO(Long count, Long maxId, Long versionSum, Long rowHash) {
+
+    public String token() {
+        return Long.toString(count == null ? 0 : count, 36)
+                + "." + Long.toString(maxId == null ? 0 : maxId, 36)
+                + "." + Long.toString(versionSum == null ? 0 : versionSum, 36)
+                + "." + Long.toString(rowHash == null ? 0 : rowHash, 36);
+    }
+}
@@ -0,0 +1,22 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Normalized fruit list: each supplier is sent once instead of being repeated inside every fruit.
+ */
+public record FruitCatalogDTO(List<SupplierResponseDTO> suppliers, List<NormalizedFruitDTO> fruits) {
+
+    public static FruitCatalogDTO of(List<FruitResponseDTO> fruits) {
+        Map<Long, SupplierResponseDTO> suppliers = new LinkedHashMap<>();
+        List<NormalizedFruitDTO> normalized = new ArrayList<>(fruits.size());
+        for (FruitResponseDTO fruit : fruits) {
+            suppliers.putIfAbsent(fruit.supplier().id(), fruit.supplier());
+            normalized.add(new NormalizedFruitDTO(fruit.id(), fruit.name(), fruit.weightInKilos(), fruit.supplier().id()));
+        }
+        return new FruitCatalogDTO(List.copyOf(suppliers.values()), normalized);
+    }
+}
@@ -1,4 +1,9 @@
 package cat.itacademy.s04.t02.n02.fruit.dto;
 
 public record FruitResponseDTO(Long id, String name, int weightInKilos, SupplierResponseDTO supplier) {
+
+    public FruitResponseDTO(Long id, String name, int weightInKilos,
+                            Long supplierId, String supplierName, String supplierCountry) {
+        this(id, name, weightInKilos, new SupplierResponseDTO(supplierId, supplierName, supplierCountry));
+    }
 }
@@ -0,0 +1,8 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import java.util.List;
+
+public record FruitStatsDTO(List<FruitStatsGroupDTO> bySupplier,
+                            List<FruitStatsGroupDTO> byCountry,
+                            List<FruitStatsGroupDTO> byName) {
+}
@@ -0,0 +1,5 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+public record FruitStatsGroupDTO(String group, long count, long totalWeightInKilos,
+                                 int minWeightInKilos, int maxWeightInKilos) {
+}
@@ -0,0 +1,8 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import jakarta.validation.constraints.NotNull;
+
+public record FruitWeightDeltaDTO(
+        @NotNull(message = "Weight delta is required")
+        Integer delta
+) { }
@@ -0,0 +1,8 @@
+package cat.itacademy.s04.t02.n02.fruit.dto;
+
+import jakarta.validation.constraints.NotBlank;
+
+public record SupplierUpsertDTO(
+        @NotBlank(message = "Country cannot be blank")
+        String country
+) { }
@@ -0,0 +1,22 @@
+package cat.itacademy.s04.t02.n02.fruit.events;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+
+public record FruitChangedEvent(FruitResponseDTO before, FruitResponseDTO after) {
+
+    public static FruitChangedEvent created(FruitResponseDTO fruit) {
+        return new FruitChangedEvent(null, fruit);
+    }
+
+    public static FruitChangedEvent updated(FruitResponseDTO before, FruitResponseDTO after) {
+        return new FruitChangedEvent(before, after);
+    }
+
+    public static FruitChangedEvent deleted(FruitResponseDTO fruit) {
+        return new FruitChangedEvent(fruit, null);
+    }
+
+    public Long fruitId() {
+        return after != null ? after.id() : before.id();
+    }
+}
@@ -0,0 +1,29 @@
+package cat.itacademy.s04.t02.n02.fruit.events;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+
+public record SupplierChangedEvent(SupplierResponseDTO before, SupplierResponseDTO after) {
+
+    public static SupplierChangedEvent created(SupplierResponseDTO supplier) {
+        return new SupplierChangedEvent(null, supplier);
+    }
+
+    public static SupplierChangedEvent updated(SupplierResponseDTO before, SupplierResponseDTO after) {
+        return new SupplierChangedEvent(before, after);
+    }
+
+    /**
+     * Updated without reading it first, so its previous values are not known and {@code before} holds the new ones.
+     */
+    public static SupplierChangedEvent upserted(SupplierResponseDTO supplier) {
+        return new SupplierChangedEvent(supplier, supplier);
+    }
+
+    public static SupplierChangedEvent deleted(SupplierResponseDTO supplier) {
+        return new SupplierChangedEvent(supplier, null);
+    }
+
+    public Long supplierId() {
+        return after != null ? after.id() : before.id();
+    }
+}
@@ -0,0 +1,14 @@
+package cat.itacademy.s04.t02.n02.fruit.events;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+
+/**
+ * All of a supplier's fruits deleted or moved in bulk along with it. The change feed records each fruit itself, in
+ * the same transaction, so the event does not list them.
+ */
+public record SupplierFruitsRemovedEvent(SupplierResponseDTO supplier, SupplierResponseDTO reassignedTo) {
+
+    public boolean deleted() {
+        return reassignedTo == null;
+    }
+}
@@ -0,0 +1,8 @@
+package cat.itacademy.s04.t02.n02.fruit.exception;
+
+public class ChangeTokenExpiredException extends RuntimeException {
+
+    public ChangeTokenExpiredException(String message) {
+        super(message);
+    }
+}
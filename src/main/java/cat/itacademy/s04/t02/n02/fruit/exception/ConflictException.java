@@ -0,0 +1,8 @@
+package cat.itacademy.s04.t02.n02.fruit.exception;
+
+public class ConflictException extends RuntimeException {
+
+    public ConflictException(String message) {
+        super(message);
+    }
+}
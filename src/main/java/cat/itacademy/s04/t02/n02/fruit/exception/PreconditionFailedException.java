@@ -0,0 +1,8 @@
+package cat.itacademy.s04.t02.n02.fruit.exception;
+
+public class PreconditionFailedException extends RuntimeException {
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
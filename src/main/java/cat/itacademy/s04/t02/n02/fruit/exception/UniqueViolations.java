@@ -0,0 +1,31 @@
+package cat.itacademy.s04.t02.n02.fruit.exception;
+
+import org.springframework.dao.DuplicateKeyException;
+
+import java.sql.SQLException;
+
+/**
+ * Tells unique constraint violations apart from the other integrity violations, such as missing foreign keys or
+ * null columns, which are bugs rather than conflicts with existing data.
+ */
+public final class UniqueViolations {
+
+    private static final String UNIQUE_VIOLATION_STATE = "23505";
+    private static final int MYSQL_DUPLICATE_ENTRY = 1062;
+
+    private UniqueViolations() {
+    }
+
+    public static boolean isUniqueViolation(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DuplicateKeyException) {
+                return true;
+            }
+            if (cause instanceof SQLException sql && (UNIQUE_VIOLATION_STATE.equals(sql.getSQLState())
+                    || sql.getErrorCode() == MYSQL_DUPLICATE_ENTRY)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,322 @@
+package cat.itacademy.s04.t02.n02.fruit.filters;
+
+import cat.itacademy.s04.t02.n02.fruit.exception.ErrorResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handles the {@code Idempotency-Key} header on POST and PATCH requests. The first request with a key reserves it,
+ * runs normally and its response is stored unless it is a server error. Retries get the stored response back without
+ * reaching the controllers, and a retry that arrives while the original is still running, on this instance or on
+ * another one sharing the store, waits for it.
+ */
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    static final int MAX_KEY_LENGTH = 255;
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyFilter.class);
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(100);
+
+    private static final Set<String> METHODS = Set.of("POST", "PATCH");
+    private static final List<String> STORED_HEADERS = List.of(HttpHeaders.LOCATION, HttpHeaders.ETAG);
+
+    private final IdempotencyStore store;
+    private final Duration waitTimeout;
+    private final Duration lease;
+    private final ObjectMapper objectMapper;
+    private final ConcurrentMap<String, CountDownLatch> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * {@code lease} bounds how long a reservation outlives an instance that died while running the request.
+     */
+    public IdempotencyFilter(IdempotencyStore store, Duration waitTimeout, Duration lease, ObjectMapper objectMapper) {
+        this.store = store;
+        this.waitTimeout = waitTimeout;
+        this.lease = lease;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !METHODS.contains(request.getMethod()) || request.getHeader(HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(HEADER);
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            reject(request, response, HttpStatus.BAD_REQUEST,
+                    HEADER + " must have between 1 and " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+        DigestingRequest digestingRequest = new DigestingRequest(request);
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+
+        while (true) {
+            if (replayIfStored(key, digestingRequest, response)) {
+                return;
+            }
+            CountDownLatch original = new CountDownLatch(1);
+            CountDownLatch running = inFlight.putIfAbsent(key, original);
+            boolean finished;
+            if (running == null) {
+                try {
+                    // the original may have finished between the lookup and taking the key
+                    if (replayIfStored(key, digestingRequest, response)) {
+                        return;
+                    }
+                    if (store.reserve(key, lease)) {
+                        execute(key, digestingRequest, response, chain);
+                        return;
+                    }
+                } finally {
+                    inFlight.remove(key, original);
+                    original.countDown();
+                }
+                // another instance holds the key, and only the store tells when it is done
+                finished = pause(deadline);
+            } else {
+                finished = await(running, deadline);
+            }
+            if (!finished) {
+                reject(request, response, HttpStatus.CONFLICT,
+                        "A request with this " + HEADER + " is still in progress, retry later");
+                return;
+            }
+        }
+    }
+
+    private boolean replayIfStored(String key, DigestingRequest request, HttpServletResponse response)
+            throws IOException {
+        Optional<IdempotentResponse> stored = store.find(key);
+        if (stored.isEmpty()) {
+            return false;
+        }
+        IdempotentResponse original = stored.get();
+        if (!original.fingerprint().equals(request.fingerprint())) {
+            reject(request, response, HttpStatus.UNPROCESSABLE_ENTITY,
+                    HEADER + " was already used for a different request");
+            return true;
+        }
+        response.setStatus(original.status());
+        if (original.contentType() != null) {
+            response.setContentType(original.contentType());
+        }
+        original.headers().forEach(response::setHeader);
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(original.body().length);
+        response.getOutputStream().write(original.body());
+        return true;
+    }
+
+    private void execute(String key, DigestingRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper cachingResponse = new ContentCachingResponseWrapper(response);
+        boolean saved = false;
+        try {
+            chain.doFilter(request, cachingResponse);
+            if (!request.isAsyncStarted() && !HttpStatus.valueOf(cachingResponse.getStatus()).is5xxServerError()) {
+                Map<String, String> headers = new LinkedHashMap<>();
+                for (String name : STORED_HEADERS) {
+                    String value = cachingResponse.getHeader(name);
+                    if (value != null) {
+                        headers.put(name, value);
+                    }
+                }
+                saved = save(key, new IdempotentResponse(request.fingerprint(), cachingResponse.getStatus(),
+                        cachingResponse.getContentType(), headers, cachingResponse.getContentAsByteArray()));
+            }
+        } finally {
+            if (!saved) {
+                release(key);
+            }
+        }
+        cachingResponse.copyBodyToResponse();
+    }
+
+    // The request has already run, so a store failure must not cost the client its response
+    private boolean save(String key, IdempotentResponse response) {
+        try {
+            store.save(key, response);
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Could not store the response for {} {}, a retry will run the request again", HEADER, key, e);
+            return false;
+        }
+    }
+
+    private void release(String key) {
+        try {
+            store.release(key);
+        } catch (RuntimeException e) {
+            log.warn("Could not release {} {}, retries wait until its reservation expires", HEADER, key, e);
+        }
+    }
+
+    private boolean pause(long deadline) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return false;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(Math.min(remaining, POLL_INTERVAL.toNanos()));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean await(CountDownLatch running, long deadline) {
+        try {
+            return running.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, HttpStatus status, String message)
+            throws IOException {
+        ErrorResponse error = new ErrorResponse(
+                status.value(),
+                status.getReasonPhrase(),
+                message,
+                request.getRequestURI(),
+                LocalDateTime.now()
+        );
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), error);
+    }
+
+    /**
+     * Digests the body as the controller reads it, so that it is never held in memory, and reads whatever the
+     * controller left, or all of it when the request is replayed without running, once the fingerprint is needed.
+     */
+    private static class DigestingRequest extends HttpServletRequestWrapper {
+
+        private final MessageDigest digest;
+        private ServletInputStream inputStream;
+        private BufferedReader reader;
+        private String fingerprint;
+
+        DigestingRequest(HttpServletRequest request) {
+            super(request);
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            digest.update((request.getMethod() + ' ' + request.getRequestURI() + '?' + request.getQueryString() + '\n')
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+
+        String fingerprint() throws IOException {
+            if (fingerprint == null) {
+                InputStream in = getInputStream();
+                byte[] skipped = new byte[8192];
+                while (in.read(skipped) != -1) {
+                    // digested on the way through
+                }
+                fingerprint = HexFormat.of().formatHex(digest.digest());
+            }
+            return fingerprint;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                ServletInputStream in = super.getInputStream();
+                inputStream = new ServletInputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        int b = in.read();
+                        if (b != -1) {
+                            digest.update((byte) b);
+                        }
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        int read = in.read(buffer, offset, length);
+                        if (read > 0) {
+                            digest.update(buffer, offset, read);
+                        }
+                        return read;
+                    }
+
+                    @Override
+                    public boolean isFinished() {
+                        return in.isFinished();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return in.isReady();
+                    }
+
+                    @Override
+                    public void setReadListener(ReadListener listener) {
+                        throw new UnsupportedOperationException("Idempotent request bodies are read synchronously");
+                    }
+
+                    // readers such as Jackson close the body when done; the rest is still needed for the fingerprint
+                    @Override
+                    public void close() {
+                    }
+                };
+            }
+            return inputStream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            if (reader == null) {
+                Charset charset = getCharacterEncoding() != null
+                        ? Charset.forName(getCharacterEncoding()) : StandardCharsets.UTF_8;
+                reader = new BufferedReader(new InputStreamReader(getInputStream(), charset));
+            }
+            return reader;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package cat.itacademy.s04.t02.n02.fruit.filters;
+
+import java.time.Duration;
+import java.util.Optional;
+
+public interface IdempotencyStore {
+
+    Optional<IdempotentResponse> find(String key);
+
+    void save(String key, IdempotentResponse response);
+
+    /**
+     * Claims {@code key} for a request about to run, for at most {@code lease}. Returns {@code false} while another
+     * instance holds it. Stores that are not shared can rely on the filter, which already serializes local requests.
+     */
+    default boolean reserve(String key, Duration lease) {
+        return true;
+    }
+
+    /**
+     * Gives up a reservation whose response will not be saved, so a retry can run the request again.
+     */
+    default void release(String key) {
+    }
+}
@@ -0,0 +1,11 @@
+package cat.itacademy.s04.t02.n02.fruit.filters;
+
+import java.util.Map;
+
+/**
+ * A completed write as it is replayed for later requests with the same {@code Idempotency-Key}. The fingerprint
+ * identifies the original request so that a key reused for a different one can be rejected.
+ */
+public record IdempotentResponse(String fingerprint, int status, String contentType, Map<String, String> headers,
+                                 byte[] body) {
+}
@@ -0,0 +1,36 @@
+package cat.itacademy.s04.t02.n02.fruit.filters;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Keeps responses for {@code ttl}, bounded by the approximate number of bytes they hold.
+ */
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    private final Cache<String, IdempotentResponse> responses;
+
+    public InMemoryIdempotencyStore(long maxBytes, Duration ttl) {
+        this.responses = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, IdempotentResponse response) ->
+                        ENTRY_OVERHEAD_BYTES + 2 * key.length() + response.body().length)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    @Override
+    public Optional<IdempotentResponse> find(String key) {
+        return Optional.ofNullable(responses.getIfPresent(key));
+    }
+
+    @Override
+    public void save(String key, IdempotentResponse response) {
+        responses.put(key, response);
+    }
+}
@@ -0,0 +1,108 @@
+package cat.itacademy.s04.t02.n02.fruit.filters;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Shares stored responses between instances through the {@code idempotency_keys} table, with the in-memory store
+ * in front of it so that replays on the instance that served the original do not touch the database. A reservation
+ * is a row with status 0, which expires after its lease if the instance holding it dies.
+ */
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IdempotencyStore cache;
+    private final Duration ttl;
+    private final Clock clock;
+
+    public JdbcIdempotencyStore(JdbcTemplate jdbcTemplate, IdempotencyStore cache, Duration ttl, Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cache = cache;
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    @Override
+    public Optional<IdempotentResponse> find(String key) {
+        Optional<IdempotentResponse> cached = cache.find(key);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        Optional<IdempotentResponse> stored = jdbcTemplate.query(
+                "select fingerprint, status, content_type, headers, body from idempotency_keys "
+                        + "where idempotency_key = ? and status > 0 and expires_at > ?",
+                (rs, rowNum) -> new IdempotentResponse(rs.getString("fingerprint"), rs.getInt("status"),
+                        rs.getString("content_type"), decodeHeaders(rs.getString("headers")), rs.getBytes("body")),
+                key, clock.millis()).stream().findFirst();
+        stored.ifPresent(response -> cache.save(key, response));
+        return stored;
+    }
+
+    @Override
+    public void save(String key, IdempotentResponse response) {
+        cache.save(key, response);
+        Object[] values = {response.fingerprint(), response.status(), response.contentType(),
+                encodeHeaders(response.headers()), response.body(), clock.millis() + ttl.toMillis(), key};
+        int updated = jdbcTemplate.update("update idempotency_keys "
+                + "set fingerprint = ?, status = ?, content_type = ?, headers = ?, body = ?, expires_at = ? "
+                + "where idempotency_key = ? and status = 0", values);
+        if (updated == 0) {
+            // the reservation expired, or the store was switched to jdbc while the request ran
+            try {
+                jdbcTemplate.update("insert into idempotency_keys "
+                        + "(fingerprint, status, content_type, headers, body, expires_at, idempotency_key) "
+                        + "values (?, ?, ?, ?, ?, ?, ?)", values);
+            } catch (DuplicateKeyException e) {
+                // another instance stored the same key first; its response is the one replayed from now on
+            }
+        }
+    }
+
+    @Override
+    public boolean reserve(String key, Duration lease) {
+        long now = clock.millis();
+        jdbcTemplate.update("delete from idempotency_keys where idempotency_key = ? and expires_at <= ?", key, now);
+        try {
+            jdbcTemplate.update("insert into idempotency_keys (idempotency_key, fingerprint, status, expires_at) "
+                    + "values (?, '', 0, ?)", key, now + lease.toMillis());
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void release(String key) {
+        jdbcTemplate.update("delete from idempotency_keys where idempotency_key = ? and status = 0", key);
+    }
+
+    @Scheduled(fixedDelayString = "${fruits.idempotency.purge-interval:PT10M}")
+    public int purgeExpired() {
+        return jdbcTemplate.update("delete from idempotency_keys where expires_at <= ?", clock.millis());
+    }
+
+    private static String encodeHeaders(Map<String, String> headers) {
+        return headers.entrySet().stream()
+                .map(header -> header.getKey() + ": " + header.getValue())
+                .collect(Collectors.joining("\n"));
+    }
+
+    private static Map<String, String> decodeHeaders(String headers) {
+        Map<String, String> decoded = new LinkedHashMap<>();
+        if (headers != null && !headers.isEmpty()) {
+            for (String line : headers.split("\n")) {
+                int separator = line.indexOf(": ");
+                decoded.put(line.substring(0, separator), line.substring(separator + 2));
+            }
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,145 @@
+package cat.itacademy.s04.t02.n02.fruit.filters;
+
+import cat.itacademy.s04.t02.n02.fruit.events.FruitChangedEvent;
+import cat.itacademy.s04.t02.n02.fruit.events.SupplierChangedEvent;
+import cat.itacademy.s04.t02.n02.fruit.events.SupplierFruitsRemovedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoded bodies of {@code GET /suppliers} and {@code GET /fruits?supplierId=}, held in direct buffers and bounded
+ * by the bytes they take, each with the ETag it was rendered at. Entries are dropped after the commit of any
+ * service-layer write that changes them, and after {@code ttl}.
+ */
+public class ResponseBodyCache {
+
+    public static final String SUPPLIERS = "suppliers";
+    public static final String FRUITS_BY_SUPPLIER = "fruitsBySupplier";
+
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    private final Cache<Key, Entry> entries;
+    private final long gzipMinBytes;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ResponseBodyCache(long maxBytes, Duration ttl, long gzipMinBytes) {
+        this.entries = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, Entry entry) -> ENTRY_OVERHEAD_BYTES + 2 * key.accept().length() + 2 * entry.eTag().length()
+                        + entry.body().capacity() + (entry.gzipped() == null ? 0 : entry.gzipped().capacity()))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.gzipMinBytes = gzipMinBytes;
+    }
+
+    public Cache<Key, Entry> entries() {
+        return entries;
+    }
+
+    public Optional<Entry> find(Key key) {
+        return Optional.ofNullable(entries.getIfPresent(key));
+    }
+
+    /**
+     * Taken before the response is rendered and passed back to {@link #put}, so that a body read before a write
+     * committed is not stored after the write has invalidated it.
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    public void put(Key key, String eTag, String contentType, byte[] body, long stamp) {
+        if (invalidations.get() != stamp) {
+            return;
+        }
+        Entry entry = new Entry(eTag, contentType, direct(body),
+                body.length >= gzipMinBytes ? direct(gzip(body)) : null);
+        entries.put(key, entry);
+        if (invalidations.get() != stamp) {
+            entries.asMap().remove(key, entry);
+        }
+    }
+
+    /**
+     * Drops {@code entry} unless another request has already replaced it.
+     */
+    public void remove(Key key, Entry entry) {
+        entries.asMap().remove(key, entry);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFruitChanged(FruitChangedEvent event) {
+        Set<Long> supplierIds = new HashSet<>();
+        if (event.before() != null) {
+            supplierIds.add(event.before().supplier().id());
+        }
+        if (event.after() != null) {
+            supplierIds.add(event.after().supplier().id());
+        }
+        invalidate(key -> key.collection().equals(FRUITS_BY_SUPPLIER) && supplierIds.contains(key.supplierId()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSupplierChanged(SupplierChangedEvent event) {
+        // fruits embed their supplier, and a deleted supplier's fruit list turns into a 404
+        Long supplierId = event.supplierId();
+        invalidate(key -> key.collection().equals(SUPPLIERS) || supplierId.equals(key.supplierId()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSupplierFruitsRemoved(SupplierFruitsRemovedEvent event) {
+        Set<Long> supplierIds = new HashSet<>();
+        supplierIds.add(event.supplier().id());
+        if (event.reassignedTo() != null) {
+            supplierIds.add(event.reassignedTo().id());
+        }
+        invalidate(key -> key.collection().equals(FRUITS_BY_SUPPLIER) && supplierIds.contains(key.supplierId()));
+    }
+
+    private void invalidate(Predicate<Key> affected) {
+        invalidations.incrementAndGet();
+        entries.asMap().keySet().removeIf(affected);
+    }
+
+    private static ByteBuffer direct(byte[] bytes) {
+        return ByteBuffer.allocateDirect(bytes.length).put(bytes).flip().asReadOnlyBuffer();
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * {@code accept} is the request's Accept header, since the same endpoint is served in several formats.
+     */
+    public record Key(String collection, Long supplierId, String accept) {
+    }
+
+    /**
+     * {@code eTag} is the ETag of the collection when the body was rendered; a hit is only served while it is
+     * still current. Read-only buffers; writers use a {@link ByteBuffer#duplicate()} so that concurrent hits do not
+     * share a position.
+     */
+    public record Entry(String eTag, String contentType, ByteBuffer body, ByteBuffer gzipped) {
+    }
+}
@@ -0,0 +1,152 @@
+package cat.itacademy.s04.t02.n02.fruit.filters;
+
+import cat.itacademy.s04.t02.n02.fruit.datasource.ReadYourWrites;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Serves {@code GET /suppliers} and {@code GET /fruits?supplierId=} from {@link ResponseBodyCache} without reaching
+ * the controllers. Misses go through the normal chain, reading from the primary, and their 200 responses are stored
+ * with the collection's ETag. Hits are only served while that ETag is still the current one, so writes made by other
+ * instances or straight to the database are never served stale, and answer conditional requests against it.
+ */
+public class ResponseBodyCacheFilter extends OncePerRequestFilter {
+
+    public static final String CACHE_HEADER = "X-Response-Cache";
+
+    private final ResponseBodyCache cache;
+    private final Function<ResponseBodyCache.Key, String> eTags;
+
+    /**
+     * {@code eTags} gives the current ETag of a key, the same one the controller would send.
+     */
+    public ResponseBodyCacheFilter(ResponseBodyCache cache, Function<ResponseBodyCache.Key, String> eTags) {
+        this.cache = cache;
+        this.eTags = eTags;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod()) || key(request).isEmpty();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ResponseBodyCache.Key key = key(request).orElseThrow();
+        Optional<ResponseBodyCache.Entry> cached = cache.find(key);
+        if (cached.isPresent()) {
+            Optional<String> eTag = currentETag(key);
+            if (eTag.isPresent() && eTag.get().equals(cached.get().eTag())) {
+                write(cached.get(), request, response);
+                return;
+            }
+            // changed by a write this instance did not see, or the supplier is gone and the controller answers 404
+            cache.remove(key, cached.get());
+        }
+
+        long stamp = cache.stamp();
+        ContentCachingResponseWrapper cachingResponse = new ContentCachingResponseWrapper(response);
+        // a lagging replica would otherwise be cached until the next write
+        ReadYourWrites.requirePrimary();
+        Optional<String> eTag;
+        try {
+            // read before the body, so a write committed in between makes the entry stale rather than wrong
+            eTag = currentETag(key);
+            chain.doFilter(request, cachingResponse);
+        } finally {
+            ReadYourWrites.clear();
+        }
+        if (eTag.isPresent() && !request.isAsyncStarted() && cachingResponse.getStatus() == HttpStatus.OK.value()
+                && cachingResponse.getContentType() != null) {
+            cache.put(key, eTag.get(), cachingResponse.getContentType(), cachingResponse.getContentAsByteArray(),
+                    stamp);
+            cachingResponse.setHeader(CACHE_HEADER, "MISS");
+        }
+        cachingResponse.copyBodyToResponse();
+    }
+
+    private Optional<String> currentETag(ResponseBodyCache.Key key) {
+        try {
+            return Optional.of(eTags.apply(key));
+        } catch (EntityNotFoundException e) {
+            return Optional.empty();
+        }
+    }
+
+    private void write(ResponseBodyCache.Entry entry, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        response.setHeader(CACHE_HEADER, "HIT");
+        if (new ServletWebRequest(request, response).checkNotModified(entry.eTag())) {
+            return;
+        }
+
+        ByteBuffer body = entry.body().duplicate();
+        if (entry.gzipped() != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (acceptsGzip(request)) {
+                // Tomcat leaves responses that already have a Content-Encoding alone
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+                body = entry.gzipped().duplicate();
+            }
+        }
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(entry.contentType());
+        response.setContentLength(body.remaining());
+        WritableByteChannel channel = Channels.newChannel(response.getOutputStream());
+        while (body.hasRemaining()) {
+            channel.write(body);
+        }
+    }
+
+    private static Optional<ResponseBodyCache.Key> key(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        Map<String, String[]> params = request.getParameterMap();
+        String accept = request.getHeader(HttpHeaders.ACCEPT) == null ? "*/*" : request.getHeader(HttpHeaders.ACCEPT);
+        if (path.equals("/suppliers") && params.isEmpty()) {
+            return Optional.of(new ResponseBodyCache.Key(ResponseBodyCache.SUPPLIERS, null, accept));
+        }
+        if (path.equals("/fruits") && params.size() == 1 && params.containsKey("supplierId")
+                && params.get("supplierId").length == 1) {
+            try {
+                long supplierId = Long.parseLong(params.get("supplierId")[0]);
+                return Optional.of(new ResponseBodyCache.Key(ResponseBodyCache.FRUITS_BY_SUPPLIER, supplierId, accept));
+            } catch (NumberFormatException e) {
+                return Optional.empty();
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equals("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
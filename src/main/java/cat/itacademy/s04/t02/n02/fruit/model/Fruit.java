@@ -5,9 +5,13 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
-@Table(name = "fruits")
+@Table(name = "fruits", indexes = {
+        @Index(name = "idx_fruits_supplier_name_weight", columnList = "supplier_id, name, weight_in_kilos"),
+        @Index(name = "idx_fruits_name", columnList = "name, weight_in_kilos")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -15,7 +19,7 @@ import lombok.Setter;
 public class Fruit {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     private Long id;
 
     @Column(nullable = false)
@@ -24,7 +28,19 @@ public class Fruit {
     @Column(nullable = false, name="weight_in_kilos")
     private int weightInKilos;
 
-    @ManyToOne(optional = false)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @JoinColumn(name = "supplier_id", nullable = false)
     private Supplier supplier;
+
+    @Version
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private long version;
+
+    public Fruit(Long id, String name, int weightInKilos, Supplier supplier) {
+        this.id = id;
+        this.name = name;
+        this.weightInKilos = weightInKilos;
+        this.supplier = supplier;
+    }
 }
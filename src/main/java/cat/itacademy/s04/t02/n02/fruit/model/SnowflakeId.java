@@ -0,0 +1,18 @@
+package cat.itacademy.s04.t02.n02.fruit.model;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Assigns the id from {@link SnowflakeIds} before the insert, unless the entity already has one, when the catalog is
+ * sharded; otherwise the identity column does.
+ */
+@IdGeneratorType(SnowflakeIdGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface SnowflakeId {
+}
@@ -0,0 +1,54 @@
+package cat.itacademy.s04.t02.n02.fruit.model;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.AnnotationBasedGenerator;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+import org.hibernate.generator.GeneratorCreationContext;
+import org.hibernate.id.IdentityGenerator;
+
+import java.lang.reflect.Member;
+import java.util.EnumSet;
+
+/**
+ * Time-ordered ids from {@link SnowflakeIds} when {@value #ENABLED} is set, which sharding needs because rows are
+ * spread over several databases. Otherwise the database's identity column assigns them.
+ */
+public class SnowflakeIdGenerator extends IdentityGenerator
+        implements BeforeExecutionGenerator, AnnotationBasedGenerator<SnowflakeId> {
+
+    public static final String ENABLED = "fruits.ids.snowflake";
+
+    private boolean snowflake;
+
+    @Override
+    public void initialize(SnowflakeId config, Member member, GeneratorCreationContext context) {
+        snowflake = context.getServiceRegistry().requireService(ConfigurationService.class)
+                .getSetting(ENABLED, StandardConverters.BOOLEAN, false);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+                           EventType eventType) {
+        return currentValue != null ? currentValue : SnowflakeIds.next();
+    }
+
+    @Override
+    public boolean generatedOnExecution() {
+        return !snowflake;
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+
+    // Suppliers copied to other shards and fruits moved between them keep their id
+    @Override
+    public boolean allowAssignedIdentifiers() {
+        return snowflake;
+    }
+}
@@ -0,0 +1,66 @@
+package cat.itacademy.s04.t02.n02.fruit.model;
+
+import java.time.Instant;
+import java.util.function.LongSupplier;
+
+/**
+ * Time-ordered 64-bit ids: 41 bits of milliseconds since 2025-01-01, a 10-bit node id and a 12-bit sequence.
+ * Ids handed out by one node always increase, even if the wall clock steps back, so they are unique across shards
+ * as long as every application instance writing to the same databases has its own node id.
+ */
+public final class SnowflakeIds {
+
+    public static final int MAX_NODE_ID = 1023;
+
+    static final long EPOCH = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+    private static volatile SnowflakeIds shared = new SnowflakeIds(0, System::currentTimeMillis);
+
+    private final long nodeId;
+    private final LongSupplier clock;
+    private long lastTimestamp = -1;
+    private long sequence;
+
+    SnowflakeIds(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+    }
+
+    public static void configure(int nodeId) {
+        if (shared.nodeId != nodeId) {
+            shared = new SnowflakeIds(nodeId, System::currentTimeMillis);
+        }
+    }
+
+    public static long next() {
+        return shared.nextId();
+    }
+
+    /** Highest id any node can hand out at or before the given wall-clock time. */
+    public static long maxIdAt(long epochMillis) {
+        return ((epochMillis - EPOCH + 1) << (NODE_BITS + SEQUENCE_BITS)) - 1;
+    }
+
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+
+    synchronized long nextId() {
+        long now = clock.getAsLong() - EPOCH;
+        if (now > lastTimestamp) {
+            lastTimestamp = now;
+            sequence = 0;
+        } else if (++sequence > MAX_SEQUENCE) {
+            // Borrow the next millisecond instead of waiting for it; the clock catches up under normal load
+            lastTimestamp++;
+            sequence = 0;
+        }
+        return lastTimestamp << (NODE_BITS + SEQUENCE_BITS) | nodeId << SEQUENCE_BITS | sequence;
+    }
+}
@@ -2,9 +2,12 @@ package cat.itacademy.s04.t02.n02.fruit.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.util.Locale;
 
 @Entity
-@Table(name = "suppliers", uniqueConstraints = @UniqueConstraint(columnNames = "name"))
+@Table(name = "suppliers", indexes = @Index(name = "uk_suppliers_normalized_name", columnList = "normalized_name", unique = true))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -12,7 +15,7 @@ import lombok.*;
 public class Supplier {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     private Long id;
 
     @Column(nullable = false)
@@ -20,4 +23,23 @@ public class Supplier {
 
     @Column(nullable = false)
     private String country;
+
+    // Generated by the database as lower(trim(name)); its unique index makes names case-insensitively unique
+    @Column(name = "normalized_name", insertable = false, updatable = false)
+    private String normalizedName;
+
+    @Version
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private long version;
+
+    public Supplier(Long id, String name, String country) {
+        this.id = id;
+        this.name = name;
+        this.country = country;
+    }
+
+    public static String normalizeName(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
 }
\ No newline at end of file
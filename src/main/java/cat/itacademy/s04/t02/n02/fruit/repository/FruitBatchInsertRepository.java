@@ -0,0 +1,13 @@
+package cat.itacademy.s04.t02.n02.fruit.repository;
+
+import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+
+import java.util.List;
+
+public interface FruitBatchInsertRepository {
+
+    /**
+     * Inserts the fruits as one JDBC batch and sets the id of each one. The fruits are not managed afterwards.
+     */
+    void insertAll(List<Fruit> fruits);
+}
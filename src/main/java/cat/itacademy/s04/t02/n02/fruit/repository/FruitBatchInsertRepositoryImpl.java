@@ -0,0 +1,66 @@
+package cat.itacademy.s04.t02.n02.fruit.repository;
+
+import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+import cat.itacademy.s04.t02.n02.fruit.model.SnowflakeIds;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+class FruitBatchInsertRepositoryImpl implements FruitBatchInsertRepository {
+
+    private static final String INSERT =
+            "insert into fruits (name, weight_in_kilos, supplier_id, version) values (?, ?, ?, 0)";
+    private static final String INSERT_WITH_ID =
+            "insert into fruits (id, name, weight_in_kilos, supplier_id, version) values (?, ?, ?, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean snowflakeIds;
+
+    FruitBatchInsertRepositoryImpl(JdbcTemplate jdbcTemplate, @Value("${fruits.sharding.enabled:false}") boolean sharded) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.snowflakeIds = sharded;
+    }
+
+    // Hibernate can't batch inserts into an identity column, since it reads back each id before the next insert.
+    // Connector/J rewrites the batch into multi-row inserts and still reports one generated key per row.
+    @Override
+    public void insertAll(List<Fruit> fruits) {
+        if (fruits.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = snowflakeIds
+                    ? connection.prepareStatement(INSERT_WITH_ID)
+                    : connection.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
+                for (Fruit fruit : fruits) {
+                    int column = 1;
+                    if (snowflakeIds) {
+                        fruit.setId(SnowflakeIds.next());
+                        statement.setLong(column++, fruit.getId());
+                    }
+                    statement.setString(column++, fruit.getName());
+                    statement.setInt(column++, fruit.getWeightInKilos());
+                    statement.setLong(column, fruit.getSupplier().getId());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                if (!snowflakeIds) {
+                    try (ResultSet keys = statement.getGeneratedKeys()) {
+                        for (Fruit fruit : fruits) {
+                            if (!keys.next()) {
+                                throw new IllegalStateException("Missing generated id for fruit " + fruit.getName());
+                            }
+                            fruit.setId(keys.getLong(1));
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+    }
+}
@@ -1,10 +1,89 @@
 package cat.itacademy.s04.t02.n02.fruit.repository;
 
+import cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitStatsGroupDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.VersionedIdDTO;
 import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface FruitRepository extends JpaRepository<Fruit, Long>, FruitBatchInsertRepository {
+
+    String DTO_PROJECTION = "select new cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO("
+            + "f.id, f.name, f.weightInKilos, s.id, s.name, s.country) "
+            + "from Fruit f join f.supplier s ";
 
-public interface FruitRepository extends JpaRepository<Fruit, Long> {
     List<Fruit> findBySupplierId(Long supplierId);
+
+    boolean existsBySupplierId(Long supplierId);
+
+    @Query("select f.version from Fruit f where f.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    // The supplier's version is added in because fruits are served with their supplier embedded
+    @Query("select new cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO("
+            + "count(f), max(f.id), sum(f.version + s.version), "
+            + "sum(mod(cast(mod(f.id, 2147483647) as Long) * 1000003 "
+            + "+ cast(mod(f.version + s.version, 2147483647) as Long) * 999983, 2147483647))) "
+            + "from Fruit f join f.supplier s where s.id = :supplierId")
+    CollectionVersionDTO findCollectionVersionBySupplierId(@Param("supplierId") Long supplierId);
+
+    @Query("select new cat.itacademy.s04.t02.n02.fruit.dto.VersionedIdDTO(f.id, f.version + s.version) "
+            + "from Fruit f join f.supplier s where f.id > :afterId order by f.id")
+    List<VersionedIdDTO> findVersionPageAfter(@Param("afterId") Long afterId, Limit limit);
+
+    @Modifying(flushAutomatically = true)
+    @Query("delete from Fruit f where f.supplier = :supplier")
+    int deleteAllBySupplier(@Param("supplier") Supplier supplier);
+
+    @Modifying(flushAutomatically = true)
+    @Query("update versioned Fruit f set f.supplier = :target where f.supplier = :source")
+    int reassignSupplier(@Param("source") Supplier source, @Param("target") Supplier target);
+
+    @Query(DTO_PROJECTION + "order by f.id")
+    List<FruitResponseDTO> findAllDtos();
+
+    @Query(DTO_PROJECTION + "where f.id > :afterId order by f.id")
+    List<FruitResponseDTO> findDtoPageAfter(@Param("afterId") Long afterId, Limit limit);
+
+    @Query(DTO_PROJECTION + "where f.id in :ids")
+    List<FruitResponseDTO> findDtosByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(DTO_PROJECTION + "where s.id = :supplierId order by f.id")
+    List<FruitResponseDTO> findDtosBySupplierId(@Param("supplierId") Long supplierId);
+
+    String STATS_PROJECTION = "count(f), sum(f.weightInKilos), min(f.weightInKilos), max(f.weightInKilos)) "
+            + "from Fruit f join f.supplier s ";
+
+    @Query("select new cat.itacademy.s04.t02.n02.fruit.dto.FruitStatsGroupDTO(s.name, " + STATS_PROJECTION
+            + "group by s.id, s.name")
+    List<FruitStatsGroupDTO> findStatsBySupplier();
+
+    @Query("select new cat.itacademy.s04.t02.n02.fruit.dto.FruitStatsGroupDTO(s.country, " + STATS_PROJECTION
+            + "group by s.country")
+    List<FruitStatsGroupDTO> findStatsByCountry();
+
+    @Query("select new cat.itacademy.s04.t02.n02.fruit.dto.FruitStatsGroupDTO(f.name, " + STATS_PROJECTION
+            + "group by f.name")
+    List<FruitStatsGroupDTO> findStatsByName();
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select f from Fruit f join fetch f.supplier order by f.id")
+    Stream<Fruit> streamAllWithSupplier();
 }
@@ -1,8 +1,26 @@
 package cat.itacademy.s04.t02.n02.fruit.repository;
 
+import cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO;
 import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface SupplierRepository extends JpaRepository<Supplier, Long> {
-    boolean existsByName(String name);
+import java.util.List;
+import java.util.Optional;
+
+public interface SupplierRepository extends JpaRepository<Supplier, Long>, SupplierUpsertRepository {
+    Optional<Supplier> findByNormalizedName(String normalizedName);
+
+    @Query("select s.version from Supplier s where s.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Query("select new cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO(count(s), max(s.id), sum(s.version), "
+            + "sum(mod(cast(mod(s.id, 2147483647) as Long) * 1000003 "
+            + "+ cast(mod(s.version, 2147483647) as Long) * 999983, 2147483647))) "
+            + "from Supplier s")
+    CollectionVersionDTO findCollectionVersion();
+
+    List<Supplier> findByIdGreaterThanOrderById(Long afterId, Limit limit);
 }
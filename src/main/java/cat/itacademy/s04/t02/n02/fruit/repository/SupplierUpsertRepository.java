@@ -0,0 +1,15 @@
+package cat.itacademy.s04.t02.n02.fruit.repository;
+
+public interface SupplierUpsertRepository {
+
+    /**
+     * Inserts the supplier, or updates the one whose normalized name matches, in a single statement.
+     */
+    Upserted upsertByName(String name, String country);
+
+    /**
+     * {@code created} is false when an existing supplier was updated or already had these values.
+     */
+    record Upserted(Long id, boolean created) {
+    }
+}
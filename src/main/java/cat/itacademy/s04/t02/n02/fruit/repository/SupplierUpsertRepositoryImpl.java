@@ -0,0 +1,96 @@
+package cat.itacademy.s04.t02.n02.fruit.repository;
+
+import cat.itacademy.s04.t02.n02.fruit.model.SnowflakeIds;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+import java.util.Objects;
+
+class SupplierUpsertRepositoryImpl implements SupplierUpsertRepository {
+
+    // LAST_INSERT_ID(id) makes the statement report the existing row's id when the update branch runs.
+    // Assignments run left to right, so version is compared against the old name and country first.
+    private static final String MYSQL_UPSERT = """
+            insert into suppliers (id, name, country, version) values (?, ?, ?, 0) as incoming
+            on duplicate key update
+                version = suppliers.version + (cast(suppliers.name as binary) <> cast(incoming.name as binary)
+                        or cast(suppliers.country as binary) <> cast(incoming.country as binary)),
+                id = last_insert_id(suppliers.id),
+                name = incoming.name,
+                country = incoming.country""";
+
+    // The rows the MERGE inserted or changed, with version 0 only for an inserted one
+    private static final String MERGE_UPSERT = """
+            select id, version from final table (merge into suppliers s
+            using (select cast(? as bigint) as id, cast(? as varchar(255)) as name, cast(? as varchar(255)) as country) incoming
+            on s.normalized_name = lower(trim(incoming.name))
+            when matched and (s.name <> incoming.name or s.country <> incoming.country) then
+                update set name = incoming.name, country = incoming.country, version = s.version + 1
+            when not matched then
+                insert (id, name, country, version) values (incoming.id, incoming.name, incoming.country, 0))""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean snowflakeIds;
+    private volatile Boolean mysql;
+
+    SupplierUpsertRepositoryImpl(JdbcTemplate jdbcTemplate, @Value("${fruits.sharding.enabled:false}") boolean sharded) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.snowflakeIds = sharded;
+    }
+
+    @Override
+    public Upserted upsertByName(String name, String country) {
+        // Same ids as SnowflakeIdGenerator: a null id lets the identity column assign one
+        Long id = snowflakeIds ? SnowflakeIds.next() : null;
+        return isMySql() ? mySqlUpsert(id, name, country) : mergeUpsert(id, name, country);
+    }
+
+    private Upserted mySqlUpsert(Long id, String name, String country) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        int affected = jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(MYSQL_UPSERT, Statement.RETURN_GENERATED_KEYS);
+            statement.setObject(1, id, Types.BIGINT);
+            statement.setString(2, name);
+            statement.setString(3, country);
+            return statement;
+        }, keys);
+        // The reported id is the one generated by the insert or set by LAST_INSERT_ID(id), and 0 when a snowflake id
+        // was inserted. Connector/J derives one key per affected row from it, so only the first is used.
+        long reported = keys.getKeyList().isEmpty() ? 0
+                : ((Number) keys.getKeyList().get(0).values().iterator().next()).longValue();
+        Long upsertedId = reported > 0 ? reported : id;
+        // 1 for an insert, 2 for a changed row, and 0 for an unchanged one, or 1 when the connection reports found
+        // rows as Connector/J does by default. That unchanged row is then announced as created, which listeners
+        // apply as a no-op.
+        boolean created = affected == 1 && (id == null || id.equals(upsertedId));
+        return new Upserted(upsertedId, created);
+    }
+
+    // H2 and other databases: standard MERGE, only used outside production
+    private Upserted mergeUpsert(Long id, String name, String country) {
+        List<Upserted> changed = jdbcTemplate.query(MERGE_UPSERT,
+                (rs, rowNum) -> new Upserted(rs.getLong("id"), rs.getLong("version") == 0), id, name, country);
+        if (!changed.isEmpty()) {
+            return changed.get(0);
+        }
+        return new Upserted(jdbcTemplate.queryForObject("select id from suppliers where normalized_name = lower(trim(?))",
+                Long.class, name), false);
+    }
+
+    private boolean isMySql() {
+        if (mysql == null) {
+            mysql = Objects.requireNonNull(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    DatabaseDriver.fromProductName(connection.getMetaData().getDatabaseProductName())
+                            == DatabaseDriver.MYSQL));
+        }
+        return mysql;
+    }
+}
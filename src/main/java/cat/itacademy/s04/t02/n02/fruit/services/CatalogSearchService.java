@@ -0,0 +1,13 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+
+import java.util.List;
+
+public interface CatalogSearchService {
+    List<FruitResponseDTO> searchFruits(String query, boolean fuzzy, Integer minWeight, Integer maxWeight,
+                                        String country, Integer limit);
+    List<SupplierResponseDTO> searchSuppliers(String query, boolean fuzzy, String country, Integer limit);
+    void rebuild();
+}
@@ -0,0 +1,238 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardRouter;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.events.FruitChangedEvent;
+import cat.itacademy.s04.t02.n02.fruit.events.SupplierChangedEvent;
+import cat.itacademy.s04.t02.n02.fruit.events.SupplierFruitsRemovedEvent;
+import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import cat.itacademy.s04.t02.n02.fruit.repository.SupplierRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+@Service
+public class CatalogSearchServiceImpl implements CatalogSearchService {
+
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+
+    static final int REBUILD_PAGE_SIZE = 1000;
+
+    private final FruitRepository fruitRepository;
+    private final SupplierRepository supplierRepository;
+    private final ShardRouter shardRouter;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Indexes indexes = new Indexes();
+    private List<Consumer<Indexes>> changesDuringRebuild;
+
+    public CatalogSearchServiceImpl(FruitRepository fruitRepository, SupplierRepository supplierRepository,
+                                    ShardRouter shardRouter) {
+        this.fruitRepository = fruitRepository;
+        this.supplierRepository = supplierRepository;
+        this.shardRouter = shardRouter;
+    }
+
+    @Override
+    public List<FruitResponseDTO> searchFruits(String query, boolean fuzzy, Integer minWeight, Integer maxWeight,
+                                               String country, Integer limit) {
+        if (minWeight != null && maxWeight != null && minWeight > maxWeight) {
+            throw new IllegalArgumentException("minWeight cannot be greater than maxWeight");
+        }
+        Predicate<FruitResponseDTO> filter = fruit ->
+                (minWeight == null || fruit.weightInKilos() >= minWeight)
+                        && (maxWeight == null || fruit.weightInKilos() <= maxWeight)
+                        && (country == null || fruit.supplier().country().equalsIgnoreCase(country));
+        return search(query, fuzzy, limit, i -> i.fruits, filter, FruitResponseDTO::name, FruitResponseDTO::id);
+    }
+
+    @Override
+    public List<SupplierResponseDTO> searchSuppliers(String query, boolean fuzzy, String country, Integer limit) {
+        Predicate<SupplierResponseDTO> filter = supplier ->
+                country == null || supplier.country().equalsIgnoreCase(country);
+        return search(query, fuzzy, limit, i -> i.suppliers, filter, SupplierResponseDTO::name, SupplierResponseDTO::id);
+    }
+
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${fruits.search.rebuild-interval:PT10M}",
+            initialDelayString = "${fruits.search.rebuild-interval:PT10M}")
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Indexes fresh = new Indexes();
+        boolean loaded = false;
+        try {
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                loadFruits(fresh, shard);
+            }
+            loadSuppliers(fresh);
+            loaded = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (loaded) {
+                    changesDuringRebuild.forEach(change -> change.accept(fresh));
+                    indexes = fresh;
+                }
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFruitChanged(FruitChangedEvent event) {
+        apply(i -> {
+            if (event.after() != null) {
+                i.putFruit(event.after());
+            } else {
+                i.removeFruit(event.before().id());
+            }
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSupplierChanged(SupplierChangedEvent event) {
+        apply(i -> {
+            if (event.after() == null) {
+                i.suppliers.remove(event.before().id());
+                return;
+            }
+            i.suppliers.put(event.after().id(), event.after());
+            if (event.before() != null) {
+                i.fruitsOf(event.after().id()).forEach(fruit -> i.putFruit(
+                        new FruitResponseDTO(fruit.id(), fruit.name(), fruit.weightInKilos(), event.after())));
+            }
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSupplierFruitsRemoved(SupplierFruitsRemovedEvent event) {
+        apply(i -> i.fruitsOf(event.supplier().id()).forEach(fruit -> {
+            if (event.deleted()) {
+                i.removeFruit(fruit.id());
+            } else {
+                i.putFruit(new FruitResponseDTO(fruit.id(), fruit.name(), fruit.weightInKilos(), event.reassignedTo()));
+            }
+        }));
+    }
+
+    private <T> List<T> search(String query, boolean fuzzy, Integer limit, Function<Indexes, NameIndex<T>> index,
+                               Predicate<T> filter, Function<T, String> name, Function<T, Long> id) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query must not be blank");
+        }
+        if (limit != null && limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        int maxResults = limit == null ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+
+        lock.readLock().lock();
+        try {
+            NameIndex<T> names = index.apply(indexes);
+            Map<Long, Integer> ranks = names.match(query, fuzzy);
+            return ranks.keySet().stream()
+                    .map(names::get)
+                    .filter(filter)
+                    .sorted(Comparator.<T>comparingInt(doc -> ranks.get(id.apply(doc)))
+                            .thenComparing(name, String.CASE_INSENSITIVE_ORDER)
+                            .thenComparing(id))
+                    .limit(maxResults)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(Consumer<Indexes> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(indexes);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Keyset pages, so only one page of rows is held besides the index being built
+    private void loadFruits(Indexes fresh, int shard) {
+        long afterId = 0;
+        List<FruitResponseDTO> page;
+        do {
+            long from = afterId;
+            page = shardRouter.read(shard, () -> fruitRepository.findDtoPageAfter(from, Limit.of(REBUILD_PAGE_SIZE)));
+            page.forEach(fresh::putFruit);
+            afterId = page.isEmpty() ? afterId : page.get(page.size() - 1).id();
+        } while (page.size() == REBUILD_PAGE_SIZE);
+    }
+
+    private void loadSuppliers(Indexes fresh) {
+        long afterId = 0;
+        List<Supplier> page;
+        do {
+            page = supplierRepository.findByIdGreaterThanOrderById(afterId, Limit.of(REBUILD_PAGE_SIZE));
+            page.forEach(supplier -> fresh.suppliers.put(supplier.getId(),
+                    new SupplierResponseDTO(supplier.getId(), supplier.getName(), supplier.getCountry())));
+            afterId = page.isEmpty() ? afterId : page.get(page.size() - 1).getId();
+        } while (page.size() == REBUILD_PAGE_SIZE);
+    }
+
+    private static final class Indexes {
+        private final NameIndex<FruitResponseDTO> fruits = new NameIndex<>(FruitResponseDTO::name);
+        private final NameIndex<SupplierResponseDTO> suppliers = new NameIndex<>(SupplierResponseDTO::name);
+        // so supplier events touch only that supplier's fruits instead of scanning the catalog under the write lock
+        private final Map<Long, Set<Long>> fruitIdsBySupplier = new HashMap<>();
+
+        void putFruit(FruitResponseDTO fruit) {
+            removeFruit(fruit.id());
+            fruits.put(fruit.id(), fruit);
+            fruitIdsBySupplier.computeIfAbsent(fruit.supplier().id(), id -> new HashSet<>()).add(fruit.id());
+        }
+
+        void removeFruit(Long id) {
+            FruitResponseDTO previous = fruits.get(id);
+            if (previous == null) {
+                return;
+            }
+            fruits.remove(id);
+            Set<Long> ids = fruitIdsBySupplier.get(previous.supplier().id());
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                fruitIdsBySupplier.remove(previous.supplier().id());
+            }
+        }
+
+        List<FruitResponseDTO> fruitsOf(Long supplierId) {
+            return fruitIdsBySupplier.getOrDefault(supplierId, Set.of()).stream()
+                    .map(fruits::get)
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.CatalogChangesDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+
+public interface ChangeFeedService {
+    CatalogChangesDTO getChanges(String since, Integer limit);
+    int purgeExpired();
+
+    /**
+     * Records a change for every fruit {@code supplier} has on the current shard, as deleted, or as moved to
+     * {@code reassignedTo} when given. Runs in the caller's transaction, right before its bulk delete or move.
+     */
+    void recordSupplierFruitsRemoved(SupplierResponseDTO supplier, SupplierResponseDTO reassignedTo);
+}
@@ -0,0 +1,382 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.config.ObservabilityConfig;
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardRouter;
+import cat.itacademy.s04.t02.n02.fruit.dto.CatalogChangeDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.CatalogChangesDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.events.FruitChangedEvent;
+import cat.itacademy.s04.t02.n02.fruit.events.SupplierChangedEvent;
+import cat.itacademy.s04.t02.n02.fruit.exception.ChangeTokenExpiredException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.jdbc.DatabaseDriver;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Transactional outbox behind {@code GET /changes}. Change events are collected per transaction and appended to
+ * {@code catalog_changes} in one batch just before it commits, so the rows commit or roll back with the write that
+ * published them. Their positions come from a counter row that stays locked until the commit, so positions become
+ * visible in order and without gaps, and a client can never read past a change that has not committed yet.
+ * <p>
+ * That lock is the deliberate cost of gapless ordering: on each shard, every writing transaction, bulk import batches
+ * and weight delta flushes included, waits for the one before it to commit, from the end of its work to its commit.
+ * The wait and the time the row is held are published as {@value #SEQUENCE_WAIT_TIMER} and
+ * {@value #SEQUENCE_HELD_TIMER}; if they grow, positions have to come from an auto-increment id read up to a
+ * commit-visibility watermark instead.
+ */
+@Service
+@Timed(ObservabilityConfig.SERVICE_TIMER)
+public class ChangeFeedServiceImpl implements ChangeFeedService {
+
+    public static final int DEFAULT_LIMIT = 500;
+    public static final int MAX_LIMIT = 1000;
+
+    static final String FRUIT = "fruit";
+    static final String SUPPLIER = "supplier";
+    static final String UPSERT = "upsert";
+    static final String DELETE = "delete";
+
+    static final String SEQUENCE_WAIT_TIMER = "fruits.changes.sequence.wait";
+    static final String SEQUENCE_HELD_TIMER = "fruits.changes.sequence.held";
+
+    // Payloads as FruitResponseDTO would serialize them, built by the database in its own JSON syntax
+    private static final String MYSQL_REASSIGNED_CHANGES = """
+            insert into catalog_changes (id, entity, entity_id, operation, payload, created_at)
+            select ? + row_number() over (order by f.id) - 1, ?, f.id, ?,
+                json_object('id', f.id, 'name', f.name, 'weightInKilos', f.weight_in_kilos,
+                        'supplier', json_object('id', ?, 'name', ?, 'country', ?)), ?
+            from fruits f where f.supplier_id = ?""";
+
+    private static final String REASSIGNED_CHANGES = """
+            insert into catalog_changes (id, entity, entity_id, operation, payload, created_at)
+            select cast(? as bigint) + row_number() over (order by f.id) - 1, ?, f.id, ?,
+                cast(json_object('id': f.id, 'name': f.name, 'weightInKilos': f.weight_in_kilos,
+                        'supplier': json_object('id': cast(? as bigint), 'name': cast(? as varchar(255)),
+                                'country': cast(? as varchar(255)))) as varchar(4096)), ?
+            from fruits f where f.supplier_id = ?""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ShardRouter shardRouter;
+    private final EntityManagerFactory entityManagerFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration retention;
+    private final Timer sequenceWait;
+    private final Timer sequenceHeld;
+    private volatile Boolean mysql;
+
+    public ChangeFeedServiceImpl(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, ShardRouter shardRouter,
+                                 EntityManagerFactory entityManagerFactory,
+                                 PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                 @Value("${fruits.changes.retention:P7D}") Duration retention) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.shardRouter = shardRouter;
+        this.entityManagerFactory = entityManagerFactory;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retention = retention;
+        this.sequenceWait = Timer.builder(SEQUENCE_WAIT_TIMER)
+                .description("Time spent waiting for the change feed counter row")
+                .register(meterRegistry);
+        this.sequenceHeld = Timer.builder(SEQUENCE_HELD_TIMER)
+                .description("Time the change feed counter row stays locked, until the transaction ends")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onFruitChanged(FruitChangedEvent event) {
+        record(FRUIT, event.fruitId(), event.after());
+    }
+
+    @EventListener
+    public void onSupplierChanged(SupplierChangedEvent event) {
+        record(SUPPLIER, event.supplierId(), event.after());
+    }
+
+    /**
+     * One INSERT ... SELECT, so the supplier's fruits are never loaded. On MySQL it takes shared locks on the rows it
+     * reads, and on the gap after them in the supplier index, so none can be added, changed or removed before the
+     * caller's bulk statement runs.
+     */
+    @Override
+    public void recordSupplierFruitsRemoved(SupplierResponseDTO supplier, SupplierResponseDTO reassignedTo) {
+        // changes published earlier in the transaction keep their place ahead of these
+        PendingChanges pending = pendingChanges();
+        append(pending.changes);
+        pending.changes.clear();
+        EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+        if (entityManager != null) {
+            entityManager.flush();
+        }
+        long waitStart = System.nanoTime();
+        long first = jdbcTemplate.queryForObject(
+                "select last_id from catalog_change_sequence where id = 1 for update", Long.class) + 1;
+        sequenceLocked(waitStart);
+        long createdAt = System.currentTimeMillis();
+        int appended;
+        if (reassignedTo == null) {
+            appended = jdbcTemplate.update("insert into catalog_changes (id, entity, entity_id, operation, payload, created_at) "
+                            + "select ? + row_number() over (order by f.id) - 1, ?, f.id, ?, null, ? "
+                            + "from fruits f where f.supplier_id = ?",
+                    first, FRUIT, DELETE, createdAt, supplier.id());
+        } else {
+            appended = jdbcTemplate.update(isMySql() ? MYSQL_REASSIGNED_CHANGES : REASSIGNED_CHANGES,
+                    first, FRUIT, UPSERT, reassignedTo.id(), reassignedTo.name(), reassignedTo.country(), createdAt,
+                    supplier.id());
+        }
+        jdbcTemplate.update("update catalog_change_sequence set last_id = last_id + ? where id = 1", appended);
+    }
+
+    @Override
+    public CatalogChangesDTO getChanges(String since, Integer limit) {
+        if (limit != null && limit < 1) {
+            throw new IllegalArgumentException("Limit must be greater than 0");
+        }
+        int pageSize = limit == null ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+        if (since == null) {
+            long[] head = shardRouter.readAll(() -> jdbcTemplate.queryForObject(
+                            "select last_id from catalog_change_sequence where id = 1", Long.class))
+                    .stream().mapToLong(Long::longValue).toArray();
+            return new CatalogChangesDTO(List.of(), encodeToken(head), false);
+        }
+
+        long[] positions = decodeToken(since, shardRouter.shardCount());
+        // Each shard keeps its own log; the first pageSize + 1 changes overall are among each shard's first pageSize + 1
+        List<ShardLog> logs = shardRouter.readEach(shard ->
+                new ShardLog(shard, readLog(positions[shard], pageSize + 1)));
+
+        // Shards have no common order, so their logs are merged by commit time, each one keeping its own order
+        List<CatalogChangeDTO> page = new ArrayList<>(pageSize);
+        while (page.size() < pageSize) {
+            ShardLog next = logs.stream()
+                    .filter(ShardLog::hasNext)
+                    .min(Comparator.comparingLong((ShardLog log) -> log.peek().createdAt()).thenComparingInt(ShardLog::shard))
+                    .orElse(null);
+            if (next == null) {
+                break;
+            }
+            ChangeRow row = next.poll();
+            positions[next.shard()] = row.id();
+            page.add(row.toDto(encodeToken(positions)));
+        }
+        boolean hasMore = logs.stream().anyMatch(ShardLog::hasNext);
+        return new CatalogChangesDTO(page, encodeToken(positions), hasMore);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${fruits.changes.purge-interval:PT10M}")
+    public int purgeExpired() {
+        long cutoff = System.currentTimeMillis() - retention.toMillis();
+        int purged = 0;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            purged += shardRouter.write(shard, () ->
+                    jdbcTemplate.update("delete from catalog_changes where created_at < ?", cutoff));
+        }
+        return purged;
+    }
+
+    /**
+     * Positions have no gaps, so a token is still complete as long as the change right after it has not been purged.
+     */
+    private List<ChangeRow> readLog(long position, int limit) {
+        Boolean expired = jdbcTemplate.queryForObject(
+                "select coalesce((select min(id) from catalog_changes), s.last_id + 1) > ? "
+                        + "from catalog_change_sequence s where s.id = 1",
+                Boolean.class, position + 1);
+        if (Boolean.TRUE.equals(expired)) {
+            throw new ChangeTokenExpiredException("Change token is older than the retained history, resync the catalog");
+        }
+        return jdbcTemplate.query(
+                "select id, entity, entity_id, operation, payload, created_at from catalog_changes "
+                        + "where id > ? order by id limit ?",
+                (rs, rowNum) -> new ChangeRow(rs.getLong("id"), rs.getString("entity"), rs.getLong("entity_id"),
+                        rs.getString("operation"), rs.getString("payload"), rs.getLong("created_at")),
+                position, limit);
+    }
+
+    private void record(String entity, Long entityId, Object after) {
+        PendingChange change = new PendingChange(entity, entityId, after == null ? DELETE : UPSERT, toJson(after));
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            transactionTemplate.executeWithoutResult(status -> append(List.of(change)));
+            return;
+        }
+        pendingChanges().changes.add(change);
+    }
+
+    private PendingChanges pendingChanges() {
+        PendingChanges pending = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingChanges();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        return pending;
+    }
+
+    /**
+     * Takes the next positions from the counter row, whose lock is then held until the transaction ends, and writes
+     * the changes in one batch. Pending entity changes are flushed first, so that nothing else is waited for while
+     * holding that lock.
+     */
+    private void append(List<PendingChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+        if (entityManager != null) {
+            entityManager.flush();
+        }
+        long waitStart = System.nanoTime();
+        jdbcTemplate.update("update catalog_change_sequence set last_id = last_id + ? where id = 1", changes.size());
+        sequenceLocked(waitStart);
+        long first = jdbcTemplate.queryForObject(
+                "select last_id from catalog_change_sequence where id = 1", Long.class) - changes.size() + 1;
+        long createdAt = System.currentTimeMillis();
+        List<Object[]> rows = new ArrayList<>(changes.size());
+        for (int i = 0; i < changes.size(); i++) {
+            PendingChange change = changes.get(i);
+            rows.add(new Object[]{first + i, change.entity(), change.entityId(), change.operation(), change.payload(),
+                    createdAt});
+        }
+        jdbcTemplate.batchUpdate("insert into catalog_changes (id, entity, entity_id, operation, payload, created_at) "
+                + "values (?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    private void sequenceLocked(long waitStart) {
+        long lockedAt = System.nanoTime();
+        sequenceWait.record(lockedAt - waitStart, TimeUnit.NANOSECONDS);
+        PendingChanges pending = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+        if (pending != null && !pending.locked) {
+            pending.locked = true;
+            pending.lockedAt = lockedAt;
+        }
+    }
+
+    private boolean isMySql() {
+        if (mysql == null) {
+            mysql = Objects.requireNonNull(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    DatabaseDriver.fromProductName(connection.getMetaData().getDatabaseProductName())
+                            == DatabaseDriver.MYSQL));
+        }
+        return mysql;
+    }
+
+    private String toJson(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * One position per shard, in shard order.
+     */
+    static String encodeToken(long... positions) {
+        String joined = Arrays.stream(positions).mapToObj(Long::toString).collect(Collectors.joining("."));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(joined.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static long[] decodeToken(String token, int shardCount) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            long[] positions = Arrays.stream(decoded.split("\\.")).mapToLong(Long::parseLong).toArray();
+            if (positions.length != shardCount) {
+                throw new IllegalArgumentException("Invalid change token: " + token);
+            }
+            return positions;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid change token: " + token);
+        }
+    }
+
+    private class PendingChanges implements TransactionSynchronization {
+
+        private final List<PendingChange> changes = new ArrayList<>();
+        private boolean locked;
+        private long lockedAt;
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            append(changes);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ChangeFeedServiceImpl.this);
+            if (locked) {
+                sequenceHeld.record(System.nanoTime() - lockedAt, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private record PendingChange(String entity, Long entityId, String operation, String payload) {
+    }
+
+    private record ChangeRow(long id, String entity, long entityId, String operation, String payload, long createdAt) {
+
+        CatalogChangeDTO toDto(String token) {
+            return new CatalogChangeDTO(token, entity, entityId, operation, payload);
+        }
+    }
+
+    private static final class ShardLog {
+
+        private final int shard;
+        private final List<ChangeRow> rows;
+        private int next;
+
+        ShardLog(int shard, List<ChangeRow> rows) {
+            this.shard = shard;
+            this.rows = rows;
+        }
+
+        int shard() {
+            return shard;
+        }
+
+        boolean hasNext() {
+            return next < rows.size();
+        }
+
+        ChangeRow peek() {
+            return rows.get(next);
+        }
+
+        ChangeRow poll() {
+            return rows.get(next++);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.CatalogChangeDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.CatalogChangesDTO;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves {@code GET /changes/stream}. Each subscriber gets a virtual thread that pages through the change feed from
+ * its token and then polls it, so a slow client only holds up its own stream and changes written by other
+ * instances are pushed as well. Event ids are change tokens, so a reconnecting client resumes with {@code Last-Event-ID}.
+ */
+@Component
+public class ChangeStreamer {
+
+    static final String EVENT_NAME = "change";
+
+    private final ChangeFeedService changeFeedService;
+    private final Duration pollInterval;
+    private final Duration timeout;
+    private final Set<SseEmitter> emitters = ConcurrentHashMap.newKeySet();
+
+    public ChangeStreamer(ChangeFeedService changeFeedService,
+                          @Value("${fruits.changes.poll-interval:PT1S}") Duration pollInterval,
+                          @Value("${fruits.changes.stream-timeout:PT30M}") Duration timeout) {
+        this.changeFeedService = changeFeedService;
+        this.pollInterval = pollInterval;
+        this.timeout = timeout;
+    }
+
+    public SseEmitter subscribe(String since) {
+        // Read the first page here so that a bad or expired token is still answered with an error status
+        CatalogChangesDTO first = changeFeedService.getChanges(since, ChangeFeedServiceImpl.MAX_LIMIT);
+
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(emitter::complete);
+        emitters.add(emitter);
+        Thread.ofVirtual().name("change-stream").start(() -> stream(emitter, first));
+        return emitter;
+    }
+
+    private void stream(SseEmitter emitter, CatalogChangesDTO page) {
+        try {
+            while (emitters.contains(emitter)) {
+                for (CatalogChangeDTO change : page.changes()) {
+                    emitter.send(SseEmitter.event().id(change.token()).name(EVENT_NAME).data(change));
+                }
+                if (!page.hasMore()) {
+                    // An id-only event moves the client's Last-Event-ID forward and doubles as a keep-alive
+                    emitter.send(SseEmitter.event().id(page.nextToken()));
+                    Thread.sleep(pollInterval);
+                }
+                page = changeFeedService.getChanges(page.nextToken(), ChangeFeedServiceImpl.MAX_LIMIT);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // the client went away or the emitter timed out
+            emitters.remove(emitter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            emitter.complete();
+        } catch (RuntimeException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    int subscribers() {
+        return emitters.size();
+    }
+
+    @PreDestroy
+    void close() {
+        emitters.forEach(SseEmitter::complete);
+        emitters.clear();
+    }
+}
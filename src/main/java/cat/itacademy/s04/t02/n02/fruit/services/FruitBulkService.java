@@ -0,0 +1,18 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitBulkResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+
+import java.util.Iterator;
+import java.util.List;
+
+public interface FruitBulkService {
+    FruitBulkResponseDTO addFruits(List<FruitRequestDTO> requests);
+
+    /**
+     * Reads and writes the requests a batch at a time. An {@link IllegalArgumentException} from the iterator marks an
+     * unreadable item and ends the import: it is rethrown if nothing was written yet, and reported as a failed item
+     * otherwise.
+     */
+    FruitBulkResponseDTO addFruits(Iterator<FruitRequestDTO> requests);
+}
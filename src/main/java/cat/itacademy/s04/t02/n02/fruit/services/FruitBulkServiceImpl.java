@@ -0,0 +1,189 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.config.ObservabilityConfig;
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardRouter;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitBulkItemResultDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitBulkResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.events.FruitChangedEvent;
+import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import cat.itacademy.s04.t02.n02.fruit.repository.SupplierRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+@Timed(ObservabilityConfig.SERVICE_TIMER)
+public class FruitBulkServiceImpl implements FruitBulkService {
+
+    private final FruitRepository fruitRepository;
+    private final SupplierRepository supplierRepository;
+    private final Validator validator;
+    private final ShardRouter shardRouter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+
+    public FruitBulkServiceImpl(FruitRepository fruitRepository,
+                                SupplierRepository supplierRepository,
+                                Validator validator,
+                                ShardRouter shardRouter,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${fruits.bulk.batch-size:500}") int batchSize) {
+        this.fruitRepository = fruitRepository;
+        this.supplierRepository = supplierRepository;
+        this.validator = validator;
+        this.shardRouter = shardRouter;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public FruitBulkResponseDTO addFruits(List<FruitRequestDTO> requests) {
+        return addFruits(requests.iterator());
+    }
+
+    @Override
+    public FruitBulkResponseDTO addFruits(Iterator<FruitRequestDTO> requests) {
+        List<FruitBulkItemResultDTO> results = new ArrayList<>();
+        Map<Long, Supplier> suppliers = new HashMap<>();
+
+        // One pending batch per shard, since a transaction only writes to one of them
+        List<List<Fruit>> batches = new ArrayList<>();
+        List<List<Integer>> batchIndexes = new ArrayList<>();
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            batches.add(new ArrayList<>(batchSize));
+            batchIndexes.add(new ArrayList<>(batchSize));
+        }
+
+        List<FruitRequestDTO> chunk = new ArrayList<>(batchSize);
+        IllegalArgumentException unreadable = null;
+        boolean written = false;
+        do {
+            chunk.clear();
+            try {
+                while (chunk.size() < batchSize && requests.hasNext()) {
+                    chunk.add(requests.next());
+                }
+            } catch (IllegalArgumentException e) {
+                if (!written) {
+                    throw e;
+                }
+                unreadable = e;
+            }
+            loadSuppliers(chunk, suppliers);
+
+            for (FruitRequestDTO request : chunk) {
+                int i = results.size();
+                String error = validate(request);
+                if (error != null) {
+                    results.add(failure(i, HttpStatus.BAD_REQUEST, error));
+                    continue;
+                }
+                Supplier supplier = suppliers.get(request.supplierId());
+                if (supplier == null) {
+                    results.add(failure(i, HttpStatus.NOT_FOUND, "Supplier with ID " + request.supplierId() + " not found"));
+                    continue;
+                }
+                results.add(null);
+
+                Fruit fruit = new Fruit();
+                fruit.setName(request.name().trim());
+                fruit.setWeightInKilos(request.weightInKilos());
+                fruit.setSupplier(supplier);
+                int shard = shardRouter.shardFor(supplier.getId());
+                batches.get(shard).add(fruit);
+                batchIndexes.get(shard).add(i);
+
+                if (batches.get(shard).size() == batchSize) {
+                    writeBatch(shard, batches.get(shard), batchIndexes.get(shard), results);
+                    written = true;
+                }
+            }
+        } while (unreadable == null && chunk.size() == batchSize);
+        for (int shard = 0; shard < batches.size(); shard++) {
+            writeBatch(shard, batches.get(shard), batchIndexes.get(shard), results);
+        }
+        if (unreadable != null) {
+            results.add(failure(results.size(), HttpStatus.BAD_REQUEST,
+                    unreadable.getMessage() + "; the rest of the request was not read"));
+        }
+
+        int created = (int) results.stream()
+                .filter(r -> r.status() == HttpStatus.CREATED.value())
+                .count();
+        return new FruitBulkResponseDTO(results.size(), created, results.size() - created, results);
+    }
+
+    private void loadSuppliers(List<FruitRequestDTO> requests, Map<Long, Supplier> suppliers) {
+        Set<Long> missing = requests.stream()
+                .filter(Objects::nonNull)
+                .map(FruitRequestDTO::supplierId)
+                .filter(Objects::nonNull)
+                .filter(id -> !suppliers.containsKey(id))
+                .collect(Collectors.toSet());
+        if (!missing.isEmpty()) {
+            supplierRepository.findAllById(missing).forEach(supplier -> suppliers.put(supplier.getId(), supplier));
+        }
+    }
+
+    private void writeBatch(int shard, List<Fruit> batch, List<Integer> indexes, List<FruitBulkItemResultDTO> results) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            shardRouter.run(shard, () -> {
+                fruitRepository.insertAll(batch);
+                batch.forEach(fruit -> eventPublisher.publishEvent(FruitChangedEvent.created(toDto(fruit))));
+            });
+            for (int i = 0; i < batch.size(); i++) {
+                int index = indexes.get(i);
+                results.set(index, new FruitBulkItemResultDTO(index, HttpStatus.CREATED.value(), batch.get(i).getId(), null));
+            }
+        } catch (RuntimeException e) {
+            for (int index : indexes) {
+                results.set(index, failure(index, HttpStatus.INTERNAL_SERVER_ERROR, "Batch write failed: " + e.getMessage()));
+            }
+        }
+        batch.clear();
+        indexes.clear();
+    }
+
+    private String validate(FruitRequestDTO request) {
+        if (request == null) {
+            return "Fruit cannot be null";
+        }
+        Set<ConstraintViolation<FruitRequestDTO>> violations = validator.validate(request);
+        return violations.stream()
+                .sorted(Comparator.comparing(v -> v.getPropertyPath().toString()))
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .findFirst()
+                .orElse(null);
+    }
+
+    private FruitResponseDTO toDto(Fruit fruit) {
+        Supplier s = fruit.getSupplier();
+        return new FruitResponseDTO(fruit.getId(), fruit.getName(), fruit.getWeightInKilos(),
+                s.getId(), s.getName(), s.getCountry());
+    }
+
+    private FruitBulkItemResultDTO failure(int index, HttpStatus status, String error) {
+        return new FruitBulkItemResultDTO(index, status.value(), null, error);
+    }
+}
@@ -0,0 +1,25 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import java.util.Arrays;
+
+public enum FruitExportFormat {
+    NDJSON("application/x-ndjson"),
+    CSV("text/csv");
+
+    private final String contentType;
+
+    FruitExportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public static FruitExportFormat from(String value) {
+        return Arrays.stream(values())
+                .filter(format -> format.name().equalsIgnoreCase(value))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unsupported export format: " + value));
+    }
+}
@@ -0,0 +1,8 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface FruitExportService {
+    void exportFruits(FruitExportFormat format, OutputStream out) throws IOException;
+}
@@ -0,0 +1,147 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.config.ObservabilityConfig;
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardRouter;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+@Service
+@Timed(ObservabilityConfig.SERVICE_TIMER)
+public class FruitExportServiceImpl implements FruitExportService {
+
+    static final int FLUSH_EVERY_ROWS = 1000;
+    static final String CSV_HEADER = "id,name,weightInKilos,supplierId,supplierName,supplierCountry";
+
+    private final FruitRepository fruitRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter rowWriter;
+    private final ShardRouter shardRouter;
+
+    public FruitExportServiceImpl(FruitRepository fruitRepository, EntityManager entityManager, ObjectMapper objectMapper,
+                                  ShardRouter shardRouter) {
+        this.fruitRepository = fruitRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.shardRouter = shardRouter;
+        this.rowWriter = objectMapper.writerFor(FruitResponseDTO.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    @Override
+    public void exportFruits(FruitExportFormat format, OutputStream out) throws IOException {
+        switch (format) {
+            case NDJSON -> writeNdjson(out);
+            case CSV -> writeCsv(out);
+        }
+    }
+
+    private void writeNdjson(OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        forEachShard(fruits -> {
+            long rows = 0;
+            while (fruits.hasNext()) {
+                rowWriter.writeValue(generator, toDto(next(fruits)));
+                generator.writeRaw('\n');
+                if (++rows == 1 || rows % FLUSH_EVERY_ROWS == 0) {
+                    generator.flush();
+                }
+            }
+        });
+        generator.close();
+    }
+
+    private void writeCsv(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        writer.flush();
+        forEachShard(fruits -> writeCsvRows(fruits, writer));
+        writer.flush();
+    }
+
+    // Shards are exported one after another, each from its own read-only cursor, so rows are in id order per shard
+    private void forEachShard(ShardRows rows) throws IOException {
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            try {
+                shardRouter.read(shard, () -> {
+                    try (Stream<Fruit> fruits = fruitRepository.streamAllWithSupplier()) {
+                        rows.write(fruits.iterator());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return null;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private void writeCsvRows(Iterator<Fruit> fruits, Writer writer) throws IOException {
+        long rows = 0;
+        while (fruits.hasNext()) {
+            Fruit fruit = next(fruits);
+            Supplier supplier = fruit.getSupplier();
+            writer.write(String.valueOf(fruit.getId()));
+            writer.write(',');
+            writer.write(csv(fruit.getName()));
+            writer.write(',');
+            writer.write(String.valueOf(fruit.getWeightInKilos()));
+            writer.write(',');
+            writer.write(String.valueOf(supplier.getId()));
+            writer.write(',');
+            writer.write(csv(supplier.getName()));
+            writer.write(',');
+            writer.write(csv(supplier.getCountry()));
+            writer.write('\n');
+            if (++rows % FLUSH_EVERY_ROWS == 0) {
+                writer.flush();
+            }
+        }
+    }
+
+    private Fruit next(Iterator<Fruit> fruits) {
+        Fruit fruit = fruits.next();
+        entityManager.detach(fruit);
+        return fruit;
+    }
+
+    private FruitResponseDTO toDto(Fruit fruit) {
+        Supplier s = fruit.getSupplier();
+        return new FruitResponseDTO(fruit.getId(), fruit.getName(), fruit.getWeightInKilos(),
+                s.getId(), s.getName(), s.getCountry());
+    }
+
+    private String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    @FunctionalInterface
+    private interface ShardRows {
+        void write(Iterator<Fruit> fruits) throws IOException;
+    }
+}
@@ -0,0 +1,136 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardRouter;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Merges single-id fruit lookups that arrive within {@code fruits.lookup.coalescing-window} into one IN query.
+ */
+@Component
+public class FruitLookupCoalescer {
+
+    private final FruitRepository fruitRepository;
+    private final ShardRouter shardRouter;
+    private final Duration window;
+    private final int maxBatchSize;
+    private final Duration timeout;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService queries = Executors.newVirtualThreadPerTaskExecutor();
+
+    private Map<Long, CompletableFuture<Optional<FruitResponseDTO>>> pending = new HashMap<>();
+    private long batch;
+
+    public FruitLookupCoalescer(FruitRepository fruitRepository, ShardRouter shardRouter,
+                                @Value("${fruits.lookup.coalescing-window:PT0S}") Duration window,
+                                @Value("${fruits.lookup.coalescing-max-batch:" + Lookups.CHUNK_SIZE + "}") int maxBatchSize,
+                                @Value("${fruits.lookup.coalescing-timeout:PT2S}") Duration timeout) {
+        this.fruitRepository = fruitRepository;
+        this.shardRouter = shardRouter;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.timeout = timeout;
+        this.timer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("fruit-lookup-coalescer").daemon().factory());
+    }
+
+    public boolean isEnabled() {
+        return !window.isZero() && !window.isNegative();
+    }
+
+    public CompletableFuture<Optional<FruitResponseDTO>> lookup(Long id) {
+        CompletableFuture<Optional<FruitResponseDTO>> result;
+        Map<Long, CompletableFuture<Optional<FruitResponseDTO>>> full = null;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                long scheduledBatch = batch;
+                timer.schedule(() -> flush(scheduledBatch), window.toNanos(), TimeUnit.NANOSECONDS);
+            }
+            result = pending.computeIfAbsent(id, key -> new CompletableFuture<>());
+            if (pending.size() >= maxBatchSize) {
+                full = drain();
+            }
+        }
+        if (full != null) {
+            submit(full);
+        }
+        return result;
+    }
+
+    /**
+     * Waits for {@link #lookup} for at most {@code fruits.lookup.coalescing-timeout}, so a stuck batch query can't hold
+     * the request thread indefinitely.
+     */
+    public Optional<FruitResponseDTO> find(Long id) {
+        try {
+            return lookup(id).get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("Fruit lookup timed out: " + id, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for fruit " + id, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Fruit lookup failed", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        queries.shutdown();
+    }
+
+    private void flush(long scheduledBatch) {
+        Map<Long, CompletableFuture<Optional<FruitResponseDTO>>> due;
+        synchronized (this) {
+            if (scheduledBatch != batch || pending.isEmpty()) {
+                return;
+            }
+            due = drain();
+        }
+        submit(due);
+    }
+
+    private Map<Long, CompletableFuture<Optional<FruitResponseDTO>>> drain() {
+        Map<Long, CompletableFuture<Optional<FruitResponseDTO>>> drained = pending;
+        pending = new HashMap<>();
+        batch++;
+        return drained;
+    }
+
+    private void submit(Map<Long, CompletableFuture<Optional<FruitResponseDTO>>> lookups) {
+        queries.execute(() -> {
+            try {
+                Map<Long, FruitResponseDTO> found = shardRouter.readAll(() -> fruitRepository.findDtosByIdIn(lookups.keySet()))
+                        .stream()
+                        .flatMap(List::stream)
+                        .collect(Collectors.toMap(FruitResponseDTO::id, Function.identity()));
+                lookups.forEach((id, future) -> future.complete(Optional.ofNullable(found.get(id))));
+            } catch (RuntimeException e) {
+                lookups.values().forEach(future -> future.completeExceptionally(e));
+            }
+        });
+    }
+}
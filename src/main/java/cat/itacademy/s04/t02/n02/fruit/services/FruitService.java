@@ -1,5 +1,7 @@
 package cat.itacademy.s04.t02.n02.fruit.services;
 
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitLookupDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitPageDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
 
@@ -8,8 +10,14 @@ import java.util.List;
 public interface FruitService {
     FruitResponseDTO addFruit(FruitRequestDTO request);
     FruitResponseDTO getFruitById(Long id);
+    long getFruitVersion(Long id);
+    List<FruitLookupDTO> getFruitsByIds(List<Long> ids);
     List<FruitResponseDTO> getAllFruits();
+    FruitPageDTO getFruitsPage(String after, Integer limit);
     List<FruitResponseDTO> getFruitsBySupplierId(Long supplierId);
+    String getFruitsPageVersion(String after, Integer limit);
+    String getFruitsVersionBySupplierId(Long supplierId);
     FruitResponseDTO updateFruit(Long id, FruitRequestDTO request);
+    FruitResponseDTO updateFruit(Long id, FruitRequestDTO request, Long expectedVersion);
     void deleteFruit(Long id);
 }
@@ -1,104 +1,317 @@
 package cat.itacademy.s04.t02.n02.fruit.services;
 
+import cat.itacademy.s04.t02.n02.fruit.config.ObservabilityConfig;
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardRouter;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitLookupDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitPageDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.VersionedIdDTO;
+import cat.itacademy.s04.t02.n02.fruit.events.FruitChangedEvent;
+import cat.itacademy.s04.t02.n02.fruit.exception.PreconditionFailedException;
 import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
 import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
 import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
 import cat.itacademy.s04.t02.n02.fruit.repository.SupplierRepository;
+import io.micrometer.core.annotation.Timed;
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 @Service
+@Timed(ObservabilityConfig.SERVICE_TIMER)
 @Transactional
 public class FruitServiceImpl implements FruitService{
 
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+
     private final FruitRepository fruitRepository;
     private final SupplierRepository supplierRepository;
+    private final SupplierService supplierService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final FruitLookupCoalescer lookupCoalescer;
+    private final ShardRouter shardRouter;
+    private final FruitShardMover shardMover;
 
-    public FruitServiceImpl(FruitRepository fruitRepository, SupplierRepository supplierRepository) {
+    public FruitServiceImpl(FruitRepository fruitRepository, SupplierRepository supplierRepository,
+                            SupplierService supplierService, ApplicationEventPublisher eventPublisher,
+                            FruitLookupCoalescer lookupCoalescer, ShardRouter shardRouter,
+                            FruitShardMover shardMover) {
         this.fruitRepository = fruitRepository;
         this.supplierRepository = supplierRepository;
+        this.supplierService = supplierService;
+        this.eventPublisher = eventPublisher;
+        this.lookupCoalescer = lookupCoalescer;
+        this.shardRouter = shardRouter;
+        this.shardMover = shardMover;
     }
 
     @Override
     public FruitResponseDTO addFruit(FruitRequestDTO request) {
-        Supplier supplier = supplierRepository.findById(request.supplierId())
+        SupplierResponseDTO supplier = supplierService.findSupplierById(request.supplierId())
                 .orElseThrow(() -> new EntityNotFoundException("Supplier with ID " + request.supplierId() + " not found"));
 
-        Fruit fruit = new Fruit();
-        fruit.setName(request.name().trim());
-        fruit.setWeightInKilos(request.weightInKilos());
-        fruit.setSupplier(supplier);
+        return shardRouter.write(shardRouter.shardFor(supplier.id()), () -> {
+            Fruit fruit = new Fruit();
+            fruit.setName(request.name().trim());
+            fruit.setWeightInKilos(request.weightInKilos());
+            fruit.setSupplier(supplierRepository.getReferenceById(supplier.id()));
 
-        Fruit saved = fruitRepository.save(fruit);
-        return mapToDto(saved);
+            Fruit saved = fruitRepository.save(fruit);
+            FruitResponseDTO created = mapToDto(saved, supplier);
+            eventPublisher.publishEvent(FruitChangedEvent.created(created));
+            return created;
+        });
     }
 
+    // The coalesced lookup waits on another thread's query, so it must not hold a connection of its own meanwhile;
+    // readAll opens the transaction for the direct lookup
     @Override
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public FruitResponseDTO getFruitById(Long id) {
-        Fruit fruit = fruitRepository.findById(id)
+        if (lookupCoalescer != null && lookupCoalescer.isEnabled()) {
+            return lookupCoalescer.find(id)
+                    .orElseThrow(() -> new EntityNotFoundException("Fruit not found: " + id));
+        }
+        return firstPresent(shardRouter.readAll(() -> fruitRepository.findById(id).map(this::mapToDto)))
+                .orElseThrow(() -> new EntityNotFoundException("Fruit not found: " + id));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<FruitLookupDTO> getFruitsByIds(List<Long> ids) {
+        Map<Long, FruitResponseDTO> found = new HashMap<>();
+        for (List<Long> chunk : Lookups.chunks(Lookups.distinctIds(ids), Lookups.CHUNK_SIZE)) {
+            shardRouter.readAll(() -> fruitRepository.findDtosByIdIn(chunk))
+                    .forEach(shard -> shard.forEach(fruit -> found.put(fruit.id(), fruit)));
+        }
+        return ids.stream()
+                .map(id -> {
+                    FruitResponseDTO fruit = found.get(id);
+                    return fruit != null
+                            ? new FruitLookupDTO(id, HttpStatus.OK.value(), fruit)
+                            : new FruitLookupDTO(id, HttpStatus.NOT_FOUND.value(), null);
+                })
+                .toList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long getFruitVersion(Long id) {
+        return firstPresent(shardRouter.readAll(() -> fruitRepository.findVersionById(id)))
                 .orElseThrow(() -> new EntityNotFoundException("Fruit not found: " + id));
-        return mapToDto(fruit);
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<FruitResponseDTO> getAllFruits() {
-        return fruitRepository.findAll().stream().map(this::mapToDto).toList();
+        return mergeById(shardRouter.readAll(fruitRepository::findAllDtos));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public FruitPageDTO getFruitsPage(String after, Integer limit) {
+        int pageSize = pageSize(limit);
+        long afterId = afterId(after);
+
+        List<FruitResponseDTO> rows = mergeById(shardRouter.readAll(
+                () -> fruitRepository.findDtoPageAfter(afterId, Limit.of(pageSize + 1))));
+        boolean hasNext = rows.size() > pageSize;
+        List<FruitResponseDTO> fruits = hasNext ? rows.subList(0, pageSize) : rows;
+
+        String nextCursor = hasNext ? encodeCursor(fruits.get(fruits.size() - 1).id()) : null;
+        return new FruitPageDTO(fruits, nextCursor);
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<FruitResponseDTO> getFruitsBySupplierId(Long supplierId) {
-        if (!supplierRepository.existsById(supplierId)) {
+        if (supplierService.findSupplierById(supplierId).isEmpty()) {
             throw new EntityNotFoundException("Supplier with id " + supplierId + " not found");
         }
-        return fruitRepository.findBySupplierId(supplierId)
-                .stream()
-                .map(this::mapToDto)
+        return shardRouter.read(shardRouter.shardFor(supplierId), () -> fruitRepository.findDtosBySupplierId(supplierId));
+    }
+
+    // Covers the page and the row that decides its next cursor, like getFruitsPage
+    @Override
+    @Transactional(readOnly = true)
+    public String getFruitsPageVersion(String after, Integer limit) {
+        int pageSize = pageSize(limit);
+        long afterId = afterId(after);
+
+        List<VersionedIdDTO> rows = shardRouter.readAll(
+                        () -> fruitRepository.findVersionPageAfter(afterId, Limit.of(pageSize + 1))).stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(VersionedIdDTO::id))
+                .limit(pageSize + 1L)
                 .toList();
+        long hash = 1;
+        for (VersionedIdDTO row : rows) {
+            hash = 31 * (31 * hash + row.id()) + row.version();
+        }
+        return Long.toString(rows.size(), 36) + "." + Long.toString(hash, 36);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public String getFruitsVersionBySupplierId(Long supplierId) {
+        if (supplierService.findSupplierById(supplierId).isEmpty()) {
+            throw new EntityNotFoundException("Supplier with id " + supplierId + " not found");
+        }
+        return shardRouter.read(shardRouter.shardFor(supplierId),
+                () -> fruitRepository.findCollectionVersionBySupplierId(supplierId)).token();
     }
 
     @Override
     public FruitResponseDTO updateFruit(Long id, FruitRequestDTO request) {
-        Fruit fruit = fruitRepository.findById(id)
+        return updateFruit(id, request, null);
+    }
+
+    @Override
+    public FruitResponseDTO updateFruit(Long id, FruitRequestDTO request, Long expectedVersion) {
+        int shard = locate(id, "Fruit with id " + id + " not found");
+        if (request.supplierId() != null && shardRouter.shardFor(request.supplierId()) != shard) {
+            return moveFruit(id, request, expectedVersion, shard);
+        }
+        return shardRouter.write(shard, () -> {
+            Fruit fruit = fruitRepository.findById(id)
+                    .orElseThrow(() -> new EntityNotFoundException("Fruit with id " + id + " not found"));
+            if (expectedVersion != null && fruit.getVersion() != expectedVersion) {
+                throw new PreconditionFailedException("Fruit with id " + id + " has been modified");
+            }
+            FruitResponseDTO before = snapshot(fruit);
+
+            fruit.setName(request.name());
+            fruit.setWeightInKilos(request.weightInKilos());
+
+            SupplierResponseDTO supplier = before.supplier();
+            if (request.supplierId() != null) {
+                supplier = supplierService.findSupplierById(request.supplierId())
+                        .orElseThrow(() -> new EntityNotFoundException("Supplier with id " + request.supplierId() + " not found"));
+                fruit.setSupplier(supplierRepository.getReferenceById(supplier.id()));
+            }
+
+            Fruit updated = fruitRepository.save(fruit);
+            FruitResponseDTO after = mapToDto(updated, supplier);
+            eventPublisher.publishEvent(FruitChangedEvent.updated(before, after));
+            return after;
+        });
+    }
+
+    @Override
+    public void deleteFruit(Long id) {
+        shardRouter.run(locate(id, "Fruit not found: " + id), () -> {
+            Fruit fruit = fruitRepository.findById(id)
+                    .orElseThrow(() -> new EntityNotFoundException("Fruit not found: " + id));
+            FruitResponseDTO before = snapshot(fruit);
+            fruitRepository.delete(fruit);
+            eventPublisher.publishEvent(FruitChangedEvent.deleted(before));
+        });
+    }
+
+    private FruitResponseDTO moveFruit(Long id, FruitRequestDTO request, Long expectedVersion, int shard) {
+        Fruit fruit = shardRouter.read(shard, () -> fruitRepository.findById(id))
                 .orElseThrow(() -> new EntityNotFoundException("Fruit with id " + id + " not found"));
+        if (expectedVersion != null && fruit.getVersion() != expectedVersion) {
+            throw new PreconditionFailedException("Fruit with id " + id + " has been modified");
+        }
+        FruitResponseDTO before = snapshot(fruit);
+        SupplierResponseDTO supplier = supplierService.findSupplierById(request.supplierId())
+                .orElseThrow(() -> new EntityNotFoundException("Supplier with id " + request.supplierId() + " not found"));
 
         fruit.setName(request.name());
         fruit.setWeightInKilos(request.weightInKilos());
+        shardMover.move(List.of(fruit), supplier.id(), shard, shardRouter.shardFor(supplier.id()));
+
+        FruitResponseDTO after = mapToDto(fruit, supplier);
+        eventPublisher.publishEvent(FruitChangedEvent.updated(before, after));
+        return after;
+    }
 
-        if (request.supplierId() != null) {
-            Supplier supplier = supplierRepository.findById(request.supplierId())
-                    .orElseThrow(() -> new EntityNotFoundException("Supplier with id " + request.supplierId() + " not found"));
-            fruit.setSupplier(supplier);
+    // Fruits are sharded by supplier, so a lookup by fruit id has to ask every shard
+    private int locate(Long id, String notFoundMessage) {
+        if (!shardRouter.isSharded()) {
+            return 0;
         }
+        List<Boolean> found = shardRouter.readAll(() -> fruitRepository.existsById(id));
+        int shard = found.indexOf(Boolean.TRUE);
+        if (shard < 0) {
+            throw new EntityNotFoundException(notFoundMessage);
+        }
+        return shard;
+    }
 
-        Fruit updated = fruitRepository.save(fruit);
-        return mapToDto(updated);
+    private static <T> Optional<T> firstPresent(List<Optional<T>> results) {
+        return results.stream().flatMap(Optional::stream).findFirst();
     }
 
-    @Override
-    public void deleteFruit(Long id) {
-        Fruit fruit = fruitRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Fruit not found: " + id));
-        fruitRepository.delete(fruit);
+    private static List<FruitResponseDTO> mergeById(List<List<FruitResponseDTO>> shards) {
+        if (shards.size() == 1) {
+            return shards.get(0);
+        }
+        return shards.stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(FruitResponseDTO::id))
+                .toList();
     }
 
 
-    private FruitResponseDTO mapToDto(Fruit fruit) {
+    private static int pageSize(Integer limit) {
+        if (limit != null && limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        return limit == null ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    private long afterId(String after) {
+        return after == null || after.isBlank() ? 0L : decodeCursor(after);
+    }
+
+    private String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long decodeCursor(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            return Long.parseLong(decoded);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    private FruitResponseDTO snapshot(Fruit fruit) {
+        return supplierService.findSupplierById(fruit.getSupplier().getId())
+                .map(supplier -> mapToDto(fruit, supplier))
+                .orElseGet(() -> mapToDto(fruit));
+    }
+
+    FruitResponseDTO mapToDto(Fruit fruit) {
         Supplier s = fruit.getSupplier();
         SupplierResponseDTO supplierDto = new SupplierResponseDTO(
                 s.getId(),
                 s.getName(),
                 s.getCountry()
         );
+        return mapToDto(fruit, supplierDto);
+    }
+
+    private FruitResponseDTO mapToDto(Fruit fruit, SupplierResponseDTO supplierDto) {
         return new FruitResponseDTO(
                 fruit.getId(),
                 fruit.getName(),
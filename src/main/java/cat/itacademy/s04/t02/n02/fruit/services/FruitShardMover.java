@@ -0,0 +1,74 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardRouter;
+import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Moves fruits to the shard of their new supplier. The copies are inserted first, with the same ids, and the
+ * originals are only deleted if nobody changed them in between; otherwise the copies are removed again. The two
+ * steps are separate transactions, so a concurrent reader can briefly see a fruit on both shards.
+ */
+@Component
+class FruitShardMover {
+
+    private final FruitRepository fruitRepository;
+    private final EntityManager entityManager;
+    private final ShardRouter shardRouter;
+
+    FruitShardMover(FruitRepository fruitRepository, EntityManager entityManager, ShardRouter shardRouter) {
+        this.fruitRepository = fruitRepository;
+        this.entityManager = entityManager;
+        this.shardRouter = shardRouter;
+    }
+
+    void move(List<Fruit> fruits, Long supplierId, int from, int to) {
+        move(fruits, supplierId, from, to, () -> { });
+    }
+
+    /**
+     * @param fruits detached fruits read from {@code from}, already carrying their new name and weight
+     * @param beforeDelete runs in the transaction that deletes the originals, while they are still there
+     */
+    void move(List<Fruit> fruits, Long supplierId, int from, int to, Runnable beforeDelete) {
+        if (fruits.isEmpty()) {
+            return;
+        }
+        List<Long> ids = fruits.stream().map(Fruit::getId).toList();
+        shardRouter.run(to, () -> {
+            Supplier supplier = entityManager.getReference(Supplier.class, supplierId);
+            for (Fruit fruit : fruits) {
+                Fruit copy = new Fruit(fruit.getId(), fruit.getName(), fruit.getWeightInKilos(), supplier);
+                copy.setVersion(fruit.getVersion() + 1);
+                entityManager.persist(copy);
+            }
+        });
+        try {
+            shardRouter.run(from, () -> {
+                Map<Long, Fruit> current = fruitRepository.findAllById(ids).stream()
+                        .collect(Collectors.toMap(Fruit::getId, Function.identity()));
+                for (Fruit fruit : fruits) {
+                    Fruit original = current.get(fruit.getId());
+                    if (original == null || original.getVersion() != fruit.getVersion()) {
+                        throw new ObjectOptimisticLockingFailureException(Fruit.class, fruit.getId());
+                    }
+                }
+                beforeDelete.run();
+                fruitRepository.deleteAll(current.values());
+            });
+        } catch (RuntimeException e) {
+            shardRouter.run(to, () -> fruitRepository.deleteAllByIdInBatch(ids));
+            throw e;
+        }
+        fruits.forEach(fruit -> fruit.setVersion(fruit.getVersion() + 1));
+    }
+}
@@ -0,0 +1,8 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitStatsDTO;
+
+public interface FruitStatsService {
+    FruitStatsDTO getStats();
+    void rebuild();
+}
@@ -0,0 +1,113 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardRouter;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitStatsGroupDTO;
+import cat.itacademy.s04.t02.n02.fruit.events.FruitChangedEvent;
+import cat.itacademy.s04.t02.n02.fruit.events.SupplierChangedEvent;
+import cat.itacademy.s04.t02.n02.fruit.events.SupplierFruitsRemovedEvent;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Stats are computed by grouped queries on every shard and kept until a change commits on this instance, or until
+ * they are older than {@code fruits.stats.max-age} for changes made on other instances. Only the groups are held,
+ * never the fruits, and nothing is read while no one asks for stats.
+ */
+@Service
+public class FruitStatsServiceImpl implements FruitStatsService {
+
+    private final FruitRepository fruitRepository;
+    private final ShardRouter shardRouter;
+    private final long maxAgeNanos;
+    // bumped after every commit that changes the catalog, so stats computed while it moved are not reused
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile Computed computed;
+
+    public FruitStatsServiceImpl(FruitRepository fruitRepository, ShardRouter shardRouter,
+                                 @Value("${fruits.stats.max-age:PT1M}") Duration maxAge) {
+        this.fruitRepository = fruitRepository;
+        this.shardRouter = shardRouter;
+        this.maxAgeNanos = maxAge.toNanos();
+    }
+
+    @Override
+    public FruitStatsDTO getStats() {
+        Computed current = computed;
+        if (current != null && current.isFresh(generation.get(), maxAgeNanos)) {
+            return current.stats();
+        }
+        return compute(false);
+    }
+
+    @Override
+    public void rebuild() {
+        compute(true);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFruitChanged(FruitChangedEvent event) {
+        generation.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSupplierChanged(SupplierChangedEvent event) {
+        generation.incrementAndGet();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSupplierFruitsRemoved(SupplierFruitsRemovedEvent event) {
+        generation.incrementAndGet();
+    }
+
+    // One computation at a time, so callers that queued behind it reuse its result instead of querying again
+    private synchronized FruitStatsDTO compute(boolean force) {
+        long seen = generation.get();
+        Computed current = computed;
+        if (!force && current != null && current.isFresh(seen, maxAgeNanos)) {
+            return current.stats();
+        }
+        List<FruitStatsDTO> shards = shardRouter.readAll(() -> new FruitStatsDTO(
+                fruitRepository.findStatsBySupplier(),
+                fruitRepository.findStatsByCountry(),
+                fruitRepository.findStatsByName()));
+        FruitStatsDTO stats = new FruitStatsDTO(
+                merge(shards, FruitStatsDTO::bySupplier),
+                merge(shards, FruitStatsDTO::byCountry),
+                merge(shards, FruitStatsDTO::byName));
+        computed = new Computed(stats, seen, System.nanoTime());
+        return stats;
+    }
+
+    // A supplier's fruits all live on one shard, but a country or a fruit name can span several
+    private static List<FruitStatsGroupDTO> merge(List<FruitStatsDTO> shards,
+                                                  Function<FruitStatsDTO, List<FruitStatsGroupDTO>> groups) {
+        Map<String, FruitStatsGroupDTO> merged = new TreeMap<>();
+        for (FruitStatsDTO shard : shards) {
+            for (FruitStatsGroupDTO group : groups.apply(shard)) {
+                merged.merge(group.group(), group, (a, b) -> new FruitStatsGroupDTO(a.group(),
+                        a.count() + b.count(), a.totalWeightInKilos() + b.totalWeightInKilos(),
+                        Math.min(a.minWeightInKilos(), b.minWeightInKilos()),
+                        Math.max(a.maxWeightInKilos(), b.maxWeightInKilos())));
+            }
+        }
+        return List.copyOf(merged.values());
+    }
+
+    private record Computed(FruitStatsDTO stats, long generation, long computedAt) {
+
+        boolean isFresh(long currentGeneration, long maxAgeNanos) {
+            return generation == currentGeneration && System.nanoTime() - computedAt < maxAgeNanos;
+        }
+    }
+}
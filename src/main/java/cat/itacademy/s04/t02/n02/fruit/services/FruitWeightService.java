@@ -0,0 +1,6 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+public interface FruitWeightService {
+    void addWeightDelta(Long id, int delta);
+    int flush();
+}
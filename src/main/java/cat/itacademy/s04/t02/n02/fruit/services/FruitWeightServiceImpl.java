@@ -0,0 +1,311 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.config.ObservabilityConfig;
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardRouter;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.events.FruitChangedEvent;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind buffer for weight deltas. Deltas for the same fruit are summed in a striped map and written as
+ * one batched {@code UPDATE} per flush, which runs every {@code fruits.weight-buffer.flush-interval} or as soon
+ * as {@code fruits.weight-buffer.max-pending} fruits are waiting.
+ */
+@Service
+@Timed(ObservabilityConfig.SERVICE_TIMER)
+public class FruitWeightServiceImpl implements FruitWeightService {
+
+    private static final Logger log = LoggerFactory.getLogger(FruitWeightServiceImpl.class);
+
+    static final String UPDATE_SQL = "update fruits set weight_in_kilos = weight_in_kilos + ?, version = version + 1 "
+            + "where id = ? and weight_in_kilos + ? > 0";
+
+    private final FruitRepository fruitRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardRouter shardRouter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int maxPending;
+    private final int batchSize;
+    private final WeightDeltaLog deltaLog;
+
+    private final Stripe[] stripes;
+    private final ReadWriteLock drainLock = new ReentrantReadWriteLock();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    // token of the last batch each shard committed, deleted by its next batch once that flush is over
+    private final String[] committedTokens;
+
+    public FruitWeightServiceImpl(FruitRepository fruitRepository,
+                                  JdbcTemplate jdbcTemplate,
+                                  ShardRouter shardRouter,
+                                  ApplicationEventPublisher eventPublisher,
+                                  @Value("${fruits.weight-buffer.stripes:16}") int stripes,
+                                  @Value("${fruits.weight-buffer.max-pending:10000}") int maxPending,
+                                  @Value("${fruits.bulk.batch-size:500}") int batchSize,
+                                  @Value("${fruits.weight-buffer.log-path:}") String logPath,
+                                  @Value("${fruits.weight-buffer.log-fsync:false}") boolean logFsync) {
+        this.fruitRepository = fruitRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+        this.eventPublisher = eventPublisher;
+        this.maxPending = maxPending;
+        this.batchSize = batchSize;
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.committedTokens = new String[shardRouter.shardCount()];
+        this.deltaLog = logPath.isBlank() ? null : new WeightDeltaLog(Path.of(logPath), logFsync);
+        if (deltaLog != null) {
+            List<String> committed = new ArrayList<>();
+            deltaLog.recover(token -> {
+                if (shardRouter.readAll(() -> jdbcTemplate.queryForObject(
+                        "select count(*) from weight_delta_flushes where id = ?", Integer.class, token)).stream()
+                        .anyMatch(count -> count > 0)) {
+                    committed.add(token);
+                    return true;
+                }
+                return false;
+            }).forEach(this::buffer);
+            forgetTokens(committed);
+        }
+    }
+
+    @Override
+    public void addWeightDelta(Long id, int delta) {
+        if (delta == 0) {
+            throw new IllegalArgumentException("Weight delta cannot be zero");
+        }
+        if (!isBuffered(id) && !shardRouter.readAll(() -> fruitRepository.existsById(id)).contains(Boolean.TRUE)) {
+            throw new EntityNotFoundException("Fruit not found: " + id);
+        }
+        drainLock.readLock().lock();
+        try {
+            if (deltaLog != null) {
+                deltaLog.append(id, delta);
+            }
+            buffer(id, delta);
+        } finally {
+            drainLock.readLock().unlock();
+        }
+        if (pending.get() >= maxPending && flushRequested.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("fruit-weight-flush").start(this::flush);
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${fruits.weight-buffer.flush-interval:PT1S}",
+            initialDelayString = "${fruits.weight-buffer.flush-interval:PT1S}")
+    public synchronized int flush() {
+        flushRequested.set(false);
+        Map<Long, Integer> drained = drain();
+        if (drained.isEmpty()) {
+            return 0;
+        }
+        // Each shard commits on its own, so only the deltas no shard has applied yet are kept on failure
+        Map<Long, Integer> remaining = new HashMap<>(drained);
+        try {
+            int applied = 0;
+            for (int shard = 0; shard < shardRouter.shardCount() && !remaining.isEmpty(); shard++) {
+                int target = shard;
+                List<Long> written = shardRouter.write(shard, () -> write(target, remaining));
+                written.forEach(remaining::remove);
+                applied += written.size();
+            }
+            remaining.forEach((id, delta) -> log.warn(
+                    "Dropped weight delta {} for fruit {}: fruit is gone or weight would not stay positive", delta, id));
+            if (deltaLog != null) {
+                deltaLog.discardRotated();
+            }
+            return applied;
+        } catch (RuntimeException e) {
+            log.warn("Weight flush of {} fruits failed, keeping the deltas buffered", remaining.size(), e);
+            drainLock.readLock().lock();
+            try {
+                remaining.forEach((id, delta) -> {
+                    if (deltaLog != null) {
+                        deltaLog.append(id, delta);
+                    }
+                    buffer(id, delta);
+                });
+            } finally {
+                drainLock.readLock().unlock();
+            }
+            if (deltaLog != null) {
+                deltaLog.discardRotated();
+            }
+            return 0;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        flush();
+        if (deltaLog != null) {
+            forgetTokens(Arrays.stream(committedTokens).filter(Objects::nonNull).toList());
+            deltaLog.close();
+        }
+    }
+
+    private List<Long> write(int shard, Map<Long, Integer> deltas) {
+        List<Long> handled = new ArrayList<>();
+        List<Long> written = new ArrayList<>();
+        for (List<Long> chunk : Lookups.chunks(new ArrayList<>(deltas.keySet()), Lookups.CHUNK_SIZE)) {
+            // The rows stay locked until the flush commits, so a version one higher afterwards is this update's doing.
+            // The update counts can't tell: batches rewritten by the MySQL driver report SUCCESS_NO_INFO for every row
+            Map<Long, Long> before = versions(chunk, " for update");
+            if (before.isEmpty()) {
+                continue;
+            }
+            List<Long> found = new ArrayList<>(before.keySet());
+            handled.addAll(found);
+            jdbcTemplate.batchUpdate(UPDATE_SQL, found, batchSize, (ps, id) -> {
+                ps.setInt(1, deltas.get(id));
+                ps.setLong(2, id);
+                ps.setInt(3, deltas.get(id));
+            });
+
+            Map<Long, Long> after = versions(found, "");
+            List<Long> applied = found.stream()
+                    .filter(id -> after.get(id) == before.get(id) + 1)
+                    .toList();
+            if (applied.isEmpty()) {
+                continue;
+            }
+            for (FruitResponseDTO updated : fruitRepository.findDtosByIdIn(applied)) {
+                FruitResponseDTO previous = new FruitResponseDTO(updated.id(), updated.name(),
+                        updated.weightInKilos() - deltas.get(updated.id()), updated.supplier());
+                eventPublisher.publishEvent(FruitChangedEvent.updated(previous, updated));
+                written.add(updated.id());
+            }
+        }
+        if (deltaLog != null && !handled.isEmpty()) {
+            // The token commits with the updates, so a restart can tell whether the logged deltas reached this shard
+            String token = UUID.randomUUID().toString();
+            jdbcTemplate.update("insert into weight_delta_flushes (id) values (?)", token);
+            String previous = committedTokens[shard];
+            if (previous != null) {
+                jdbcTemplate.update("delete from weight_delta_flushes where id = ?", previous);
+            }
+            deltaLog.markApplied(token, handled);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    committedTokens[shard] = token;
+                }
+            });
+        }
+        return written;
+    }
+
+    // Best effort: a token left behind is only ever looked up by a recovery that names it
+    private void forgetTokens(List<String> tokens) {
+        if (tokens.isEmpty()) {
+            return;
+        }
+        try {
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                shardRouter.run(shard, () -> jdbcTemplate.batchUpdate("delete from weight_delta_flushes where id = ?",
+                        tokens.stream().map(token -> new Object[]{token}).toList()));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not delete {} weight flush tokens", tokens.size(), e);
+        }
+    }
+
+    private Map<Long, Long> versions(List<Long> ids, String lock) {
+        Map<Long, Long> versions = new HashMap<>();
+        jdbcTemplate.query("select id, version from fruits where id in ("
+                        + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")" + lock,
+                row -> {
+                    versions.put(row.getLong(1), row.getLong(2));
+                },
+                ids.toArray());
+        return versions;
+    }
+
+    private Map<Long, Integer> drain() {
+        Map<Long, Integer> drained = new HashMap<>();
+        drainLock.writeLock().lock();
+        try {
+            for (Stripe stripe : stripes) {
+                stripe.lock.lock();
+                try {
+                    drained.putAll(stripe.deltas);
+                    stripe.deltas = new HashMap<>();
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+            pending.set(0);
+            if (deltaLog != null) {
+                deltaLog.rotate();
+            }
+        } finally {
+            drainLock.writeLock().unlock();
+        }
+        drained.values().removeIf(delta -> delta == 0);
+        return drained;
+    }
+
+    private void buffer(Long id, int delta) {
+        Stripe stripe = stripeFor(id);
+        stripe.lock.lock();
+        try {
+            if (stripe.deltas.putIfAbsent(id, delta) == null) {
+                pending.incrementAndGet();
+            } else {
+                stripe.deltas.merge(id, delta, Integer::sum);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private boolean isBuffered(Long id) {
+        Stripe stripe = stripeFor(id);
+        stripe.lock.lock();
+        try {
+            return stripe.deltas.containsKey(id);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private Stripe stripeFor(Long id) {
+        return stripes[Math.floorMod(Long.hashCode(id), stripes.length)];
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private Map<Long, Integer> deltas = new HashMap<>();
+    }
+}
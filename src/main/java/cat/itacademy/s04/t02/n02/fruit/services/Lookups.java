@@ -0,0 +1,38 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+
+final class Lookups {
+
+    static final int MAX_IDS = 1000;
+    static final int CHUNK_SIZE = 500;
+
+    private Lookups() {
+    }
+
+    static List<Long> distinctIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new IllegalArgumentException("At least one id is required");
+        }
+        if (ids.size() > MAX_IDS) {
+            throw new IllegalArgumentException("At most " + MAX_IDS + " ids can be requested at once");
+        }
+        if (ids.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Ids cannot be null");
+        }
+        return new ArrayList<>(new LinkedHashSet<>(ids));
+    }
+
+    static <T> List<List<T>> chunks(Collection<T> values, int size) {
+        List<T> list = List.copyOf(values);
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += size) {
+            chunks.add(list.subList(from, Math.min(from + size, list.size())));
+        }
+        return chunks;
+    }
+}
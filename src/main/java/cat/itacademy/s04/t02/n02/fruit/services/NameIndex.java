@@ -0,0 +1,149 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+class NameIndex<T> {
+
+    static final int EXACT = 0;
+    static final int PREFIX = 1;
+    static final int FUZZY = 2;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{Alnum}]+");
+
+    private final Function<T, String> nameOf;
+    private final Map<Long, T> documents = new HashMap<>();
+    private final NavigableMap<String, Set<Long>> postings = new TreeMap<>();
+
+    NameIndex(Function<T, String> nameOf) {
+        this.nameOf = nameOf;
+    }
+
+    void put(Long id, T document) {
+        remove(id);
+        documents.put(id, document);
+        for (String term : terms(nameOf.apply(document))) {
+            postings.computeIfAbsent(term, t -> new HashSet<>()).add(id);
+        }
+    }
+
+    void remove(Long id) {
+        T previous = documents.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (String term : terms(nameOf.apply(previous))) {
+            Set<Long> ids = postings.get(term);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    T get(Long id) {
+        return documents.get(id);
+    }
+
+    /**
+     * Returns the ids whose name matches every query term, mapped to a rank where lower is better.
+     */
+    Map<Long, Integer> match(String query, boolean fuzzy) {
+        Map<Long, Integer> result = null;
+        for (String token : terms(query)) {
+            Map<Long, Integer> matches = matchTerm(token, fuzzy);
+            if (result == null) {
+                result = matches;
+            } else {
+                Map<Long, Integer> previous = result;
+                result = new HashMap<>();
+                for (Map.Entry<Long, Integer> entry : matches.entrySet()) {
+                    Integer rank = previous.get(entry.getKey());
+                    if (rank != null) {
+                        result.put(entry.getKey(), rank + entry.getValue());
+                    }
+                }
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result == null ? Map.of() : result;
+    }
+
+    private Map<Long, Integer> matchTerm(String token, boolean fuzzy) {
+        Map<Long, Integer> matches = new HashMap<>();
+        postings.subMap(token, true, token + Character.MAX_VALUE, false).forEach((term, ids) -> {
+            int rank = term.equals(token) ? EXACT : PREFIX;
+            ids.forEach(id -> matches.merge(id, rank, Math::min));
+        });
+        int maxEdits = maxEdits(token);
+        if (fuzzy && maxEdits > 0) {
+            postings.forEach((term, ids) -> {
+                if (Math.abs(term.length() - token.length()) <= maxEdits) {
+                    int distance = distance(token, term, maxEdits);
+                    if (distance <= maxEdits) {
+                        ids.forEach(id -> matches.merge(id, FUZZY + distance, Math::min));
+                    }
+                }
+            });
+        }
+        return matches;
+    }
+
+    static List<String> terms(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        return Arrays.stream(SEPARATORS.split(folded))
+                .filter(term -> !term.isEmpty())
+                .distinct()
+                .toList();
+    }
+
+    static int maxEdits(String token) {
+        if (token.length() <= 2) {
+            return 0;
+        }
+        return token.length() <= 5 ? 1 : 2;
+    }
+
+    /**
+     * Levenshtein distance, giving up with {@code max + 1} as soon as every alignment exceeds {@code max}.
+     */
+    static int distance(String a, String b, int max) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
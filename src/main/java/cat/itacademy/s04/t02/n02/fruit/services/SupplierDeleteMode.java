@@ -0,0 +1,19 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import java.util.Arrays;
+
+public enum SupplierDeleteMode {
+    RESTRICT,
+    CASCADE,
+    REASSIGN;
+
+    public static SupplierDeleteMode from(String value) {
+        if (value == null || value.isBlank()) {
+            return RESTRICT;
+        }
+        return Arrays.stream(values())
+                .filter(mode -> mode.name().equalsIgnoreCase(value))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unsupported delete mode: " + value));
+    }
+}
@@ -1,14 +1,25 @@
 package cat.itacademy.s04.t02.n02.fruit.services;
 
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierLookupDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.SupplierRequestDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierUpsertDTO;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface SupplierService {
     SupplierResponseDTO addSupplier(SupplierRequestDTO request);
     List<SupplierResponseDTO> getAllSuppliers();
+    String getSuppliersVersion();
     SupplierResponseDTO getSupplierById(Long id);
+    long getSupplierVersion(Long id);
+    List<SupplierLookupDTO> getSuppliersByIds(List<Long> ids);
+    Optional<SupplierResponseDTO> findSupplierById(Long id);
+    Optional<SupplierResponseDTO> findSupplierByName(String name);
+    SupplierResponseDTO upsertSupplierByName(String name, SupplierUpsertDTO request);
     SupplierResponseDTO updateSupplier(Long id, SupplierRequestDTO request);
+    SupplierResponseDTO updateSupplier(Long id, SupplierRequestDTO request, Long expectedVersion);
     void deleteSupplier(Long id);
+    void deleteSupplier(Long id, SupplierDeleteMode mode, Long reassignTo);
 }
\ No newline at end of file
@@ -1,80 +1,282 @@
 package cat.itacademy.s04.t02.n02.fruit.services;
 
+import cat.itacademy.s04.t02.n02.fruit.config.CacheConfig;
+import cat.itacademy.s04.t02.n02.fruit.config.ObservabilityConfig;
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardRouter;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierLookupDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.SupplierRequestDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierUpsertDTO;
+import cat.itacademy.s04.t02.n02.fruit.events.SupplierChangedEvent;
+import cat.itacademy.s04.t02.n02.fruit.events.SupplierFruitsRemovedEvent;
+import cat.itacademy.s04.t02.n02.fruit.exception.ConflictException;
+import cat.itacademy.s04.t02.n02.fruit.exception.PreconditionFailedException;
+import cat.itacademy.s04.t02.n02.fruit.exception.UniqueViolations;
+import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
 import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
 import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
 import cat.itacademy.s04.t02.n02.fruit.repository.SupplierRepository;
+import cat.itacademy.s04.t02.n02.fruit.repository.SupplierUpsertRepository;
+import io.micrometer.core.annotation.Timed;
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
 
 @Service
+@Timed(ObservabilityConfig.SERVICE_TIMER)
 public class SupplierServiceImpl implements SupplierService{
 
     private final SupplierRepository supplierRepository;
     private final FruitRepository fruitRepository;
+    private final Cache suppliersById;
+    private final Cache suppliersByName;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ShardRouter shardRouter;
+    private final FruitShardMover shardMover;
+    private final ChangeFeedService changeFeedService;
 
-    public SupplierServiceImpl(SupplierRepository supplierRepository, FruitRepository fruitRepository) {
+    public SupplierServiceImpl(SupplierRepository supplierRepository, FruitRepository fruitRepository,
+                               CacheManager cacheManager, ApplicationEventPublisher eventPublisher,
+                               ShardRouter shardRouter, FruitShardMover shardMover,
+                               ChangeFeedService changeFeedService) {
         this.supplierRepository = supplierRepository;
         this.fruitRepository = fruitRepository;
+        this.eventPublisher = eventPublisher;
+        this.shardRouter = shardRouter;
+        this.shardMover = shardMover;
+        this.changeFeedService = changeFeedService;
+        // Evictions wait for the commit, so a concurrent read can't put the old row back in the meantime
+        this.suppliersById = new TransactionAwareCacheDecorator(
+                Objects.requireNonNull(cacheManager.getCache(CacheConfig.SUPPLIERS_BY_ID)));
+        this.suppliersByName = new TransactionAwareCacheDecorator(
+                Objects.requireNonNull(cacheManager.getCache(CacheConfig.SUPPLIERS_BY_NAME)));
     }
 
     @Override
+    @Transactional
     public SupplierResponseDTO addSupplier(SupplierRequestDTO request) {
-        if (supplierRepository.existsByName(request.name())) {
-            throw new IllegalArgumentException("Supplier name already exists");
-        }
-
         Supplier supplier = new Supplier(null, request.name(), request.country());
-        Supplier saved = supplierRepository.save(supplier);
+        Supplier saved;
+        try {
+            saved = supplierRepository.saveAndFlush(supplier);
+        } catch (DataIntegrityViolationException e) {
+            if (!UniqueViolations.isUniqueViolation(e)) {
+                throw e;
+            }
+            throw new ConflictException("Supplier name already exists");
+        }
+        evict(saved.getId(), saved.getName());
 
-        return new SupplierResponseDTO(saved.getId(), saved.getName(), saved.getCountry());
+        SupplierResponseDTO created = toDto(saved);
+        eventPublisher.publishEvent(SupplierChangedEvent.created(created));
+        return created;
     }
 
     @Override
     public List<SupplierResponseDTO> getAllSuppliers() {
         return supplierRepository.findAll().stream()
-                .map(s -> new SupplierResponseDTO(s.getId(), s.getName(), s.getCountry()))
+                .map(this::toDto)
                 .toList();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public String getSuppliersVersion() {
+        return supplierRepository.findCollectionVersion().token();
+    }
+
     @Override
     public SupplierResponseDTO getSupplierById(Long id) {
-        Supplier supplier = supplierRepository.findById(id)
+        return findSupplierById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Supplier with id " + id + " not found"));
+    }
+
+    @Override
+    public long getSupplierVersion(Long id) {
+        return supplierRepository.findVersionById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Supplier with id " + id + " not found"));
-        return new SupplierResponseDTO(supplier.getId(), supplier.getName(), supplier.getCountry());
+    }
+
+    @Override
+    public List<SupplierLookupDTO> getSuppliersByIds(List<Long> ids) {
+        Map<Long, SupplierResponseDTO> found = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        for (Long id : Lookups.distinctIds(ids)) {
+            SupplierResponseDTO cached = suppliersById.get(id, SupplierResponseDTO.class);
+            if (cached == null) {
+                misses.add(id);
+            } else {
+                found.put(id, cached);
+            }
+        }
+        for (List<Long> chunk : Lookups.chunks(misses, Lookups.CHUNK_SIZE)) {
+            supplierRepository.findAllById(chunk).forEach(supplier -> {
+                SupplierResponseDTO dto = toDto(supplier);
+                found.put(supplier.getId(), dto);
+                suppliersById.put(supplier.getId(), dto);
+            });
+        }
+        return ids.stream()
+                .map(id -> {
+                    SupplierResponseDTO supplier = found.get(id);
+                    return supplier != null
+                            ? new SupplierLookupDTO(id, HttpStatus.OK.value(), supplier)
+                            : new SupplierLookupDTO(id, HttpStatus.NOT_FOUND.value(), null);
+                })
+                .toList();
+    }
+
+    @Override
+    public Optional<SupplierResponseDTO> findSupplierById(Long id) {
+        return cached(suppliersById, id, supplierRepository::findById);
+    }
+
+    @Override
+    public Optional<SupplierResponseDTO> findSupplierByName(String name) {
+        String normalized = Supplier.normalizeName(name);
+        return cached(suppliersByName, normalized, supplierRepository::findByNormalizedName);
+    }
+
+    @Override
+    @Transactional
+    public SupplierResponseDTO upsertSupplierByName(String name, SupplierUpsertDTO request) {
+        String trimmed = name.trim();
+        if (trimmed.isEmpty()) {
+            throw new IllegalArgumentException("Supplier name cannot be blank");
+        }
+        SupplierUpsertRepository.Upserted upserted = supplierRepository.upsertByName(trimmed, request.country());
+        // the old name, if any, has the same normalized form
+        evict(upserted.id(), trimmed);
+
+        SupplierResponseDTO after = new SupplierResponseDTO(upserted.id(), trimmed, request.country());
+        eventPublisher.publishEvent(upserted.created()
+                ? SupplierChangedEvent.created(after)
+                : SupplierChangedEvent.upserted(after));
+        return after;
     }
 
     @Override
     public SupplierResponseDTO updateSupplier(Long id, SupplierRequestDTO request) {
+        return updateSupplier(id, request, null);
+    }
+
+    @Override
+    @Transactional
+    public SupplierResponseDTO updateSupplier(Long id, SupplierRequestDTO request, Long expectedVersion) {
         Supplier existing = supplierRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Supplier with id " + id + " not found"));
-
-        if (supplierRepository.existsByName(request.name())
-        && !existing.getName().equalsIgnoreCase(request.name())) {
-            throw new IllegalArgumentException("Supplier name already exists");
+        if (expectedVersion != null && existing.getVersion() != expectedVersion) {
+            throw new PreconditionFailedException("Supplier with id " + id + " has been modified");
         }
 
+        SupplierResponseDTO before = toDto(existing);
+        String previousName = existing.getName();
         existing.setName(request.name());
         existing.setCountry(request.country());
 
-        Supplier updated = supplierRepository.save(existing);
+        Supplier updated;
+        try {
+            updated = supplierRepository.saveAndFlush(existing);
+        } catch (DataIntegrityViolationException e) {
+            if (!UniqueViolations.isUniqueViolation(e)) {
+                throw e;
+            }
+            throw new ConflictException("Supplier name already exists");
+        }
+        evict(id, previousName);
+        suppliersByName.evict(Supplier.normalizeName(updated.getName()));
 
-        return new SupplierResponseDTO(updated.getId(), updated.getName(), updated.getCountry());
+        SupplierResponseDTO after = toDto(updated);
+        eventPublisher.publishEvent(SupplierChangedEvent.updated(before, after));
+        return after;
     }
 
     @Override
+    @Transactional
     public void deleteSupplier(Long id) {
+        deleteSupplier(id, SupplierDeleteMode.RESTRICT, null);
+    }
+
+    @Override
+    @Transactional
+    public void deleteSupplier(Long id, SupplierDeleteMode mode, Long reassignTo) {
         Supplier supplier = supplierRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Supplier with id " + id + " not found"));
+        int fruitShard = shardRouter.shardFor(id);
 
-        if (!fruitRepository.findBySupplierId(id).isEmpty()) {
-            throw new IllegalStateException("Cannot delete supplier with associated fruits");
+        switch (mode) {
+            case RESTRICT -> {
+                if (shardRouter.read(fruitShard, () -> fruitRepository.existsBySupplierId(id))) {
+                    throw new IllegalStateException("Cannot delete supplier with associated fruits");
+                }
+            }
+            case CASCADE -> {
+                shardRouter.run(fruitShard, () -> {
+                    changeFeedService.recordSupplierFruitsRemoved(toDto(supplier), null);
+                    fruitRepository.deleteAllBySupplier(supplier);
+                });
+                eventPublisher.publishEvent(new SupplierFruitsRemovedEvent(toDto(supplier), null));
+            }
+            case REASSIGN -> {
+                if (reassignTo == null) {
+                    throw new IllegalArgumentException("Target supplier is required to reassign fruits");
+                }
+                if (reassignTo.equals(id)) {
+                    throw new IllegalArgumentException("Cannot reassign fruits to the supplier being deleted");
+                }
+                Supplier target = supplierRepository.findById(reassignTo)
+                        .orElseThrow(() -> new EntityNotFoundException("Supplier with id " + reassignTo + " not found"));
+                int targetShard = shardRouter.shardFor(reassignTo);
+                Runnable recordChanges = () -> changeFeedService.recordSupplierFruitsRemoved(toDto(supplier), toDto(target));
+                if (targetShard == fruitShard) {
+                    shardRouter.run(fruitShard, () -> {
+                        recordChanges.run();
+                        fruitRepository.reassignSupplier(supplier, target);
+                    });
+                } else {
+                    List<Fruit> moved = shardRouter.read(fruitShard, () -> fruitRepository.findBySupplierId(id));
+                    shardMover.move(moved, reassignTo, fruitShard, targetShard, recordChanges);
+                }
+                eventPublisher.publishEvent(new SupplierFruitsRemovedEvent(toDto(supplier), toDto(target)));
+            }
         }
 
         supplierRepository.delete(supplier);
+        evict(id, supplier.getName());
+        eventPublisher.publishEvent(SupplierChangedEvent.deleted(toDto(supplier)));
+    }
+
+    // Misses aren't cached, so a supplier created on another instance is found straight away
+    private <K> Optional<SupplierResponseDTO> cached(Cache cache, K key, Function<K, Optional<Supplier>> loader) {
+        SupplierResponseDTO cached = cache.get(key, SupplierResponseDTO.class);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<SupplierResponseDTO> loaded = loader.apply(key).map(this::toDto);
+        loaded.ifPresent(supplier -> cache.put(key, supplier));
+        return loaded;
+    }
+
+    private void evict(Long id, String name) {
+        suppliersById.evict(id);
+        suppliersByName.evict(Supplier.normalizeName(name));
+    }
+
+    private SupplierResponseDTO toDto(Supplier supplier) {
+        return new SupplierResponseDTO(supplier.getId(), supplier.getName(), supplier.getCountry());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,92 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardRouter;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.events.SupplierChangedEvent;
+import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
+import cat.itacademy.s04.t02.n02.fruit.repository.SupplierRepository;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Copies suppliers from shard 0, which owns them, to every other shard so that fruits can keep their foreign key
+ * and queries can keep joining them. Copies that fail are repaired by the periodic resync.
+ */
+@Component
+public class SupplierShardReplicator {
+
+    private static final Logger log = LoggerFactory.getLogger(SupplierShardReplicator.class);
+
+    private final SupplierRepository supplierRepository;
+    private final EntityManager entityManager;
+    private final ShardRouter shardRouter;
+
+    public SupplierShardReplicator(SupplierRepository supplierRepository, EntityManager entityManager,
+                                   ShardRouter shardRouter) {
+        this.supplierRepository = supplierRepository;
+        this.entityManager = entityManager;
+        this.shardRouter = shardRouter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSupplierChanged(SupplierChangedEvent event) {
+        for (int shard = 1; shard < shardRouter.shardCount(); shard++) {
+            try {
+                shardRouter.run(shard, () -> {
+                    if (event.after() != null) {
+                        copy(event.after());
+                    } else {
+                        supplierRepository.findById(event.supplierId()).ifPresent(supplierRepository::delete);
+                    }
+                });
+            } catch (RuntimeException e) {
+                log.warn("Could not copy supplier {} to shard {}: {}", event.supplierId(), shard, e.getMessage());
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${fruits.sharding.supplier-sync-interval:PT5M}",
+            initialDelayString = "${fruits.sharding.supplier-sync-interval:PT5M}")
+    public void resync() {
+        if (!shardRouter.isSharded()) {
+            return;
+        }
+        List<SupplierResponseDTO> suppliers = shardRouter.read(0, () -> supplierRepository.findAll().stream()
+                .map(supplier -> new SupplierResponseDTO(supplier.getId(), supplier.getName(), supplier.getCountry()))
+                .toList());
+        Set<Long> ids = new HashSet<>(suppliers.stream().map(SupplierResponseDTO::id).toList());
+        for (int shard = 1; shard < shardRouter.shardCount(); shard++) {
+            try {
+                shardRouter.run(shard, () -> {
+                    // Stale copies go first, so that their names are free again
+                    supplierRepository.findAll().stream()
+                            .filter(supplier -> !ids.contains(supplier.getId()))
+                            .forEach(supplierRepository::delete);
+                    entityManager.flush();
+                    suppliers.forEach(this::copy);
+                });
+            } catch (RuntimeException e) {
+                log.warn("Could not resync suppliers on shard {}: {}", shard, e.getMessage());
+            }
+        }
+    }
+
+    private void copy(SupplierResponseDTO source) {
+        supplierRepository.findById(source.id()).ifPresentOrElse(existing -> {
+            existing.setName(source.name());
+            existing.setCountry(source.country());
+        }, () -> entityManager.persist(new Supplier(source.id(), source.name(), source.country())));
+        entityManager.flush();
+    }
+}
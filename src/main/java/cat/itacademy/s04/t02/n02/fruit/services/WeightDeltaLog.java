@@ -0,0 +1,162 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Append-only log of buffered weight deltas, one {@code id delta} line each. A flush rotates the live file
+ * to {@code <name>.flushing} and deletes it once every shard's batch has committed. Before a shard's batch commits,
+ * an {@code applied token id...} line names the fruits it updates and the token it records in the same transaction.
+ * A crash can leave the rotated file behind after some batches committed, so on startup the deltas of fruits under
+ * a token that reached the database are skipped, and only the rest of the rotated file is replayed.
+ */
+final class WeightDeltaLog implements Closeable {
+
+    private final Path path;
+    private final Path flushing;
+    private final boolean fsync;
+    private FileChannel channel;
+
+    WeightDeltaLog(Path path, boolean fsync) {
+        this.path = path;
+        this.flushing = path.resolveSibling(path.getFileName() + ".flushing");
+        this.fsync = fsync;
+    }
+
+    /**
+     * Reads the deltas left by a previous run and rewrites them as the new live file.
+     */
+    synchronized Map<Long, Integer> recover(Predicate<String> committed) {
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Map<Long, Integer> deltas = new HashMap<>();
+            Map<String, List<Long>> applied = new HashMap<>();
+            read(flushing, deltas, applied);
+            applied.forEach((token, ids) -> {
+                if (committed.test(token)) {
+                    ids.forEach(deltas::remove);
+                }
+            });
+            read(path, deltas, new HashMap<>());
+
+            Path recovered = path.resolveSibling(path.getFileName() + ".recovered");
+            try (FileChannel out = FileChannel.open(recovered, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                deltas.values().removeIf(delta -> delta == 0);
+                for (Map.Entry<Long, Integer> entry : deltas.entrySet()) {
+                    out.write(line(entry.getKey(), entry.getValue()));
+                }
+                out.force(true);
+            }
+            Files.move(recovered, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(flushing);
+            channel = open();
+            return deltas;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot recover weight delta log " + path, e);
+        }
+    }
+
+    synchronized void append(Long id, int delta) {
+        try {
+            channel.write(line(id, delta));
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to weight delta log " + path, e);
+        }
+    }
+
+    synchronized void rotate() {
+        try {
+            channel.close();
+            Files.move(path, flushing, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot rotate weight delta log " + path, e);
+        }
+    }
+
+    /**
+     * Records, in the rotated file, the fruits a shard's batch updates. Must be called before that batch commits.
+     */
+    synchronized void markApplied(String token, Collection<Long> ids) {
+        try (FileChannel out = FileChannel.open(flushing, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            out.write(ByteBuffer.wrap(("applied " + token + " "
+                    + ids.stream().map(String::valueOf).collect(Collectors.joining(" ")) + "\n")
+                    .getBytes(StandardCharsets.US_ASCII)));
+            if (fsync) {
+                out.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot append to " + flushing, e);
+        }
+    }
+
+    synchronized void discardRotated() {
+        try {
+            Files.deleteIfExists(flushing);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete " + flushing, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static void read(Path file, Map<Long, Integer> deltas, Map<String, List<Long>> applied)
+            throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        String content = Files.readString(file, StandardCharsets.US_ASCII);
+        // a line without its newline is a torn write from a crash mid-append
+        for (String line : content.substring(0, content.lastIndexOf('\n') + 1).split("\n")) {
+            String[] parts = line.trim().split(" ");
+            if (parts.length > 2 && parts[0].equals("applied")) {
+                List<Long> ids = applied.computeIfAbsent(parts[1], token -> new ArrayList<>());
+                for (int i = 2; i < parts.length; i++) {
+                    ids.add(Long.parseLong(parts[i]));
+                }
+                continue;
+            }
+            if (parts.length != 2) {
+                continue;
+            }
+            try {
+                deltas.merge(Long.parseLong(parts[0]), Integer.parseInt(parts[1]), Integer::sum);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+    }
+
+    private static ByteBuffer line(Long id, int delta) {
+        return ByteBuffer.wrap((id + " " + delta + "\n").getBytes(StandardCharsets.US_ASCII));
+    }
+}
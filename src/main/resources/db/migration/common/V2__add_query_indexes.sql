@@ -0,0 +1,8 @@
+-- Serves findBySupplierId, existsBySupplierId, supplier deletes/reassignments and the supplier listing,
+-- and covers the fruit columns of the stats GROUP BY and of the per-supplier DTO projection.
+create index idx_fruits_supplier_name_weight on fruits (supplier_id, name, weight_in_kilos);
+
+-- Redundant once the composite index leads with supplier_id
+drop index idx_fruits_supplier_id on fruits;
+
+create index idx_fruits_name on fruits (name, weight_in_kilos);
@@ -0,0 +1,13 @@
+-- Responses replayed for retried writes when fruits.idempotency.store=jdbc
+create table idempotency_keys (
+    idempotency_key varchar(255) not null,
+    fingerprint char(64) not null,
+    status integer not null,
+    content_type varchar(255),
+    headers varchar(2048),
+    body longblob,
+    expires_at bigint not null,
+    primary key (idempotency_key)
+);
+
+create index idx_idempotency_keys_expires_at on idempotency_keys (expires_at);
@@ -0,0 +1,10 @@
+-- Change log behind GET /changes, written in the same transaction as each fruit or supplier change.
+-- Ids are time-ordered, so they double as the feed position and as the purge cutoff.
+create table catalog_changes (
+    id bigint not null,
+    entity varchar(16) not null,
+    entity_id bigint not null,
+    operation varchar(16) not null,
+    payload varchar(4096),
+    primary key (id)
+);
@@ -0,0 +1,15 @@
+-- Change feed positions are taken from this counter just before each transaction commits. Its row stays locked
+-- until the commit, so positions become visible in commit order and without gaps.
+create table catalog_change_sequence (
+    id integer not null,
+    last_id bigint not null,
+    primary key (id)
+);
+
+-- Rows written so far keep their time-ordered ids, and new positions carry on after the highest of them
+insert into catalog_change_sequence (id, last_id) select 1, coalesce(max(id), 0) from catalog_changes;
+
+-- Purge cutoff, now that positions no longer carry a timestamp; existing rows take the one in their id
+alter table catalog_changes add column created_at bigint default 0 not null;
+update catalog_changes set created_at = floor(id / 4194304) + 1735689600000;
+create index idx_catalog_changes_created_at on catalog_changes (created_at);
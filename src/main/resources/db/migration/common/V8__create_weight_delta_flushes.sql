@@ -0,0 +1,6 @@
+-- Token of each weight delta batch that committed on this shard, written in the batch's own transaction, so a
+-- restart can tell which of the batches named in its delta log reached the database
+create table weight_delta_flushes (
+    id varchar(36) not null,
+    primary key (id)
+);
@@ -0,0 +1 @@
+create sequence fruits_seq start with 1 increment by 50;
@@ -0,0 +1,13 @@
+-- Case-insensitive supplier names enforced by the database instead of check-then-act in the service
+-- Names that only differ in case or surrounding spaces were allowed until now. The oldest keeps its name and the
+-- others get their id appended, so the unique index below can be created
+update suppliers s
+set name = concat(left(trim(s.name), 200), ' #', s.id)
+where exists (select 1 from suppliers o where lower(trim(o.name)) = lower(trim(s.name)) and o.id < s.id);
+
+alter table suppliers
+    add column normalized_name varchar(255) generated always as (lower(trim(name)));
+
+create unique index uk_suppliers_normalized_name on suppliers (normalized_name);
+
+alter table suppliers drop constraint uk_suppliers_name;
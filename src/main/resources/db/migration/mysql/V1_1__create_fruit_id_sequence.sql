@@ -0,0 +1,6 @@
+-- MySQL has no sequences; this is the table Hibernate emulates fruits_seq with
+create table fruits_seq (
+    next_val bigint
+);
+
+insert into fruits_seq (next_val) values (1);
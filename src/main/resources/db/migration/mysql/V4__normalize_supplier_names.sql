@@ -0,0 +1,16 @@
+-- Case-insensitive supplier names enforced by the database instead of check-then-act in the service
+-- Names that only differ in case or surrounding spaces were allowed until now. The oldest keeps its name and the
+-- others get their id appended, so the unique index below can be created
+update suppliers s
+join (select min(id) as keep_id, lower(trim(name)) as normalized
+      from suppliers
+      group by lower(trim(name))
+      having count(*) > 1) d on lower(trim(s.name)) = d.normalized and s.id <> d.keep_id
+set s.name = concat(left(trim(s.name), 200), ' #', s.id);
+
+alter table suppliers
+    add column normalized_name varchar(255) generated always as (lower(trim(name))) stored not null;
+
+create unique index uk_suppliers_normalized_name on suppliers (normalized_name);
+
+alter table suppliers drop index uk_suppliers_name;
@@ -0,0 +1,2 @@
+-- Left over from pooled fruit ids; fruits use the identity column, or time-ordered ids when sharded
+drop table if exists fruits_seq;
@@ -0,0 +1,227 @@
+package cat.itacademy.s04.t02.n02.reactive.controllers;
+
+import cat.itacademy.s04.t02.n02.fruit.controllers.FruitController;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+import cat.itacademy.s04.t02.n02.reactive.ReactiveFruitApplication;
+import cat.itacademy.s04.t02.n02.reactive.repository.ReactiveFruitRepository;
+import cat.itacademy.s04.t02.n02.reactive.repository.ReactiveSupplierRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(classes = ReactiveFruitApplication.class, properties = "spring.main.web-application-type=reactive")
+@ActiveProfiles({ReactiveFruitApplication.PROFILE, "reactive-test"})
+@AutoConfigureWebTestClient
+class ReactiveFruitControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ReactiveFruitRepository fruitRepository;
+
+    @Autowired
+    private ReactiveSupplierRepository supplierRepository;
+
+    private SupplierResponseDTO supplier;
+
+    @BeforeEach
+    void setup() {
+        fruitRepository.deleteAll().then(supplierRepository.deleteAll()).block();
+        supplier = createSupplier("FreshFarm", "Spain");
+    }
+
+    @Test
+    void createFruit_returns201_andGetFruitById_returnsIt() {
+        FruitResponseDTO created = createFruit("Banana", 5);
+
+        webTestClient.get().uri("/fruits/{id}", created.id())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.ETAG)
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Banana")
+                .jsonPath("$.supplier.name").isEqualTo("FreshFarm");
+    }
+
+    @Test
+    void createFruit_returns400WithErrorResponse_whenNameIsBlank() {
+        webTestClient.post().uri("/fruits")
+                .bodyValue(new FruitRequestDTO("", 5, supplier.id()))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(400)
+                .jsonPath("$.message").isEqualTo("name: Fruit name cannot be empty")
+                .jsonPath("$.path").isEqualTo("/fruits");
+    }
+
+    @Test
+    void createFruit_returns404_whenSupplierDoesNotExist() {
+        webTestClient.post().uri("/fruits")
+                .bodyValue(new FruitRequestDTO("Banana", 5, 999L))
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Supplier with ID 999 not found");
+    }
+
+    @Test
+    void getFruitById_returns304_whenETagMatches() {
+        FruitResponseDTO created = createFruit("Banana", 5);
+        String etag = webTestClient.get().uri("/fruits/{id}", created.id())
+                .exchange()
+                .returnResult(FruitResponseDTO.class)
+                .getResponseHeaders().getETag();
+
+        webTestClient.get().uri("/fruits/{id}", created.id())
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+    @Test
+    void listFruits_returnsPagesWithNextCursor() {
+        createFruit("Apple", 1);
+        createFruit("Banana", 2);
+        createFruit("Cherry", 3);
+
+        String cursor = webTestClient.get().uri("/fruits?limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(FruitController.NEXT_CURSOR_HEADER)
+                .expectBodyList(FruitResponseDTO.class).hasSize(2)
+                .returnResult().getResponseHeaders().getFirst(FruitController.NEXT_CURSOR_HEADER);
+
+        webTestClient.get().uri("/fruits?limit=2&after={cursor}", cursor)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(FruitController.NEXT_CURSOR_HEADER)
+                .expectBodyList(FruitResponseDTO.class)
+                .value(fruits -> assertThat(fruits).extracting(FruitResponseDTO::name).containsExactly("Cherry"));
+    }
+
+    @Test
+    void listFruits_streamsNdjson_whenRequested() {
+        createFruit("Apple", 1);
+        createFruit("Banana", 2);
+
+        List<FruitResponseDTO> streamed = webTestClient.get().uri("/fruits")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(FruitResponseDTO.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertThat(streamed).extracting(FruitResponseDTO::name).containsExactly("Apple", "Banana");
+    }
+
+    @Test
+    void listFruits_returns404_whenSupplierDoesNotExist() {
+        webTestClient.get().uri("/fruits?supplierId=999")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void updateFruit_returns412_whenIfMatchIsStale_and200Otherwise() {
+        FruitResponseDTO created = createFruit("Banana", 5);
+
+        webTestClient.put().uri("/fruits/{id}", created.id())
+                .header(HttpHeaders.IF_MATCH, "\"" + created.id() + "-41\"")
+                .bodyValue(new FruitRequestDTO("Banana", 6, supplier.id()))
+                .exchange()
+                .expectStatus().isEqualTo(412);
+
+        webTestClient.put().uri("/fruits/{id}", created.id())
+                .bodyValue(new FruitRequestDTO("Plantain", 6, supplier.id()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Plantain")
+                .jsonPath("$.weightInKilos").isEqualTo(6);
+    }
+
+    @Test
+    void deleteFruit_returns204_then404() {
+        FruitResponseDTO created = createFruit("Banana", 5);
+
+        webTestClient.delete().uri("/fruits/{id}", created.id())
+                .exchange()
+                .expectStatus().isNoContent();
+        webTestClient.delete().uri("/fruits/{id}", created.id())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void deleteSupplier_appliesRestrictCascadeAndReassignModes() {
+        SupplierResponseDTO target = createSupplier("GreenWorld", "Italy");
+        FruitResponseDTO fruit = createFruit("Banana", 5);
+
+        webTestClient.delete().uri("/suppliers/{id}", supplier.id())
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.delete().uri("/suppliers/{id}?mode=reassign&to={to}", supplier.id(), target.id())
+                .exchange()
+                .expectStatus().isNoContent();
+
+        webTestClient.get().uri("/fruits/{id}", fruit.id())
+                .exchange()
+                .expectBody()
+                .jsonPath("$.supplier.name").isEqualTo("GreenWorld");
+
+        webTestClient.delete().uri("/suppliers/{id}?mode=cascade", target.id())
+                .exchange()
+                .expectStatus().isNoContent();
+        webTestClient.get().uri("/fruits/{id}", fruit.id())
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void createSupplier_returns409_whenNameAlreadyExistsIgnoringCase() {
+        webTestClient.post().uri("/suppliers")
+                .bodyValue(new SupplierRequestDTO("freshfarm", "France"))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT)
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Supplier name already exists");
+    }
+
+    private SupplierResponseDTO createSupplier(String name, String country) {
+        return webTestClient.post().uri("/suppliers")
+                .bodyValue(new SupplierRequestDTO(name, country))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(SupplierResponseDTO.class)
+                .returnResult().getResponseBody();
+    }
+
+    private FruitResponseDTO createFruit(String name, int weight) {
+        return webTestClient.post().uri("/fruits")
+                .bodyValue(new FruitRequestDTO(name, weight, supplier.id()))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(FruitResponseDTO.class)
+                .returnResult().getResponseBody();
+    }
+}
@@ -0,0 +1,146 @@
+package cat.itacademy.s04.t02.n02.reactive.load;
+
+import cat.itacademy.s04.t02.n02.fruit.FruitApiMySqlApplication;
+import cat.itacademy.s04.t02.n02.reactive.ReactiveFruitApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the servlet/JPA stack with the WebFlux/R2DBC stack under the same request mix and database pool size.
+ * Run with {@code mvn test -Preactive,load-test}; tune with {@code -Dload.requests}, {@code -Dload.concurrency}
+ * and {@code -Dload.pool-size}.
+ */
+@Tag("load")
+class StackComparisonLoadTest {
+
+    private static final int REQUESTS = Integer.getInteger("load.requests", 20_000);
+    private static final int WARMUP_REQUESTS = Integer.getInteger("load.warmup", 2_000);
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 1_000);
+    private static final int POOL_SIZE = Integer.getInteger("load.pool-size", 10);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void compareThroughputAndP99_betweenServletAndReactiveStacks() throws Exception {
+        Result servlet = run("servlet", new SpringApplicationBuilder(FruitApiMySqlApplication.class)
+                .properties("server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:load-servlet;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                        "spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE));
+        Result reactive = run("reactive", new SpringApplicationBuilder(ReactiveFruitApplication.class)
+                .web(WebApplicationType.REACTIVE)
+                .profiles(ReactiveFruitApplication.PROFILE, "reactive-test")
+                .properties("server.port=0",
+                        "spring.r2dbc.url=r2dbc:h2:mem:///load-reactive;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                        "spring.r2dbc.pool.max-size=" + POOL_SIZE));
+
+        System.out.printf("%n%-10s %12s %10s %10s %8s%n", "stack", "req/s", "p50 ms", "p99 ms", "errors");
+        for (Result result : List.of(servlet, reactive)) {
+            System.out.printf("%-10s %12.1f %10.2f %10.2f %8d%n",
+                    result.stack(), result.throughput(), result.p50Millis(), result.p99Millis(), result.errors());
+        }
+
+        assertThat(servlet.errors()).isZero();
+        assertThat(reactive.errors()).isZero();
+    }
+
+    private Result run(String stack, SpringApplicationBuilder builder) throws Exception {
+        try (ConfigurableApplicationContext app = builder.run();
+             HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+            int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+            List<String> paths = seed(client, port);
+            fire(client, port, paths, WARMUP_REQUESTS, new long[WARMUP_REQUESTS], new AtomicInteger());
+
+            long[] latencies = new long[REQUESTS];
+            AtomicInteger errors = new AtomicInteger();
+            long start = System.nanoTime();
+            fire(client, port, paths, REQUESTS, latencies, errors);
+            long elapsed = System.nanoTime() - start;
+
+            Arrays.sort(latencies);
+            return new Result(stack, errors.get(),
+                    REQUESTS / (elapsed / 1_000_000_000.0),
+                    latencies[(int) (REQUESTS * 0.50)] / 1_000_000.0,
+                    latencies[(int) Math.min(REQUESTS - 1, REQUESTS * 0.99)] / 1_000_000.0);
+        }
+    }
+
+    private void fire(HttpClient client, int port, List<String> paths, int requests,
+                      long[] latencies, AtomicInteger errors) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests; i++) {
+                int index = i;
+                inFlight.acquire();
+                executor.submit(() -> {
+                    HttpRequest request = HttpRequest.newBuilder(
+                            URI.create("http://localhost:" + port + paths.get(index % paths.size()))).GET().build();
+                    long started = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    } finally {
+                        latencies[index] = System.nanoTime() - started;
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+    }
+
+    private List<String> seed(HttpClient client, int port) throws Exception {
+        List<Long> suppliers = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            suppliers.add(post(client, port, "/suppliers", "{\"name\":\"LoadSupplier" + i + "\",\"country\":\"Spain\"}"));
+        }
+        List<Long> fruits = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            fruits.add(post(client, port, "/fruits", "{\"name\":\"LoadFruit" + i + "\",\"weightInKilos\":" + (i % 50 + 1)
+                    + ",\"supplierId\":" + suppliers.get(i % suppliers.size()) + "}"));
+        }
+
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            paths.add("/fruits/" + fruits.get(i * 17 % fruits.size()));
+            paths.add("/suppliers/" + suppliers.get(i % suppliers.size()));
+            paths.add("/fruits?supplierId=" + suppliers.get(i % suppliers.size()));
+            paths.add("/fruits?limit=50");
+        }
+        return paths;
+    }
+
+    private Long post(HttpClient client, int port, String path, String json) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(201);
+        return objectMapper.readTree(response.body()).path("id").asLong();
+    }
+
+    private record Result(String stack, int errors, double throughput, double p50Millis, double p99Millis) {
+    }
+}
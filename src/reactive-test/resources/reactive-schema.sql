@@ -0,0 +1,20 @@
+-- Mirrors the tables the servlet application's migrations create
+create table if not exists suppliers (
+    id bigint auto_increment primary key,
+    name varchar(255) not null,
+    country varchar(255) not null,
+    version bigint default 0 not null,
+    normalized_name varchar(255) generated always as (lower(trim(name)))
+);
+
+create unique index if not exists uk_suppliers_normalized_name on suppliers (normalized_name);
+
+create table if not exists fruits (
+    id bigint auto_increment primary key,
+    name varchar(255) not null,
+    weight_in_kilos integer not null,
+    supplier_id bigint not null references suppliers (id),
+    version bigint default 0 not null
+);
+
+create index if not exists idx_fruits_supplier_id on fruits (supplier_id);
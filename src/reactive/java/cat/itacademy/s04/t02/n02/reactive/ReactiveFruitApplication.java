@@ -0,0 +1,27 @@
+package cat.itacademy.s04.t02.n02.reactive;
+
+import cat.itacademy.s04.t02.n02.fruit.config.IdConfig;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Non-blocking variant of the fruit API (WebFlux + R2DBC). Built and run with {@code -Preactive}.
+ */
+@SpringBootApplication(exclude = {DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class})
+@Import(IdConfig.class)
+public class ReactiveFruitApplication {
+
+	public static final String PROFILE = "reactive";
+
+	public static void main(String[] args) {
+		new SpringApplicationBuilder(ReactiveFruitApplication.class)
+				.web(WebApplicationType.REACTIVE)
+				.profiles(PROFILE)
+				.run(args);
+	}
+
+}
@@ -0,0 +1,26 @@
+package cat.itacademy.s04.t02.n02.reactive.controllers;
+
+final class ETags {
+
+    private ETags() {
+    }
+
+    static String of(Long id, long version) {
+        return "\"" + id + "-" + version + "\"";
+    }
+
+    static Long expectedVersion(Long id, String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String prefix = "\"" + id + "-";
+        String tag = ifMatch.trim();
+        if (tag.startsWith(prefix) && tag.endsWith("\"")) {
+            try {
+                return Long.parseLong(tag.substring(prefix.length(), tag.length() - 1));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return -1L;
+    }
+}
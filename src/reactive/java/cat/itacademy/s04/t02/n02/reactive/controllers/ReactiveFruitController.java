@@ -0,0 +1,80 @@
+package cat.itacademy.s04.t02.n02.reactive.controllers;
+
+import cat.itacademy.s04.t02.n02.fruit.controllers.FruitController;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.reactive.services.ReactiveFruitService;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/fruits")
+public class ReactiveFruitController {
+
+    private final ReactiveFruitService fruitService;
+
+    public ReactiveFruitController(ReactiveFruitService fruitService) {
+        this.fruitService = fruitService;
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<FruitResponseDTO>> createFruit(@Valid @RequestBody FruitRequestDTO request) {
+        return fruitService.addFruit(request)
+                .map(created -> ResponseEntity.status(HttpStatus.CREATED).body(created));
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<FruitResponseDTO>> getFruitById(@PathVariable Long id, ServerWebExchange exchange) {
+        return fruitService.getFruitVersion(id)
+                .flatMap(version -> exchange.checkNotModified(ETags.of(id, version))
+                        ? Mono.empty()
+                        : fruitService.getFruitById(id).map(ResponseEntity::ok));
+    }
+
+    /**
+     * Same contract as the servlet listing; clients that accept {@code application/x-ndjson} instead get
+     * the whole catalog streamed row by row, pulled from the database as the connection drains.
+     */
+    @GetMapping
+    public Mono<ResponseEntity<Flux<FruitResponseDTO>>> listFruits(@RequestParam(required = false) Long supplierId,
+                                                                  @RequestParam(required = false) Integer limit,
+                                                                  @RequestParam(required = false) String after,
+                                                                  @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (supplierId != null) {
+            return Mono.just(ResponseEntity.ok(fruitService.getFruitsBySupplierId(supplierId)));
+        }
+        if (limit == null && after == null && accept != null && accept.contains(MediaType.APPLICATION_NDJSON_VALUE)) {
+            return Mono.just(ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .body(fruitService.streamFruits()));
+        }
+        return fruitService.getFruitsPage(after, limit)
+                .map(page -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if (page.nextCursor() != null) {
+                        response.header(FruitController.NEXT_CURSOR_HEADER, page.nextCursor());
+                    }
+                    return response.body(Flux.fromIterable(page.fruits()));
+                });
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<FruitResponseDTO>> updateFruit(@PathVariable Long id, @Valid @RequestBody FruitRequestDTO request,
+                                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return fruitService.updateFruit(id, request, ETags.expectedVersion(id, ifMatch))
+                .map(ResponseEntity::ok);
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteFruit(@PathVariable Long id) {
+        return fruitService.deleteFruit(id)
+                .then(Mono.just(ResponseEntity.noContent().build()));
+    }
+}
@@ -0,0 +1,61 @@
+package cat.itacademy.s04.t02.n02.reactive.controllers;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.services.SupplierDeleteMode;
+import cat.itacademy.s04.t02.n02.reactive.services.ReactiveSupplierService;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/suppliers")
+public class ReactiveSupplierController {
+
+    private final ReactiveSupplierService supplierService;
+
+    public ReactiveSupplierController(ReactiveSupplierService supplierService) {
+        this.supplierService = supplierService;
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<SupplierResponseDTO>> createSupplier(@Valid @RequestBody SupplierRequestDTO request) {
+        return supplierService.addSupplier(request)
+                .map(created -> ResponseEntity.status(HttpStatus.CREATED).body(created));
+    }
+
+    @GetMapping
+    public Flux<SupplierResponseDTO> getAllSuppliers() {
+        return supplierService.getAllSuppliers();
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<SupplierResponseDTO>> getSupplierById(@PathVariable Long id, ServerWebExchange exchange) {
+        return supplierService.getSupplierVersion(id)
+                .flatMap(version -> exchange.checkNotModified(ETags.of(id, version))
+                        ? Mono.empty()
+                        : supplierService.getSupplierById(id).map(ResponseEntity::ok));
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<SupplierResponseDTO>> updateSupplier(@PathVariable Long id,
+                                                                    @Valid @RequestBody SupplierRequestDTO request,
+                                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return supplierService.updateSupplier(id, request, ETags.expectedVersion(id, ifMatch))
+                .map(ResponseEntity::ok);
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteSupplier(@PathVariable Long id,
+                                                     @RequestParam(required = false) String mode,
+                                                     @RequestParam(required = false) Long to) {
+        return Mono.fromSupplier(() -> SupplierDeleteMode.from(mode))
+                .flatMap(deleteMode -> supplierService.deleteSupplier(id, deleteMode, to))
+                .then(Mono.just(ResponseEntity.noContent().build()));
+    }
+}
@@ -0,0 +1,102 @@
+package cat.itacademy.s04.t02.n02.reactive.exception;
+
+import cat.itacademy.s04.t02.n02.fruit.exception.ConflictException;
+import cat.itacademy.s04.t02.n02.fruit.exception.ErrorResponse;
+import cat.itacademy.s04.t02.n02.fruit.exception.PreconditionFailedException;
+import cat.itacademy.s04.t02.n02.fruit.exception.UniqueViolations;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.ServerWebInputException;
+
+import java.time.LocalDateTime;
+
+/**
+ * WebFlux counterpart of {@code GlobalExceptionHandler}: same status mapping and {@link ErrorResponse} body.
+ */
+@ControllerAdvice
+public class ReactiveExceptionHandler {
+
+    @ExceptionHandler(EntityNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleNotFound(EntityNotFoundException ex, ServerWebExchange exchange) {
+        return buildResponse(HttpStatus.NOT_FOUND, ex.getMessage(), exchange);
+    }
+
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity<ErrorResponse> handleValidation(WebExchangeBindException ex, ServerWebExchange exchange) {
+        String message = ex.getBindingResult().getFieldErrors().stream()
+                .map(err -> err.getField() + ": " + err.getDefaultMessage())
+                .findFirst()
+                .orElse("Validation error");
+        return buildResponse(HttpStatus.BAD_REQUEST, message, exchange);
+    }
+
+    @ExceptionHandler(ServerWebInputException.class)
+    public ResponseEntity<ErrorResponse> handleInput(ServerWebInputException ex, ServerWebExchange exchange) {
+        String message = ex.getCause() instanceof DecodingException ? "Malformed request body" : ex.getReason();
+        return buildResponse(HttpStatus.BAD_REQUEST, message, exchange);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ErrorResponse> handleIllegalArgument(IllegalArgumentException ex, ServerWebExchange exchange) {
+        return buildResponse(HttpStatus.BAD_REQUEST, ex.getMessage(), exchange);
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<ErrorResponse> handleIllegalState(IllegalStateException ex, ServerWebExchange exchange) {
+        return buildResponse(HttpStatus.BAD_REQUEST, ex.getMessage(), exchange);
+    }
+
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    public ResponseEntity<ErrorResponse> handleOptimisticLock(ConcurrencyFailureException ex, ServerWebExchange exchange) {
+        return buildResponse(HttpStatus.CONFLICT, "Resource was modified concurrently, retry with the latest version", exchange);
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<ErrorResponse> handlePreconditionFailed(PreconditionFailedException ex, ServerWebExchange exchange) {
+        return buildResponse(HttpStatus.PRECONDITION_FAILED, ex.getMessage(), exchange);
+    }
+
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<ErrorResponse> handleConflict(ConflictException ex, ServerWebExchange exchange) {
+        return buildResponse(HttpStatus.CONFLICT, ex.getMessage(), exchange);
+    }
+
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<ErrorResponse> handleDataIntegrityViolation(DataIntegrityViolationException ex, ServerWebExchange exchange) {
+        if (!UniqueViolations.isUniqueViolation(ex)) {
+            return handleGeneric(ex, exchange);
+        }
+        return buildResponse(HttpStatus.CONFLICT, "Request conflicts with existing data", exchange);
+    }
+
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<ErrorResponse> handleResponseStatus(ResponseStatusException ex, ServerWebExchange exchange) {
+        HttpStatus status = HttpStatus.valueOf(ex.getStatusCode().value());
+        return buildResponse(status, ex.getReason() != null ? ex.getReason() : status.getReasonPhrase(), exchange);
+    }
+
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity<ErrorResponse> handleGeneric(Exception ex, ServerWebExchange exchange) {
+        return buildResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Unexpected error: " + ex.getMessage(), exchange);
+    }
+
+    ResponseEntity<ErrorResponse> buildResponse(HttpStatus status, String message, ServerWebExchange exchange) {
+        ErrorResponse error = new ErrorResponse(
+                status.value(),
+                status.getReasonPhrase(),
+                message,
+                exchange.getRequest().getPath().value(),
+                LocalDateTime.now()
+        );
+        return ResponseEntity.status(status).body(error);
+    }
+}
@@ -0,0 +1,32 @@
+package cat.itacademy.s04.t02.n02.reactive.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Table("fruits")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class FruitRecord {
+
+    @Id
+    private Long id;
+
+    private String name;
+
+    @Column("weight_in_kilos")
+    private int weightInKilos;
+
+    @Column("supplier_id")
+    private Long supplierId;
+
+    @Version
+    private Long version;
+}
@@ -0,0 +1,27 @@
+package cat.itacademy.s04.t02.n02.reactive.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Table("suppliers")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SupplierRecord {
+
+    @Id
+    private Long id;
+
+    private String name;
+
+    private String country;
+
+    @Version
+    private Long version;
+}
@@ -0,0 +1,63 @@
+package cat.itacademy.s04.t02.n02.reactive.repository;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import io.r2dbc.spi.Readable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Join projections that the derived R2DBC repositories cannot express.
+ */
+@Repository
+public class FruitQueries {
+
+    static final String DTO_PROJECTION = "select f.id, f.name, f.weight_in_kilos, s.id as supplier_id, "
+            + "s.name as supplier_name, s.country as supplier_country "
+            + "from fruits f join suppliers s on s.id = f.supplier_id ";
+
+    private final DatabaseClient databaseClient;
+
+    public FruitQueries(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<FruitResponseDTO> findDtoById(Long id) {
+        return databaseClient.sql(DTO_PROJECTION + "where f.id = :id")
+                .bind("id", id)
+                .map(FruitQueries::toDto)
+                .one();
+    }
+
+    public Flux<FruitResponseDTO> streamDtos() {
+        return databaseClient.sql(DTO_PROJECTION + "order by f.id")
+                .map(FruitQueries::toDto)
+                .all();
+    }
+
+    public Flux<FruitResponseDTO> findDtoPageAfter(long afterId, int limit) {
+        return databaseClient.sql(DTO_PROJECTION + "where f.id > :afterId order by f.id limit :limit")
+                .bind("afterId", afterId)
+                .bind("limit", limit)
+                .map(FruitQueries::toDto)
+                .all();
+    }
+
+    public Flux<FruitResponseDTO> findDtosBySupplierId(Long supplierId) {
+        return databaseClient.sql(DTO_PROJECTION + "where s.id = :supplierId order by f.id")
+                .bind("supplierId", supplierId)
+                .map(FruitQueries::toDto)
+                .all();
+    }
+
+    private static FruitResponseDTO toDto(Readable row) {
+        return new FruitResponseDTO(
+                row.get("id", Long.class),
+                row.get("name", String.class),
+                row.get("weight_in_kilos", Integer.class),
+                row.get("supplier_id", Long.class),
+                row.get("supplier_name", String.class),
+                row.get("supplier_country", String.class));
+    }
+}
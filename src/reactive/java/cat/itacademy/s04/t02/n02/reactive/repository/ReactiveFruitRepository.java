@@ -0,0 +1,23 @@
+package cat.itacademy.s04.t02.n02.reactive.repository;
+
+import cat.itacademy.s04.t02.n02.reactive.model.FruitRecord;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveFruitRepository extends ReactiveCrudRepository<FruitRecord, Long> {
+
+    Mono<Boolean> existsBySupplierId(Long supplierId);
+
+    @Query("select version from fruits where id = :id")
+    Mono<Long> findVersionById(Long id);
+
+    @Modifying
+    @Query("delete from fruits where supplier_id = :supplierId")
+    Mono<Integer> deleteAllBySupplierId(Long supplierId);
+
+    @Modifying
+    @Query("update fruits set supplier_id = :targetId, version = version + 1 where supplier_id = :sourceId")
+    Mono<Integer> reassignSupplier(Long sourceId, Long targetId);
+}
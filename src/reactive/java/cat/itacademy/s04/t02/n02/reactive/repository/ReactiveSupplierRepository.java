@@ -0,0 +1,15 @@
+package cat.itacademy.s04.t02.n02.reactive.repository;
+
+import cat.itacademy.s04.t02.n02.reactive.model.SupplierRecord;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveSupplierRepository extends ReactiveCrudRepository<SupplierRecord, Long> {
+
+    @Query("select version from suppliers where id = :id")
+    Mono<Long> findVersionById(Long id);
+
+    Flux<SupplierRecord> findAllByOrderById();
+}
@@ -0,0 +1,18 @@
+package cat.itacademy.s04.t02.n02.reactive.services;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitPageDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveFruitService {
+    Mono<FruitResponseDTO> addFruit(FruitRequestDTO request);
+    Mono<FruitResponseDTO> getFruitById(Long id);
+    Mono<Long> getFruitVersion(Long id);
+    Flux<FruitResponseDTO> streamFruits();
+    Mono<FruitPageDTO> getFruitsPage(String after, Integer limit);
+    Flux<FruitResponseDTO> getFruitsBySupplierId(Long supplierId);
+    Mono<FruitResponseDTO> updateFruit(Long id, FruitRequestDTO request, Long expectedVersion);
+    Mono<Void> deleteFruit(Long id);
+}
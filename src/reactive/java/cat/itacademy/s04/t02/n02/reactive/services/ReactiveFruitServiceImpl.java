@@ -0,0 +1,147 @@
+package cat.itacademy.s04.t02.n02.reactive.services;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitPageDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.exception.PreconditionFailedException;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitServiceImpl;
+import cat.itacademy.s04.t02.n02.reactive.model.FruitRecord;
+import cat.itacademy.s04.t02.n02.reactive.model.SupplierRecord;
+import cat.itacademy.s04.t02.n02.reactive.repository.FruitQueries;
+import cat.itacademy.s04.t02.n02.reactive.repository.ReactiveFruitRepository;
+import cat.itacademy.s04.t02.n02.reactive.repository.ReactiveSupplierRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+@Service
+@Transactional
+public class ReactiveFruitServiceImpl implements ReactiveFruitService {
+
+    private final ReactiveFruitRepository fruitRepository;
+    private final ReactiveSupplierRepository supplierRepository;
+    private final FruitQueries fruitQueries;
+
+    public ReactiveFruitServiceImpl(ReactiveFruitRepository fruitRepository,
+                                    ReactiveSupplierRepository supplierRepository,
+                                    FruitQueries fruitQueries) {
+        this.fruitRepository = fruitRepository;
+        this.supplierRepository = supplierRepository;
+        this.fruitQueries = fruitQueries;
+    }
+
+    @Override
+    public Mono<FruitResponseDTO> addFruit(FruitRequestDTO request) {
+        return supplierRepository.findById(request.supplierId())
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Supplier with ID " + request.supplierId() + " not found")))
+                .flatMap(supplier -> fruitRepository.save(
+                                new FruitRecord(null, request.name().trim(), request.weightInKilos(), supplier.getId(), null))
+                        .map(saved -> toDto(saved, supplier)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Mono<FruitResponseDTO> getFruitById(Long id) {
+        return fruitQueries.findDtoById(id)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Fruit not found: " + id)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Mono<Long> getFruitVersion(Long id) {
+        return fruitRepository.findVersionById(id)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Fruit not found: " + id)));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Flux<FruitResponseDTO> streamFruits() {
+        return fruitQueries.streamDtos();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Mono<FruitPageDTO> getFruitsPage(String after, Integer limit) {
+        if (limit != null && limit < 1) {
+            return Mono.error(new IllegalArgumentException("Limit must be positive"));
+        }
+        int pageSize = limit == null ? FruitServiceImpl.DEFAULT_PAGE_SIZE : Math.min(limit, FruitServiceImpl.MAX_PAGE_SIZE);
+        long afterId;
+        try {
+            afterId = after == null || after.isBlank() ? 0L : decodeCursor(after);
+        } catch (IllegalArgumentException e) {
+            return Mono.error(e);
+        }
+
+        return fruitQueries.findDtoPageAfter(afterId, pageSize + 1)
+                .collectList()
+                .map(rows -> {
+                    boolean hasNext = rows.size() > pageSize;
+                    List<FruitResponseDTO> fruits = hasNext ? rows.subList(0, pageSize) : rows;
+                    String nextCursor = hasNext ? encodeCursor(fruits.get(fruits.size() - 1).id()) : null;
+                    return new FruitPageDTO(fruits, nextCursor);
+                });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Flux<FruitResponseDTO> getFruitsBySupplierId(Long supplierId) {
+        return supplierRepository.existsById(supplierId)
+                .flatMapMany(exists -> exists
+                        ? fruitQueries.findDtosBySupplierId(supplierId)
+                        : Flux.error(new EntityNotFoundException("Supplier with id " + supplierId + " not found")));
+    }
+
+    @Override
+    public Mono<FruitResponseDTO> updateFruit(Long id, FruitRequestDTO request, Long expectedVersion) {
+        return fruitRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Fruit with id " + id + " not found")))
+                .flatMap(fruit -> {
+                    if (expectedVersion != null && fruit.getVersion() != expectedVersion.longValue()) {
+                        return Mono.error(new PreconditionFailedException("Fruit with id " + id + " has been modified"));
+                    }
+                    Long supplierId = request.supplierId() != null ? request.supplierId() : fruit.getSupplierId();
+                    return supplierRepository.findById(supplierId)
+                            .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Supplier with id " + supplierId + " not found")))
+                            .flatMap(supplier -> {
+                                fruit.setName(request.name());
+                                fruit.setWeightInKilos(request.weightInKilos());
+                                fruit.setSupplierId(supplier.getId());
+                                return fruitRepository.save(fruit).map(saved -> toDto(saved, supplier));
+                            });
+                });
+    }
+
+    @Override
+    public Mono<Void> deleteFruit(Long id) {
+        return fruitRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new EntityNotFoundException("Fruit not found: " + id)))
+                .flatMap(fruitRepository::delete);
+    }
+
+    private String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long decodeCursor(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            return Long.parseLong(decoded);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    private FruitResponseDTO toDto(FruitRecord fruit, SupplierRecord supplier) {
+        return new FruitResponseDTO(fruit.getId(), fruit.getName(), fruit.getWeightInKilos(),
+                new SupplierResponseDTO(supplier.getId(), supplier.getName(), supplier.getCountry()));
+    }
+}
@@ -0,0 +1,16 @@
+package cat.itacademy.s04.t02.n02.reactive.services;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.services.SupplierDeleteMode;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveSupplierService {
+    Mono<SupplierResponseDTO> addSupplier(SupplierRequestDTO request);
+    Flux<SupplierResponseDTO> getAllSuppliers();
+    Mono<SupplierResponseDTO> getSupplierById(Long id);
+    Mono<Long> getSupplierVersion(Long id);
+    Mono<SupplierResponseDTO> updateSupplier(Long id, SupplierRequestDTO request, Long expectedVersion);
+    Mono<Void> deleteSupplier(Long id, SupplierDeleteMode mode, Long reassignTo);
+}
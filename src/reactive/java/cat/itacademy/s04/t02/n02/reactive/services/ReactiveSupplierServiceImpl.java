@@ -0,0 +1,112 @@
+package cat.itacademy.s04.t02.n02.reactive.services;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.exception.ConflictException;
+import cat.itacademy.s04.t02.n02.fruit.exception.PreconditionFailedException;
+import cat.itacademy.s04.t02.n02.fruit.exception.UniqueViolations;
+import cat.itacademy.s04.t02.n02.fruit.services.SupplierDeleteMode;
+import cat.itacademy.s04.t02.n02.reactive.model.SupplierRecord;
+import cat.itacademy.s04.t02.n02.reactive.repository.ReactiveFruitRepository;
+import cat.itacademy.s04.t02.n02.reactive.repository.ReactiveSupplierRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Service
+@Transactional
+public class ReactiveSupplierServiceImpl implements ReactiveSupplierService {
+
+    private final ReactiveSupplierRepository supplierRepository;
+    private final ReactiveFruitRepository fruitRepository;
+
+    public ReactiveSupplierServiceImpl(ReactiveSupplierRepository supplierRepository,
+                                       ReactiveFruitRepository fruitRepository) {
+        this.supplierRepository = supplierRepository;
+        this.fruitRepository = fruitRepository;
+    }
+
+    @Override
+    public Mono<SupplierResponseDTO> addSupplier(SupplierRequestDTO request) {
+        return supplierRepository.save(new SupplierRecord(null, request.name(), request.country(), null))
+                .onErrorMap(UniqueViolations::isUniqueViolation, e -> nameConflict())
+                .map(this::toDto);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Flux<SupplierResponseDTO> getAllSuppliers() {
+        return supplierRepository.findAllByOrderById().map(this::toDto);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Mono<SupplierResponseDTO> getSupplierById(Long id) {
+        return findExisting(id).map(this::toDto);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Mono<Long> getSupplierVersion(Long id) {
+        return supplierRepository.findVersionById(id)
+                .switchIfEmpty(Mono.error(() -> notFound(id)));
+    }
+
+    @Override
+    public Mono<SupplierResponseDTO> updateSupplier(Long id, SupplierRequestDTO request, Long expectedVersion) {
+        return findExisting(id)
+                .flatMap(existing -> {
+                    if (expectedVersion != null && existing.getVersion() != expectedVersion.longValue()) {
+                        return Mono.error(new PreconditionFailedException("Supplier with id " + id + " has been modified"));
+                    }
+                    existing.setName(request.name());
+                    existing.setCountry(request.country());
+                    return supplierRepository.save(existing)
+                            .onErrorMap(UniqueViolations::isUniqueViolation, e -> nameConflict());
+                })
+                .map(this::toDto);
+    }
+
+    @Override
+    public Mono<Void> deleteSupplier(Long id, SupplierDeleteMode mode, Long reassignTo) {
+        return findExisting(id)
+                .flatMap(supplier -> switch (mode) {
+                    case RESTRICT -> fruitRepository.existsBySupplierId(id)
+                            .flatMap(hasFruits -> hasFruits
+                                    ? Mono.error(new IllegalStateException("Cannot delete supplier with associated fruits"))
+                                    : Mono.just(supplier));
+                    case CASCADE -> fruitRepository.deleteAllBySupplierId(id).thenReturn(supplier);
+                    case REASSIGN -> {
+                        if (reassignTo == null) {
+                            yield Mono.error(new IllegalArgumentException("Target supplier is required to reassign fruits"));
+                        }
+                        if (reassignTo.equals(id)) {
+                            yield Mono.error(new IllegalArgumentException("Cannot reassign fruits to the supplier being deleted"));
+                        }
+                        yield findExisting(reassignTo)
+                                .flatMap(target -> fruitRepository.reassignSupplier(id, target.getId()))
+                                .thenReturn(supplier);
+                    }
+                })
+                .flatMap(supplierRepository::delete);
+    }
+
+    private Mono<SupplierRecord> findExisting(Long id) {
+        return supplierRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> notFound(id)));
+    }
+
+    private EntityNotFoundException notFound(Long id) {
+        return new EntityNotFoundException("Supplier with id " + id + " not found");
+    }
+
+    private ConflictException nameConflict() {
+        return new ConflictException("Supplier name already exists");
+    }
+
+    private SupplierResponseDTO toDto(SupplierRecord supplier) {
+        return new SupplierResponseDTO(supplier.getId(), supplier.getName(), supplier.getCountry());
+    }
+}
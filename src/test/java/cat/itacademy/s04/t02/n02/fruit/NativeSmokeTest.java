@@ -0,0 +1,68 @@
+package cat.itacademy.s04.t02.n02.fruit;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.exception.ErrorResponse;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the CRUD endpoints over HTTP. Runs with the regular suite and, with {@code -PnativeTest}, inside the
+ * native image against the embedded H2 database.
+ */
+@Tag("native")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class NativeSmokeTest {
+
+    @Autowired
+    private TestRestTemplate rest;
+
+    @Test
+    void crudRoundTrip() {
+        ResponseEntity<SupplierResponseDTO> supplier = rest.postForEntity("/suppliers",
+                new SupplierRequestDTO("Native Farms " + System.nanoTime(), "Spain"), SupplierResponseDTO.class);
+        assertThat(supplier.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        Long supplierId = supplier.getBody().id();
+
+        ResponseEntity<FruitResponseDTO> created = rest.postForEntity("/fruits",
+                new FruitRequestDTO("Apple", 10, supplierId), FruitResponseDTO.class);
+        assertThat(created.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        Long fruitId = created.getBody().id();
+
+        ResponseEntity<FruitResponseDTO> fetched = rest.getForEntity("/fruits/" + fruitId, FruitResponseDTO.class);
+        assertThat(fetched.getBody().name()).isEqualTo("Apple");
+        assertThat(fetched.getBody().supplier().id()).isEqualTo(supplierId);
+
+        ResponseEntity<FruitResponseDTO[]> bySupplier = rest.getForEntity("/fruits?supplierId=" + supplierId,
+                FruitResponseDTO[].class);
+        assertThat(bySupplier.getBody()).extracting(FruitResponseDTO::id).containsExactly(fruitId);
+
+        ResponseEntity<FruitResponseDTO> updated = rest.exchange("/fruits/" + fruitId, HttpMethod.PUT,
+                new HttpEntity<>(new FruitRequestDTO("Pear", 12, supplierId)), FruitResponseDTO.class);
+        assertThat(updated.getBody().name()).isEqualTo("Pear");
+        assertThat(updated.getBody().weightInKilos()).isEqualTo(12);
+
+        ResponseEntity<ErrorResponse> invalid = rest.postForEntity("/fruits",
+                new FruitRequestDTO("", 0, supplierId), ErrorResponse.class);
+        assertThat(invalid.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(invalid.getBody().status()).isEqualTo(400);
+
+        assertThat(rest.exchange("/fruits/" + fruitId, HttpMethod.DELETE, null, Void.class).getStatusCode())
+                .isEqualTo(HttpStatus.NO_CONTENT);
+        assertThat(rest.getForEntity("/fruits/" + fruitId, ErrorResponse.class).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(rest.exchange("/suppliers/" + supplierId, HttpMethod.DELETE, null, Void.class).getStatusCode())
+                .isEqualTo(HttpStatus.NO_CONTENT);
+    }
+}
@@ -0,0 +1,31 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import cat.itacademy.s04.t02.n02.fruit.model.SnowflakeIdGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdConfigTest {
+
+    @Test
+    void sharding_withoutANodeId_failsAtStartup() {
+        assertThatThrownBy(() -> new IdConfig(null, true))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("FRUITS_NODE_ID");
+    }
+
+    @Test
+    void snowflakeIds_areOnlyUsedWhenSharded() {
+        Map<String, Object> sharded = new HashMap<>();
+        new IdConfig(7, true).snowflakeIdsCustomizer().customize(sharded);
+        Map<String, Object> unsharded = new HashMap<>();
+        new IdConfig(null, false).snowflakeIdsCustomizer().customize(unsharded);
+
+        assertThat(sharded).containsEntry(SnowflakeIdGenerator.ENABLED, true);
+        assertThat(unsharded).containsEntry(SnowflakeIdGenerator.ENABLED, false);
+    }
+}
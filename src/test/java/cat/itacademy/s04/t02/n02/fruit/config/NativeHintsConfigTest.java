@@ -0,0 +1,39 @@
+package cat.itacademy.s04.t02.n02.fruit.config;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.CollectionVersionDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NativeHintsConfigTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    NativeHintsConfigTest() {
+        new NativeHintsConfig.FruitRuntimeHints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    void registersEntitiesAndConstructorExpressionTypes() {
+        assertThat(RuntimeHintsPredicates.reflection().onType(Fruit.class)
+                .withMemberCategory(MemberCategory.DECLARED_FIELDS)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(Supplier.class)
+                .withMemberCategory(MemberCategory.DECLARED_FIELDS)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(FruitResponseDTO.class)
+                .withMemberCategory(MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(CollectionVersionDTO.class)
+                .withMemberCategory(MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS)).accepts(hints);
+    }
+
+    @Test
+    void registersVendorMigrationScripts() {
+        assertThat(RuntimeHintsPredicates.resource().forResource("db/migration/common/V1__create_tables.sql")).accepts(hints);
+        assertThat(RuntimeHintsPredicates.resource().forResource("db/migration/h2/V1_1__create_fruit_id_sequence.sql")).accepts(hints);
+    }
+}
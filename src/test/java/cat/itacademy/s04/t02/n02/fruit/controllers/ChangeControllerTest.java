@@ -0,0 +1,285 @@
+package cat.itacademy.s04.t02.n02.fruit.controllers;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import cat.itacademy.s04.t02.n02.fruit.repository.SupplierRepository;
+import cat.itacademy.s04.t02.n02.fruit.services.ChangeFeedService;
+import cat.itacademy.s04.t02.n02.fruit.services.SupplierService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ChangeControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private FruitRepository fruitRepository;
+
+    @Autowired
+    private SupplierRepository supplierRepository;
+
+    @Autowired
+    private SupplierService supplierService;
+
+    @Autowired
+    private ChangeFeedService changeFeedService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private String head;
+
+    @BeforeEach
+    void setup() throws Exception {
+        fruitRepository.deleteAll();
+        supplierRepository.deleteAll();
+        head = changes(null, null).get("nextToken").asText();
+    }
+
+    @Test
+    void getChanges_returnsInsertsUpdatesAndTombstonesInCommitOrder() throws Exception {
+        long supplierId = createSupplier("FreshFarm");
+        long fruitId = createFruit("Apple", 3, supplierId);
+        mockMvc.perform(put("/fruits/" + fruitId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitRequestDTO("Apple", 7, supplierId))))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/fruits/" + fruitId)).andExpect(status().isNoContent());
+
+        JsonNode page = changes(head, null);
+        JsonNode changes = page.get("changes");
+
+        assertThat(changes).hasSize(4);
+        assertThat(changes.get(0).get("entity").asText()).isEqualTo("supplier");
+        assertThat(changes.get(0).get("data").get("name").asText()).isEqualTo("FreshFarm");
+        assertThat(changes.get(1).get("operation").asText()).isEqualTo("upsert");
+        assertThat(changes.get(1).get("data").get("weightInKilos").asInt()).isEqualTo(3);
+        assertThat(changes.get(2).get("data").get("weightInKilos").asInt()).isEqualTo(7);
+        assertThat(changes.get(3).get("id").asLong()).isEqualTo(fruitId);
+        assertThat(changes.get(3).get("operation").asText()).isEqualTo("delete");
+        assertThat(changes.get(3).get("data").isNull()).isTrue();
+        assertThat(page.get("hasMore").asBoolean()).isFalse();
+
+        assertThat(changes(page.get("nextToken").asText(), null).get("changes")).isEmpty();
+    }
+
+    @Test
+    void getChanges_pagesWithLimit() throws Exception {
+        long supplierId = createSupplier("FreshFarm");
+        createFruit("Apple", 3, supplierId);
+        createFruit("Pear", 2, supplierId);
+
+        JsonNode first = changes(head, 2);
+        JsonNode second = changes(first.get("nextToken").asText(), 2);
+
+        assertThat(first.get("changes")).hasSize(2);
+        assertThat(first.get("hasMore").asBoolean()).isTrue();
+        assertThat(second.get("changes")).hasSize(1);
+        assertThat(second.get("changes").get(0).get("data").get("name").asText()).isEqualTo("Pear");
+        assertThat(second.get("hasMore").asBoolean()).isFalse();
+    }
+
+    @Test
+    void getChanges_recordsTombstonesForFruitsDeletedWithTheirSupplier() throws Exception {
+        long supplierId = createSupplier("FreshFarm");
+        long fruitId = createFruit("Apple", 3, supplierId);
+        String afterCreates = changes(head, null).get("nextToken").asText();
+
+        mockMvc.perform(delete("/suppliers/" + supplierId).param("mode", "cascade"))
+                .andExpect(status().isNoContent());
+
+        JsonNode changes = changes(afterCreates, null).get("changes");
+        assertThat(changes).hasSize(2);
+        assertThat(changes.get(0).get("entity").asText()).isEqualTo("fruit");
+        assertThat(changes.get(0).get("id").asLong()).isEqualTo(fruitId);
+        assertThat(changes.get(0).get("operation").asText()).isEqualTo("delete");
+        assertThat(changes.get(1).get("entity").asText()).isEqualTo("supplier");
+        assertThat(changes.get(1).get("operation").asText()).isEqualTo("delete");
+    }
+
+    @Test
+    void getChanges_recordsTheNewSupplierOfFruitsReassignedWithTheirSupplier() throws Exception {
+        long supplierId = createSupplier("FreshFarm");
+        long targetId = createSupplier("GreenWorld");
+        long apple = createFruit("Apple", 3, supplierId);
+        long pear = createFruit("Pear", 2, supplierId);
+        String afterCreates = changes(head, null).get("nextToken").asText();
+
+        mockMvc.perform(delete("/suppliers/" + supplierId).param("mode", "reassign").param("to", String.valueOf(targetId)))
+                .andExpect(status().isNoContent());
+
+        JsonNode changes = changes(afterCreates, null).get("changes");
+        assertThat(changes).hasSize(3);
+        assertThat(changes.get(0).get("id").asLong()).isEqualTo(apple);
+        assertThat(changes.get(0).get("operation").asText()).isEqualTo("upsert");
+        assertThat(changes.get(0).get("data").get("name").asText()).isEqualTo("Apple");
+        assertThat(changes.get(0).get("data").get("weightInKilos").asInt()).isEqualTo(3);
+        assertThat(changes.get(0).get("data").get("supplier").get("name").asText()).isEqualTo("GreenWorld");
+        assertThat(changes.get(1).get("id").asLong()).isEqualTo(pear);
+        assertThat(changes.get(2).get("entity").asText()).isEqualTo("supplier");
+        assertThat(changes.get(2).get("operation").asText()).isEqualTo("delete");
+    }
+
+    @Test
+    void writes_timeTheWaitForAndTheHoldOfTheCounterRow() throws Exception {
+        long waitsBefore = meterRegistry.timer("fruits.changes.sequence.wait").count();
+        long holdsBefore = meterRegistry.timer("fruits.changes.sequence.held").count();
+
+        createFruit("Apple", 3, createSupplier("FreshFarm"));
+
+        assertThat(meterRegistry.timer("fruits.changes.sequence.wait").count()).isEqualTo(waitsBefore + 2);
+        assertThat(meterRegistry.timer("fruits.changes.sequence.held").count()).isEqualTo(holdsBefore + 2);
+    }
+
+    @Test
+    void getChanges_skipsWritesThatRolledBack() throws Exception {
+        createSupplier("FreshFarm");
+
+        mockMvc.perform(post("/suppliers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new SupplierRequestDTO("freshfarm", "France"))))
+                .andExpect(status().isConflict());
+
+        assertThat(changes(head, null).get("changes")).hasSize(1);
+    }
+
+    @Test
+    void getChanges_includesTransactionsThatCommitAfterLaterOnes() throws Exception {
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> slow = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                supplierService.addSupplier(new SupplierRequestDTO("SlowFarm", "Spain"));
+                written.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            written.await();
+            createSupplier("FastFarm");
+
+            JsonNode first = changes(head, null);
+            release.countDown();
+            slow.get();
+            JsonNode second = changes(first.get("nextToken").asText(), null);
+
+            assertThat(first.get("changes")).hasSize(1);
+            assertThat(first.get("changes").get(0).get("data").get("name").asText()).isEqualTo("FastFarm");
+            assertThat(second.get("changes")).hasSize(1);
+            assertThat(second.get("changes").get(0).get("data").get("name").asText()).isEqualTo("SlowFarm");
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void getChanges_returns410_whenTokenIsOlderThanRetention() throws Exception {
+        createSupplier("FreshFarm");
+        jdbcTemplate.update("update catalog_changes set created_at = ?",
+                System.currentTimeMillis() - Duration.ofDays(8).toMillis());
+        changeFeedService.purgeExpired();
+
+        mockMvc.perform(get("/changes").param("since", head))
+                .andExpect(status().isGone());
+    }
+
+    @Test
+    void getChanges_returns400_whenTokenIsInvalid() throws Exception {
+        mockMvc.perform(get("/changes").param("since", "not-a-token"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Invalid change token: not-a-token"));
+    }
+
+    @Test
+    void streamChanges_pushesChangesAfterTheLastEventId() throws Exception {
+        MvcResult result = mockMvc.perform(get("/changes/stream").header("Last-Event-ID", head))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        long supplierId = createSupplier("FreshFarm");
+
+        // the event is written in several parts, so wait for its data rather than its name
+        String expected = "\"entity\":\"supplier\",\"id\":" + supplierId;
+        String body = "";
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!body.contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            body = result.getResponse().getContentAsString();
+        }
+        result.getRequest().getAsyncContext().complete();
+
+        assertThat(body).contains("event:change");
+        assertThat(body).contains(expected);
+    }
+
+    private JsonNode changes(String since, Integer limit) throws Exception {
+        var request = get("/changes");
+        if (since != null) {
+            request.param("since", since);
+        }
+        if (limit != null) {
+            request.param("limit", String.valueOf(limit));
+        }
+        String body = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private long createSupplier(String name) throws Exception {
+        String body = mockMvc.perform(post("/suppliers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new SupplierRequestDTO(name, "Spain"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("id").asLong();
+    }
+
+    private long createFruit(String name, int weight, long supplierId) throws Exception {
+        String body = mockMvc.perform(post("/fruits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitRequestDTO(name, weight, supplierId))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("id").asLong();
+    }
+}
@@ -1,19 +1,47 @@
 package cat.itacademy.s04.t02.n02.fruit.controllers;
 
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardRouter;
 import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
 import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
 import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
 import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
 import cat.itacademy.s04.t02.n02.fruit.repository.SupplierRepository;
+import cat.itacademy.s04.t02.n02.fruit.services.CatalogSearchService;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitWeightService;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitWeightServiceImpl;
+import cat.itacademy.s04.t02.n02.fruit.services.FruitStatsService;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufMapper;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -34,6 +62,24 @@ class FruitControllerTest {
     @Autowired
     private SupplierRepository supplierRepository;
 
+    @Autowired
+    private FruitStatsService fruitStatsService;
+
+    @Autowired
+    private CatalogSearchService catalogSearchService;
+
+    @Autowired
+    private FruitWeightService fruitWeightService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     private Supplier supplier;
 
     @BeforeEach
@@ -101,6 +147,73 @@ class FruitControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void createFruitsBulk_returnsPerItemResults_forJsonArray() throws Exception {
+        List<FruitRequestDTO> requests = new ArrayList<>();
+        requests.add(new FruitRequestDTO("Banana", 5, supplier.getId()));
+        requests.add(new FruitRequestDTO(" ", 5, supplier.getId()));
+        requests.add(new FruitRequestDTO("Apple", 3, 999L));
+        requests.add(new FruitRequestDTO("Kiwi", 1, supplier.getId()));
+
+        mockMvc.perform(post("/fruits/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(requests)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(4))
+                .andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.failed").value(2))
+                .andExpect(jsonPath("$.results[0].status").value(201))
+                .andExpect(jsonPath("$.results[0].id").exists())
+                .andExpect(jsonPath("$.results[1].status").value(400))
+                .andExpect(jsonPath("$.results[2].status").value(404))
+                .andExpect(jsonPath("$.results[3].index").value(3))
+                .andExpect(jsonPath("$.results[3].status").value(201));
+
+        assertThat(fruitRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    void createFruitsBulk_writesAllRows_forNdjsonAcrossSeveralBatches() throws Exception {
+        String body = IntStream.range(0, 120)
+                .mapToObj(i -> "{\"name\":\"Fruit" + i + "\",\"weightInKilos\":" + (i + 1)
+                        + ",\"supplierId\":" + supplier.getId() + "}")
+                .collect(Collectors.joining("\n"));
+
+        mockMvc.perform(post("/fruits/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(120))
+                .andExpect(jsonPath("$.failed").value(0));
+
+        assertThat(fruitRepository.count()).isEqualTo(120);
+    }
+
+    @Test
+    void createFruitsBulk_reportsMalformedNdjsonLine_afterEarlierBatchesWereWritten() throws Exception {
+        String body = IntStream.range(0, 60)
+                .mapToObj(i -> "{\"name\":\"Fruit" + i + "\",\"weightInKilos\":1,\"supplierId\":" + supplier.getId() + "}")
+                .collect(Collectors.joining("\n")) + "\n{broken";
+
+        mockMvc.perform(post("/fruits/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.received").value(61))
+                .andExpect(jsonPath("$.created").value(60))
+                .andExpect(jsonPath("$.results[60].status").value(400));
+
+        assertThat(fruitRepository.count()).isEqualTo(60);
+    }
+
+    @Test
+    void createFruitsBulk_returns400_whenNdjsonIsMalformed() throws Exception {
+        mockMvc.perform(post("/fruits/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"name\":\"Kiwi\"\n{broken"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void getAllFruits_returnsListOfFruits() throws Exception {
         fruitRepository.save(new Fruit(null, "Banana", 4, supplier));
@@ -120,6 +233,84 @@ class FruitControllerTest {
                 .andExpect(jsonPath("$.length()").value(0));
     }
 
+    @Test
+    void getAllFruits_returnsFirstPageAndNextCursor_whenLimitIsSet() throws Exception {
+        fruitRepository.save(new Fruit(null, "Apple", 1, supplier));
+        fruitRepository.save(new Fruit(null, "Banana", 2, supplier));
+        fruitRepository.save(new Fruit(null, "Cherry", 3, supplier));
+
+        String cursor = mockMvc.perform(get("/fruits").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].name").value("Apple"))
+                .andExpect(jsonPath("$[1].name").value("Banana"))
+                .andExpect(header().exists(FruitController.NEXT_CURSOR_HEADER))
+                .andReturn().getResponse().getHeader(FruitController.NEXT_CURSOR_HEADER);
+
+        mockMvc.perform(get("/fruits").param("limit", "2").param("after", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("Cherry"))
+                .andExpect(header().doesNotExist(FruitController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void getAllFruits_returns400_whenCursorIsInvalid() throws Exception {
+        mockMvc.perform(get("/fruits").param("after", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getAllFruits_returns400_whenLimitIsNotPositive() throws Exception {
+        mockMvc.perform(get("/fruits").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void exportFruits_streamsNdjsonRows() throws Exception {
+        fruitRepository.save(new Fruit(null, "Banana", 4, supplier));
+        fruitRepository.save(new Fruit(null, "Pineapple", 5, supplier));
+
+        MvcResult result = mockMvc.perform(get("/fruits/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        FruitResponseDTO first = objectMapper.readValue(lines[0], FruitResponseDTO.class);
+        assertThat(first.name()).isEqualTo("Banana");
+        assertThat(first.supplier().name()).isEqualTo("FreshFarm");
+    }
+
+    @Test
+    void exportFruits_streamsCsvRowsWithQuoting() throws Exception {
+        fruitRepository.save(new Fruit(null, "Apple, red", 2, supplier));
+
+        MvcResult result = mockMvc.perform(get("/fruits/export").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(body.split("\n"))
+                .containsExactly("id,name,weightInKilos,supplierId,supplierName,supplierCountry",
+                        fruitRepository.findAll().get(0).getId() + ",\"Apple, red\",2," + supplier.getId() + ",FreshFarm,Spain");
+    }
+
+    @Test
+    void exportFruits_returns400_whenFormatIsUnsupported() throws Exception {
+        mockMvc.perform(get("/fruits/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void getFruitById_returnsCorrectFruit() throws Exception {
         Fruit fruit = fruitRepository.save(new Fruit(null, "Pear", 2, supplier));
@@ -137,6 +328,34 @@ class FruitControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void getFruitsByIds_returnsResultsInRequestOrder_withNotFoundMarkers() throws Exception {
+        Fruit pear = fruitRepository.save(new Fruit(null, "Pear", 2, supplier));
+        Fruit apple = fruitRepository.save(new Fruit(null, "Apple", 3, supplier));
+        long missing = apple.getId() + 1000;
+
+        mockMvc.perform(get("/fruits").param("ids", apple.getId() + "," + missing + "," + pear.getId() + "," + apple.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$[0].status").value(200))
+                .andExpect(jsonPath("$[0].fruit.name").value("Apple"))
+                .andExpect(jsonPath("$[1].id").value(missing))
+                .andExpect(jsonPath("$[1].status").value(404))
+                .andExpect(jsonPath("$[1].fruit").doesNotExist())
+                .andExpect(jsonPath("$[2].fruit.name").value("Pear"))
+                .andExpect(jsonPath("$[3].fruit.name").value("Apple"));
+    }
+
+    @Test
+    void getFruitsByIds_returns400_whenIdsAreInvalid() throws Exception {
+        String tooMany = String.join(",", Collections.nCopies(1001, "1"));
+
+        mockMvc.perform(get("/fruits").param("ids", tooMany))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/fruits").param("ids", "1,abc"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void getFruitsBySupplier_returns200_andListFruits_whenSupplierExists() throws Exception {
         Supplier s = supplierRepository.save(new Supplier(null, "FruitHouse", "Spain"));
@@ -211,6 +430,75 @@ class FruitControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void adjustFruitWeight_coalescesDeltasUntilFlush() throws Exception {
+        Fruit fruit = fruitRepository.save(new Fruit(null, "Mango", 10, supplier));
+
+        for (int delta : new int[]{3, -1, 2}) {
+            mockMvc.perform(patch("/fruits/" + fruit.getId() + "/weight")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"delta\":" + delta + "}"))
+                    .andExpect(status().isAccepted());
+        }
+        fruitWeightService.flush();
+
+        mockMvc.perform(get("/fruits/" + fruit.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"" + fruit.getId() + "-1\""))
+                .andExpect(jsonPath("$.weightInKilos").value(14));
+    }
+
+    @Test
+    void weightDeltaLog_replaysOnlyTheBatchesThatDidNotCommit_afterACrash(@TempDir Path dir) throws Exception {
+        Fruit applied = fruitRepository.save(new Fruit(null, "Mango", 10, supplier));
+        Fruit lost = fruitRepository.save(new Fruit(null, "Lime", 5, supplier));
+        Files.writeString(dir.resolve("weights.log.flushing"), applied.getId() + " 3\n" + lost.getId() + " 4\n"
+                + "applied committed " + applied.getId() + "\n" + "applied rolled-back " + lost.getId() + "\n");
+        jdbcTemplate.update("insert into weight_delta_flushes (id) values (?)", "committed");
+
+        FruitWeightServiceImpl restarted = new FruitWeightServiceImpl(fruitRepository, jdbcTemplate, shardRouter,
+                eventPublisher, 4, 100, 500, dir.resolve("weights.log").toString(), false);
+        restarted.flush();
+        restarted.shutdown();
+
+        assertThat(fruitRepository.findById(applied.getId()).orElseThrow().getWeightInKilos()).isEqualTo(10);
+        assertThat(fruitRepository.findById(lost.getId()).orElseThrow().getWeightInKilos()).isEqualTo(9);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from weight_delta_flushes", Integer.class)).isZero();
+    }
+
+    @Test
+    void adjustFruitWeight_dropsDeltaThatWouldMakeWeightNonPositive() throws Exception {
+        Fruit fruit = fruitRepository.save(new Fruit(null, "Lime", 2, supplier));
+
+        mockMvc.perform(patch("/fruits/" + fruit.getId() + "/weight")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"delta\":-2}"))
+                .andExpect(status().isAccepted());
+        fruitWeightService.flush();
+
+        assertThat(fruitRepository.findById(fruit.getId()).orElseThrow().getWeightInKilos()).isEqualTo(2);
+        mockMvc.perform(get("/fruits/" + fruit.getId()))
+                .andExpect(header().string("ETag", "\"" + fruit.getId() + "-0\""));
+    }
+
+    @Test
+    void adjustFruitWeight_returns404_whenFruitDoesNotExist_and400_whenDeltaIsMissingOrZero() throws Exception {
+        mockMvc.perform(patch("/fruits/999/weight")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"delta\":1}"))
+                .andExpect(status().isNotFound());
+
+        Fruit fruit = fruitRepository.save(new Fruit(null, "Plum", 2, supplier));
+        mockMvc.perform(patch("/fruits/" + fruit.getId() + "/weight")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(patch("/fruits/" + fruit.getId() + "/weight")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"delta\":0}"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void deleteFruit_removesFruitFromDatabase() throws Exception {
         Fruit fruit = fruitRepository.save(new Fruit(null, "Pitaya", 7, supplier));
@@ -237,4 +525,241 @@ class FruitControllerTest {
                 .andExpect(status().isNoContent())
                 .andExpect(content().string(""));
     }
+
+    @Test
+    void getFruitStats_reflectsWritesMadeThroughTheApi() throws Exception {
+        fruitRepository.save(new Fruit(null, "Banana", 4, supplier));
+        fruitStatsService.rebuild();
+
+        for (FruitRequestDTO request : List.of(
+                new FruitRequestDTO("Banana", 6, supplier.getId()),
+                new FruitRequestDTO("Apple", 2, supplier.getId()))) {
+            mockMvc.perform(post("/fruits")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(request)))
+                    .andExpect(status().isCreated());
+        }
+
+        mockMvc.perform(get("/fruits/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bySupplier[0].group").value("FreshFarm"))
+                .andExpect(jsonPath("$.bySupplier[0].count").value(3))
+                .andExpect(jsonPath("$.bySupplier[0].totalWeightInKilos").value(12))
+                .andExpect(jsonPath("$.byCountry[0].group").value("Spain"))
+                .andExpect(jsonPath("$.byName[1].group").value("Banana"))
+                .andExpect(jsonPath("$.byName[1].minWeightInKilos").value(4))
+                .andExpect(jsonPath("$.byName[1].maxWeightInKilos").value(6));
+    }
+
+    @Test
+    void getFruitById_returns304_whenETagMatches_and200AfterUpdate() throws Exception {
+        Fruit fruit = fruitRepository.save(new Fruit(null, "Kiwi", 2, supplier));
+
+        String etag = mockMvc.perform(get("/fruits/" + fruit.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"" + fruit.getId() + "-0\""))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/fruits/" + fruit.getId()).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        mockMvc.perform(put("/fruits/" + fruit.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitRequestDTO("Kiwi", 3, supplier.getId()))))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/fruits/" + fruit.getId()).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"" + fruit.getId() + "-1\""))
+                .andExpect(jsonPath("$.weightInKilos").value(3));
+    }
+
+    @Test
+    void updateFruit_returns412_whenIfMatchIsStale() throws Exception {
+        Fruit fruit = fruitRepository.save(new Fruit(null, "Kiwi", 2, supplier));
+        FruitRequestDTO request = new FruitRequestDTO("Kiwi", 4, supplier.getId());
+
+        mockMvc.perform(put("/fruits/" + fruit.getId())
+                        .header("If-Match", "\"" + fruit.getId() + "-0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(put("/fruits/" + fruit.getId())
+                        .header("If-Match", "\"" + fruit.getId() + "-0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void listFruits_returns304_untilTheCatalogChanges() throws Exception {
+        MvcResult first = mockMvc.perform(get("/fruits"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn();
+        String etag = first.getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/fruits").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(post("/fruits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitRequestDTO("Fig", 1, supplier.getId()))))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/fruits").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Fig"));
+    }
+
+    @Test
+    void listFruits_derivesETagFromTheDatabase_perQuery() throws Exception {
+        Supplier other = supplierRepository.save(new Supplier(null, "GreenWorld", "Italy"));
+        fruitRepository.save(new Fruit(null, "Apple", 2, supplier));
+        String supplierETag = mockMvc.perform(get("/fruits").param("supplierId", supplier.getId().toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        String pageETag = mockMvc.perform(get("/fruits").param("limit", "1"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(supplierETag).isNotEqualTo(pageETag);
+
+        // another instance's write, which no event on this one reports
+        fruitRepository.save(new Fruit(null, "Pear", 3, other));
+        mockMvc.perform(get("/fruits").param("supplierId", supplier.getId().toString())
+                        .header("If-None-Match", supplierETag))
+                .andExpect(status().isNotModified());
+        // the page's next cursor now points at the new fruit
+        mockMvc.perform(get("/fruits").param("limit", "1").header("If-None-Match", pageETag))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(FruitController.NEXT_CURSOR_HEADER));
+
+        Fruit apple = fruitRepository.findBySupplierId(supplier.getId()).get(0);
+        apple.setWeightInKilos(5);
+        fruitRepository.save(apple);
+        mockMvc.perform(get("/fruits").param("supplierId", supplier.getId().toString())
+                        .header("If-None-Match", supplierETag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].weightInKilos").value(5));
+    }
+
+    @Test
+    void listFruits_changesSupplierETag_whenOneFruitMovesOutAndAnotherIn() throws Exception {
+        Supplier other = supplierRepository.save(new Supplier(null, "GreenWorld", "Italy"));
+        Fruit leaving = fruitRepository.save(new Fruit(null, "Apple", 2, supplier));
+        leaving.setWeightInKilos(3);
+        leaving = fruitRepository.save(leaving);
+        Fruit joining = fruitRepository.save(new Fruit(null, "Pear", 3, other));
+        fruitRepository.save(new Fruit(null, "Fig", 1, supplier));
+        String etag = mockMvc.perform(get("/fruits").param("supplierId", supplier.getId().toString()))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // same count, highest id and version sum afterwards
+        leaving.setSupplier(other);
+        fruitRepository.save(leaving);
+        joining.setSupplier(supplier);
+        fruitRepository.save(joining);
+
+        mockMvc.perform(get("/fruits").param("supplierId", supplier.getId().toString())
+                        .header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Pear"));
+    }
+
+    @Test
+    void listFruits_returns404BeforeCheckingPreconditions_whenSupplierDoesNotExist() throws Exception {
+        mockMvc.perform(get("/fruits").param("supplierId", "999999").header("If-None-Match", "*"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void searchFruits_findsFruitsWrittenThroughTheApi() throws Exception {
+        catalogSearchService.rebuild();
+        for (FruitRequestDTO request : List.of(
+                new FruitRequestDTO("Passion Fruit", 1, supplier.getId()),
+                new FruitRequestDTO("Papaya", 4, supplier.getId()))) {
+            mockMvc.perform(post("/fruits")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(request)))
+                    .andExpect(status().isCreated());
+        }
+
+        mockMvc.perform(get("/fruits/search").param("q", "pa").param("minWeight", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("Papaya"));
+        mockMvc.perform(get("/fruits/search").param("q", "pasion").param("fuzzy", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Passion Fruit"));
+        mockMvc.perform(get("/fruits/search"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void listFruits_negotiatesCborSmileAndProtobuf_andDefaultsToJson() throws Exception {
+        mockMvc.perform(post("/fruits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitRequestDTO("Kiwi", 2, supplier.getId()))))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/fruits").accept(MediaType.ALL))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(header().string("Vary", containsString("Accept")));
+
+        byte[] cbor = mockMvc.perform(get("/fruits").accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertThat(new ObjectMapper(new CBORFactory()).readTree(cbor).get(0).get("name").asText()).isEqualTo("Kiwi");
+
+        byte[] smile = mockMvc.perform(get("/fruits").accept("application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        assertThat(new ObjectMapper(new SmileFactory()).readTree(smile).get(0).get("supplier").get("name").asText())
+                .isEqualTo("FreshFarm");
+
+        byte[] protobuf = mockMvc.perform(get("/fruits").accept("application/x-protobuf"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-protobuf"))
+                .andReturn().getResponse().getContentAsByteArray();
+        JsonNode fruitList = protobufReader("FruitList").readTree(protobuf);
+        assertThat(fruitList.get("fruits").get(0).get("name").asText()).isEqualTo("Kiwi");
+        assertThat(fruitList.get("fruits").get(0).get("weightInKilos").asInt()).isEqualTo(2);
+    }
+
+    @Test
+    void getFruitById_returnsProtobufError_whenFruitDoesNotExist() throws Exception {
+        byte[] error = mockMvc.perform(get("/fruits/999").accept("application/x-protobuf"))
+                .andExpect(status().isNotFound())
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertThat(protobufReader("Error").readTree(error).get("status").asInt()).isEqualTo(404);
+    }
+
+    @Test
+    void listFruits_sendsEachSupplierOnce_whenViewIsNormalized() throws Exception {
+        for (String name : List.of("Lime", "Lemon")) {
+            mockMvc.perform(post("/fruits")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(new FruitRequestDTO(name, 1, supplier.getId()))))
+                    .andExpect(status().isCreated());
+        }
+
+        mockMvc.perform(get("/fruits").param("view", "normalized"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$.suppliers.length()").value(1))
+                .andExpect(jsonPath("$.suppliers[0].name").value("FreshFarm"))
+                .andExpect(jsonPath("$.fruits.length()").value(2))
+                .andExpect(jsonPath("$.fruits[0].supplierId").value(supplier.getId()))
+                .andExpect(jsonPath("$.fruits[0].supplier").doesNotExist());
+    }
+
+    private ObjectReader protobufReader(String message) throws Exception {
+        try (InputStream schema = new ClassPathResource("proto/catalog.proto").getInputStream()) {
+            return new ProtobufMapper().readerFor(JsonNode.class)
+                    .with(ProtobufSchemaLoader.std.load(schema).withRootType(message));
+        }
+    }
 }
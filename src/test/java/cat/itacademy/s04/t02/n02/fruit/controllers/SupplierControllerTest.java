@@ -5,22 +5,31 @@ import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
 import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
 import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
 import cat.itacademy.s04.t02.n02.fruit.repository.SupplierRepository;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufMapper;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.InputStream;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
 @AutoConfigureMockMvc
+@AutoConfigureObservability
 class SupplierControllerTest {
 
     @Autowired
@@ -56,9 +65,9 @@ class SupplierControllerTest {
     }
 
     @Test
-    void createSupplier_returns400_whenNameAlreadyExists() throws Exception {
+    void createSupplier_returns409_whenNameAlreadyExistsIgnoringCase() throws Exception {
         SupplierRequestDTO supplier1 = new SupplierRequestDTO("Profruits", "Spain");
-        SupplierRequestDTO supplier2 = new SupplierRequestDTO("Profruits", "France");
+        SupplierRequestDTO supplier2 = new SupplierRequestDTO("PROFRUITS ", "France");
 
         mockMvc.perform(post("/suppliers")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -68,9 +77,75 @@ class SupplierControllerTest {
         mockMvc.perform(post("/suppliers")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(supplier2)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value("Supplier name already exists"));
+    }
+
+    @Test
+    void upsertSupplier_insertsThenUpdatesSameRow_whenNameDiffersOnlyInCase() throws Exception {
+        String created = mockMvc.perform(put("/suppliers/by-name/{name}", "Sunny Groves")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"country\":\"Spain\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Sunny Groves"))
+                .andExpect(jsonPath("$.country").value("Spain"))
+                .andReturn().getResponse().getContentAsString();
+        long id = objectMapper.readTree(created).get("id").asLong();
+
+        mockMvc.perform(put("/suppliers/by-name/{name}", "SUNNY GROVES")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"country\":\"Portugal\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(id))
+                .andExpect(jsonPath("$.country").value("Portugal"));
+        // unchanged, so the version stays
+        mockMvc.perform(put("/suppliers/by-name/{name}", "SUNNY GROVES")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"country\":\"Portugal\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(id));
+
+        assertThat(supplierRepository.findAll())
+                .singleElement()
+                .satisfies(supplier -> {
+                    assertThat(supplier.getName()).isEqualTo("SUNNY GROVES");
+                    assertThat(supplier.getVersion()).isEqualTo(1);
+                });
+        mockMvc.perform(get("/suppliers/{id}", id))
+                .andExpect(jsonPath("$.country").value("Portugal"));
+    }
+
+    @Test
+    void upsertSupplier_returns400_whenCountryIsBlank() throws Exception {
+        mockMvc.perform(put("/suppliers/by-name/{name}", "Sunny Groves")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"country\":\"\"}"))
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void createSupplier_replaysOriginalResponse_whenRetriedWithSameIdempotencyKey() throws Exception {
+        SupplierRequestDTO request = new SupplierRequestDTO("Retry Farms", "Spain");
+        String key = "supplier-" + System.nanoTime();
+
+        String first = mockMvc.perform(post("/suppliers")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        mockMvc.perform(post("/suppliers")
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(content().json(first));
+
+        assertThat(supplierRepository.count()).isEqualTo(1);
+    }
+
     @Test
     void createSupplier_returns400_whenNameIsBlank() throws Exception {
         SupplierRequestDTO supplier = new SupplierRequestDTO("", "Portugal");
@@ -156,16 +231,16 @@ class SupplierControllerTest {
     }
 
     @Test
-    void updateSupplier_returns400_whenNameAlreadyExists() throws Exception {
+    void updateSupplier_returns409_whenNameAlreadyExists() throws Exception {
         Supplier s1 = supplierRepository.save(new Supplier(null, "AlphaFruits", "Spain"));
         Supplier s2 = supplierRepository.save(new Supplier(null, "BetaFruits", "France"));
 
-        SupplierRequestDTO update = new SupplierRequestDTO("AlphaFruits", "France");
+        SupplierRequestDTO update = new SupplierRequestDTO("alphafruits", "France");
 
         mockMvc.perform(put("/suppliers/" + s2.getId())
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(update)))
-                .andExpect(status().isBadRequest());
+                .andExpect(status().isConflict());
     }
 
     @Test
@@ -215,4 +290,172 @@ class SupplierControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void deleteSupplier_removesSupplierAndFruits_whenModeIsCascade() throws Exception {
+        Supplier supplier = supplierRepository.save(new Supplier(null, "Fruitful", "Brazil"));
+        fruitRepository.save(new Fruit(null, "Banana", 10, supplier));
+        fruitRepository.save(new Fruit(null, "Mango", 4, supplier));
+
+        mockMvc.perform(delete("/suppliers/" + supplier.getId()).param("mode", "cascade"))
+                .andExpect(status().isNoContent());
+
+        assertThat(fruitRepository.count()).isZero();
+        assertThat(supplierRepository.existsById(supplier.getId())).isFalse();
+    }
+
+    @Test
+    void deleteSupplier_movesFruitsToTarget_whenModeIsReassign() throws Exception {
+        Supplier supplier = supplierRepository.save(new Supplier(null, "Fruitful", "Brazil"));
+        Supplier target = supplierRepository.save(new Supplier(null, "Heir", "Peru"));
+        fruitRepository.save(new Fruit(null, "Banana", 10, supplier));
+        fruitRepository.save(new Fruit(null, "Mango", 4, supplier));
+
+        mockMvc.perform(delete("/suppliers/" + supplier.getId())
+                        .param("mode", "reassign")
+                        .param("to", String.valueOf(target.getId())))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/fruits").param("supplierId", String.valueOf(target.getId())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].supplier.name").value("Heir"));
+        assertThat(supplierRepository.existsById(supplier.getId())).isFalse();
+    }
+
+    @Test
+    void deleteSupplier_returns404AndKeepsFruits_whenReassignTargetDoesNotExist() throws Exception {
+        Supplier supplier = supplierRepository.save(new Supplier(null, "Fruitful", "Brazil"));
+        fruitRepository.save(new Fruit(null, "Banana", 10, supplier));
+
+        mockMvc.perform(delete("/suppliers/" + supplier.getId()).param("mode", "reassign").param("to", "999"))
+                .andExpect(status().isNotFound());
+
+        assertThat(fruitRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void deleteSupplier_returns400_whenModeIsUnknown() throws Exception {
+        Supplier supplier = supplierRepository.save(new Supplier(null, "DeleteMe", "Spain"));
+
+        mockMvc.perform(delete("/suppliers/" + supplier.getId()).param("mode", "purge"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void supplierCacheStatistics_areExposedAsMetrics() throws Exception {
+        Supplier saved = supplierRepository.save(new Supplier(null, "CachedFarm", "Spain"));
+
+        mockMvc.perform(get("/suppliers/" + saved.getId())).andExpect(status().isOk());
+        mockMvc.perform(get("/suppliers/" + saved.getId())).andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/metrics/cache.gets")
+                        .param("tag", "cache:suppliersById")
+                        .param("tag", "result:hit"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[0].value").isNumber());
+        mockMvc.perform(get("/actuator/metrics/cache.evictions").param("tag", "cache:suppliersById"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void getSuppliers_returns304_whenETagMatches_and200AfterUpdate() throws Exception {
+        Supplier saved = supplierRepository.save(new Supplier(null, "PolledFarm", "Spain"));
+
+        String listETag = mockMvc.perform(get("/suppliers"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        String itemETag = mockMvc.perform(get("/suppliers/" + saved.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/suppliers").header("If-None-Match", listETag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/suppliers/" + saved.getId()).header("If-None-Match", itemETag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(put("/suppliers/" + saved.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new SupplierRequestDTO("PolledFarm", "Italy"))))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/suppliers").header("If-None-Match", listETag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].country").value("Italy"));
+        mockMvc.perform(get("/suppliers/" + saved.getId()).header("If-None-Match", itemETag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void searchSuppliers_filtersByCountry() throws Exception {
+        for (SupplierRequestDTO request : List.of(
+                new SupplierRequestDTO("Sunny Orchards", "Spain"),
+                new SupplierRequestDTO("Sunrise Farms", "Italy"))) {
+            mockMvc.perform(post("/suppliers")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(request)))
+                    .andExpect(status().isCreated());
+        }
+
+        mockMvc.perform(get("/suppliers/search").param("q", "sun").param("country", "italy"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("Sunrise Farms"));
+    }
+
+    @Test
+    void prometheusEndpoint_exposesEndpointServiceRepositoryPoolAndHibernateMetrics() throws Exception {
+        Supplier saved = supplierRepository.save(new Supplier(null, "ScrapedFarm", "Spain"));
+        mockMvc.perform(get("/suppliers/" + saved.getId())).andExpect(status().isOk());
+        mockMvc.perform(get("/fruits")).andExpect(status().isOk());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(scrape)
+                .contains("http_server_requests_seconds_bucket{")
+                .contains("uri=\"/suppliers/{id}\"")
+                .contains("fruits_service_seconds_bucket{")
+                .contains("class=\"cat.itacademy.s04.t02.n02.fruit.services.SupplierServiceImpl\"")
+                .contains("spring_data_repository_invocations_seconds_bucket{")
+                .contains("hikaricp_connections_active")
+                .contains("hibernate_statements_total");
+    }
+
+    @Test
+    void getSuppliersByIds_returnsResultsInRequestOrder_withNotFoundMarkers() throws Exception {
+        Supplier freshFarm = supplierRepository.save(new Supplier(null, "FreshFarm", "Spain"));
+        Supplier greenWorld = supplierRepository.save(new Supplier(null, "GreenWorld", "Italy"));
+        long missing = greenWorld.getId() + 1000;
+
+        mockMvc.perform(get("/suppliers/" + freshFarm.getId()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/suppliers").param("ids", greenWorld.getId() + "," + missing + "," + freshFarm.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].supplier.name").value("GreenWorld"))
+                .andExpect(jsonPath("$[1].id").value(missing))
+                .andExpect(jsonPath("$[1].status").value(404))
+                .andExpect(jsonPath("$[2].status").value(200))
+                .andExpect(jsonPath("$[2].supplier.name").value("FreshFarm"));
+    }
+
+    @Test
+    void getSuppliers_returnsSupplierListMessage_whenProtobufIsAccepted() throws Exception {
+        supplierRepository.save(new Supplier(null, "FreshFarm", "Spain"));
+
+        byte[] body = mockMvc.perform(get("/suppliers").accept("application/x-protobuf"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-protobuf"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        try (InputStream schema = new ClassPathResource("proto/catalog.proto").getInputStream()) {
+            JsonNode suppliers = new ProtobufMapper().readerFor(JsonNode.class)
+                    .with(ProtobufSchemaLoader.std.load(schema).withRootType("SupplierList"))
+                    .readTree(body);
+            assertThat(suppliers.get("suppliers").get(0).get("name").asText()).isEqualTo("FreshFarm");
+            assertThat(suppliers.get("suppliers").get(0).get("country").asText()).isEqualTo("Spain");
+        }
+    }
 }
@@ -0,0 +1,94 @@
+package cat.itacademy.s04.t02.n02.fruit.datasource;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierRequestDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Starts against a database in the shape the baseline release left it, so Flyway has to baseline and upgrade it
+ * before Hibernate validates the schema.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class CreateOrUpgradeTablesMigrationTest {
+
+    private static final String URL = "jdbc:h2:mem:baseline;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Flyway flyway;
+
+    @DynamicPropertySource
+    static void baselineDatabase(DynamicPropertyRegistry registry) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(URL, "sa", "")) {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/baseline-schema.sql"));
+        }
+        registry.add("spring.datasource.url", () -> URL);
+    }
+
+    @Test
+    void baselineDatabase_isBaselinedAtZeroAndUpgradedByEveryMigration() {
+        MigrationInfo[] applied = flyway.info().applied();
+
+        assertThat(applied[0].getVersion().getVersion()).isEqualTo("0");
+        assertThat(Arrays.stream(applied).map(info -> info.getVersion().getVersion()))
+                .contains("1", "2", "4");
+        assertThat(flyway.info().pending()).isEmpty();
+    }
+
+    @Test
+    void existingCatalog_survivesTheUpgrade_andTakesNewWrites() throws Exception {
+        mockMvc.perform(get("/fruits").param("supplierId", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].supplier.name").value("FreshFarm"));
+
+        // V4 renamed the newer of two names that only differed in case and spacing before indexing them
+        mockMvc.perform(get("/suppliers/3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("freshFarm #3"));
+
+        // uk_suppliers_name was renamed from Hibernate's hashed name, so V4 could replace it
+        mockMvc.perform(post("/suppliers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new SupplierRequestDTO(" freshfarm", "Spain"))))
+                .andExpect(status().isConflict());
+        String created = mockMvc.perform(post("/fruits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitRequestDTO("Kiwi", 4, 2L))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        // unsharded, so the identity column carries on after the existing rows
+        assertThat(objectMapper.readTree(created).get("id").asLong()).isEqualTo(4);
+        mockMvc.perform(get("/fruits").param("supplierId", "2"))
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+}
@@ -0,0 +1,35 @@
+package cat.itacademy.s04.t02.n02.fruit.datasource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class QueryIndexVerifierTest {
+
+    @Autowired
+    private QueryIndexVerifier verifier;
+
+    @Test
+    void migratedSchemaIndexesEveryRepositoryLookup() {
+        assertThat(verifier.findUnindexedQueries()).isEmpty();
+    }
+
+    @Test
+    void reportsLookupsWhoseLeadingColumnIsNotIndexed() {
+        assertThat(verifier.findUnindexedQueries(Map.of("fruits", Set.of("id"), "suppliers", Set.of("id"))))
+                .containsExactly(
+                        "FruitRepository.deleteAllBySupplier filters on fruits.supplier_id without a supporting index",
+                        "FruitRepository.existsBySupplierId filters on fruits.supplier_id without a supporting index",
+                        "FruitRepository.findBySupplierId filters on fruits.supplier_id without a supporting index",
+                        "FruitRepository.findCollectionVersionBySupplierId filters on fruits.supplier_id without a supporting index",
+                        "FruitRepository.findDtosBySupplierId filters on fruits.supplier_id without a supporting index",
+                        "FruitRepository.reassignSupplier filters on fruits.supplier_id without a supporting index",
+                        "SupplierRepository.findByNormalizedName filters on suppliers.normalized_name without a supporting index");
+    }
+}
@@ -0,0 +1,66 @@
+package cat.itacademy.s04.t02.n02.fruit.datasource;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.filters.ReadYourWritesFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routed;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "fruits.datasource.read-replicas-enabled=true",
+        "fruits.datasource.replica-urls=jdbc:h2:mem:routed;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "fruits.datasource.lag-query=select 0",
+        "fruits.datasource.lag-check-interval=PT1H",
+        "spring.datasource.hikari.pool-name=primary"
+})
+@AutoConfigureMockMvc
+class ReadReplicaRoutingIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void readsUseTheReplica_untilTheClientHasWritten() throws Exception {
+        double replicaBefore = borrowed("replica-1");
+        mockMvc.perform(get("/suppliers")).andExpect(status().isOk());
+        assertThat(borrowed("replica-1")).isGreaterThan(replicaBefore);
+
+        double primaryBefore = borrowed("primary");
+        Cookie stickiness = mockMvc.perform(post("/suppliers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new SupplierRequestDTO("RoutedFarm", "Spain"))))
+                .andExpect(status().isCreated())
+                .andExpect(cookie().exists(ReadYourWritesFilter.COOKIE_NAME))
+                .andReturn().getResponse().getCookie(ReadYourWritesFilter.COOKIE_NAME);
+        assertThat(borrowed("primary")).isGreaterThan(primaryBefore);
+
+        replicaBefore = borrowed("replica-1");
+        mockMvc.perform(get("/suppliers").cookie(stickiness)).andExpect(status().isOk());
+        assertThat(borrowed("replica-1")).isEqualTo(replicaBefore);
+    }
+
+    private double borrowed(String pool) {
+        Timer usage = meterRegistry.find("hikaricp.connections.usage").tag("pool", pool).timer();
+        return usage == null ? 0 : usage.count();
+    }
+}
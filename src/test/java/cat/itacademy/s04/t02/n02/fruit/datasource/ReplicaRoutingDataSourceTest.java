@@ -0,0 +1,117 @@
+package cat.itacademy.s04.t02.n02.fruit.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaRoutingDataSourceTest {
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @AfterEach
+    void closePools() {
+        pools.forEach(HikariDataSource::close);
+        ReadYourWrites.clear();
+    }
+
+    @Test
+    void readOnlyTransactions_goToReplicas_andWritesToPrimary() {
+        Fixture fixture = fixture(ReplicaBalancing.ROUND_ROBIN, 0, 0);
+
+        assertThat(fixture.read()).isEqualTo("replica-1");
+        assertThat(fixture.read()).isEqualTo("replica-2");
+        assertThat(fixture.read()).isEqualTo("replica-1");
+        assertThat(fixture.write()).isEqualTo("primary");
+    }
+
+    @Test
+    void readYourWrites_pinsReadsToPrimary() {
+        Fixture fixture = fixture(ReplicaBalancing.ROUND_ROBIN, 0, 0);
+
+        ReadYourWrites.requirePrimary();
+
+        assertThat(fixture.read()).isEqualTo("primary");
+    }
+
+    @Test
+    void laggingReplicas_areSkipped_andPrimaryServesWhenAllLag() {
+        Fixture fixture = fixture(ReplicaBalancing.ROUND_ROBIN, 30, 0);
+        fixture.pool().checkLag();
+
+        assertThat(fixture.read()).isEqualTo("replica-2");
+        assertThat(fixture.read()).isEqualTo("replica-2");
+
+        new JdbcTemplate(fixture.replicas().get("replica-2")).update("update replica_status set lag_seconds = 60");
+        fixture.pool().checkLag();
+
+        assertThat(fixture.read()).isEqualTo("primary");
+    }
+
+    @Test
+    void leastConnections_prefersTheLessBusyReplica() throws Exception {
+        Fixture fixture = fixture(ReplicaBalancing.LEAST_CONNECTIONS, 0, 0);
+
+        try (Connection busy = fixture.replicas().get("replica-1").getConnection()) {
+            assertThat(fixture.read()).isEqualTo("replica-2");
+            assertThat(fixture.read()).isEqualTo("replica-2");
+        }
+    }
+
+    private Fixture fixture(ReplicaBalancing balancing, int lagReplica1, int lagReplica2) {
+        DataSource primary = database("primary", 0);
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", database("replica-1", lagReplica1));
+        replicas.put("replica-2", database("replica-2", lagReplica2));
+
+        ReplicaPool pool = new ReplicaPool(replicas, balancing, Duration.ofSeconds(5),
+                "select lag_seconds from replica_status");
+        DataSource routing = new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, pool));
+        return new Fixture(routing, pool, replicas);
+    }
+
+    private DataSource database(String name, int lagSeconds) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:routing-" + name + "-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setMaximumPoolSize(4);
+        pools.add(dataSource);
+
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table node (name varchar(20))");
+        jdbc.update("insert into node values (?)", name);
+        jdbc.execute("create table replica_status (lag_seconds int)");
+        jdbc.update("insert into replica_status values (?)", lagSeconds);
+        return dataSource;
+    }
+
+    private record Fixture(DataSource routing, ReplicaPool pool, Map<String, DataSource> replicas) {
+
+        String read() {
+            return query(true);
+        }
+
+        String write() {
+            return query(false);
+        }
+
+        private String query(boolean readOnly) {
+            TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(routing));
+            transaction.setReadOnly(readOnly);
+            return transaction.execute(status ->
+                    new JdbcTemplate(routing).queryForObject("select name from node", String.class));
+        }
+    }
+}
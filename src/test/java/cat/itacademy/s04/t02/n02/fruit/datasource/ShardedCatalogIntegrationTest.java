@@ -0,0 +1,195 @@
+package cat.itacademy.s04.t02.n02.fruit.datasource;
+
+import cat.itacademy.s04.t02.n02.fruit.controllers.FruitController;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierRequestDTO;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:shard0;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "fruits.sharding.enabled=true",
+        "fruits.ids.node-id=1",
+        "fruits.sharding.shard-urls=jdbc:h2:mem:shard1;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1,"
+                + "jdbc:h2:mem:shard2;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1"
+})
+@AutoConfigureMockMvc
+class ShardedCatalogIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Autowired
+    private ShardDataSources shardDataSources;
+
+    @Test
+    void fruitsLiveOnTheShardOfTheirSupplier_andListingsMergeEveryShard() throws Exception {
+        List<Long> fruitIds = new ArrayList<>();
+        Set<Integer> usedShards = new HashSet<>();
+        for (int i = 0; i < 12; i++) {
+            long supplierId = createSupplier("Spread " + i);
+            int shard = shardRouter.shardFor(supplierId);
+            usedShards.add(shard);
+            for (int j = 0; j < 2; j++) {
+                long fruitId = createFruit("Fruit " + i + "-" + j, supplierId);
+                fruitIds.add(fruitId);
+                for (int other = 0; other < shardRouter.shardCount(); other++) {
+                    assertThat(count(other, "select count(*) from fruits where id = " + fruitId))
+                            .isEqualTo(other == shard ? 1 : 0);
+                }
+            }
+            for (int other = 0; other < shardRouter.shardCount(); other++) {
+                assertThat(count(other, "select count(*) from suppliers where id = " + supplierId)).isEqualTo(1);
+            }
+        }
+        assertThat(usedShards).hasSizeGreaterThan(1);
+
+        List<Long> listed = ids(mockMvc.perform(get("/fruits").param("limit", "1000"))
+                .andExpect(status().isOk()).andReturn().getResponse());
+        assertThat(listed).isSorted().containsAll(fruitIds);
+
+        List<Long> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            var request = get("/fruits").param("limit", "5");
+            MockHttpServletResponse page = mockMvc.perform(cursor == null ? request : request.param("after", cursor))
+                    .andExpect(status().isOk()).andReturn().getResponse();
+            paged.addAll(ids(page));
+            cursor = page.getHeader(FruitController.NEXT_CURSOR_HEADER);
+        } while (cursor != null);
+        assertThat(paged).isEqualTo(listed);
+
+        for (Long id : fruitIds) {
+            mockMvc.perform(get("/fruits/{id}", id))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.id").value(id));
+        }
+    }
+
+    @Test
+    void changingSupplier_movesTheFruitToTheNewSuppliersShard() throws Exception {
+        long source = createSupplier("Mover source");
+        long target = createSupplier("Mover target");
+        for (int i = 0; shardRouter.shardFor(target) == shardRouter.shardFor(source); i++) {
+            target = createSupplier("Mover target " + i);
+        }
+        long fruitId = createFruit("Travelling plum", source);
+
+        mockMvc.perform(put("/fruits/{id}", fruitId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitRequestDTO("Travelling plum", 7, target))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.supplier.id").value(target))
+                .andExpect(jsonPath("$.weightInKilos").value(7));
+
+        assertThat(count(shardRouter.shardFor(source), "select count(*) from fruits where id = " + fruitId)).isZero();
+        assertThat(count(shardRouter.shardFor(target), "select count(*) from fruits where id = " + fruitId)).isEqualTo(1);
+        mockMvc.perform(get("/fruits").param("supplierId", String.valueOf(target)))
+                .andExpect(jsonPath("$[0].id").value(fruitId));
+    }
+
+    @Test
+    void deletingSupplierWithCascade_removesItsFruitsAndEveryCopy() throws Exception {
+        long supplierId = createSupplier("Short-lived");
+        long fruitId = createFruit("Doomed pear", supplierId);
+
+        mockMvc.perform(delete("/suppliers/{id}", supplierId).param("mode", "cascade"))
+                .andExpect(status().isNoContent());
+
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            assertThat(count(shard, "select count(*) from fruits where id = " + fruitId)).isZero();
+            assertThat(count(shard, "select count(*) from suppliers where id = " + supplierId)).isZero();
+        }
+    }
+
+    @Test
+    void changeLog_isWrittenWithEachShardsWrites_andServedInOrder() throws Exception {
+        String head = objectMapper.readTree(mockMvc.perform(get("/changes")).andReturn().getResponse()
+                .getContentAsString()).get("nextToken").asText();
+        long first = createSupplier("Feed first");
+        long second = createSupplier("Feed second");
+        for (int i = 0; shardRouter.shardFor(second) == shardRouter.shardFor(first); i++) {
+            second = createSupplier("Feed second " + i);
+        }
+        long firstFruit = createFruit("Feed apple", first);
+        long secondFruit = createFruit("Feed pear", second);
+
+        assertThat(count(shardRouter.shardFor(second),
+                "select count(*) from catalog_changes where entity_id = " + secondFruit)).isEqualTo(1);
+        JsonNode changes = objectMapper.readTree(mockMvc.perform(get("/changes").param("since", head))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString()).get("changes");
+        List<Long> fruitChanges = new ArrayList<>();
+        for (JsonNode change : changes) {
+            if (change.get("entity").asText().equals("fruit")) {
+                fruitChanges.add(change.get("id").asLong());
+            }
+        }
+        assertThat(fruitChanges).containsExactly(firstFruit, secondFruit);
+    }
+
+    private long createSupplier(String name) throws Exception {
+        return id(mockMvc.perform(post("/suppliers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new SupplierRequestDTO(name, "Spain"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse());
+    }
+
+    private long createFruit(String name, long supplierId) throws Exception {
+        return id(mockMvc.perform(post("/fruits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitRequestDTO(name, 3, supplierId))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse());
+    }
+
+    private long id(MockHttpServletResponse response) throws Exception {
+        return objectMapper.readTree(response.getContentAsString()).get("id").asLong();
+    }
+
+    private List<Long> ids(MockHttpServletResponse response) throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (JsonNode fruit : objectMapper.readTree(response.getContentAsString())) {
+            ids.add(fruit.get("id").asLong());
+        }
+        return ids;
+    }
+
+    private int count(int shard, String sql) {
+        DataSource dataSource = shard == 0 ? primaryDataSource : shardDataSources.dataSources().get(shard - 1);
+        return new JdbcTemplate(dataSource).queryForObject(sql, Integer.class);
+    }
+}
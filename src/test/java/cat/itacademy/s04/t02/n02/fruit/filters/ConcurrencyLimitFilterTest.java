@@ -0,0 +1,69 @@
+package cat.itacademy.s04.t02.n02.fruit.filters;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitFilterTest {
+
+    private ConcurrencyLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        filter = new ConcurrencyLimitFilter(1, Duration.ofMillis(50), objectMapper);
+    }
+
+    @Test
+    void doFilter_shouldPassThroughAndReleasePermit_whenUnderLimit() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/fruits"), response, (req, res) -> { });
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(filter.availablePermits()).isEqualTo(1);
+    }
+
+    @Test
+    void doFilter_shouldReturn503_whenAllPermitsAreHeldPastTimeout() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> inFlight = CompletableFuture.runAsync(() -> {
+            try {
+                filter.doFilter(new MockHttpServletRequest("GET", "/fruits"), new MockHttpServletResponse(),
+                        (req, res) -> {
+                            entered.countDown();
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/fruits/1"), rejected, (req, res) -> { });
+
+        assertThat(rejected.getStatus()).isEqualTo(503);
+        assertThat(rejected.getHeader("Retry-After")).isEqualTo("1");
+        assertThat(rejected.getContentAsString()).contains("\"path\":\"/fruits/1\"");
+
+        release.countDown();
+        inFlight.get(5, TimeUnit.SECONDS);
+        assertThat(filter.availablePermits()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,193 @@
+package cat.itacademy.s04.t02.n02.fruit.filters;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class IdempotencyFilterTest {
+
+    private final InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(1_000_000, Duration.ofMinutes(1));
+    private IdempotencyFilter filter;
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        filter = new IdempotencyFilter(store, Duration.ofSeconds(5), Duration.ofMinutes(1), objectMapper);
+    }
+
+    @Test
+    void doFilter_shouldReplayStoredResponseWithoutRunningTheChain() throws Exception {
+        MockHttpServletResponse first = send(post("key-1", "{\"name\":\"Apple\"}"), created(1));
+        MockHttpServletResponse retry = send(post("key-1", "{\"name\":\"Apple\"}"), created(2));
+
+        assertThat(executions).hasValue(1);
+        assertThat(retry.getStatus()).isEqualTo(201);
+        assertThat(retry.getContentAsString()).isEqualTo(first.getContentAsString()).isEqualTo("{\"id\":1}");
+        assertThat(retry.getHeader("Location")).isEqualTo("/suppliers/1");
+        assertThat(retry.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(first.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isNull();
+    }
+
+    @Test
+    void doFilter_shouldReturn422_whenKeyIsReusedForADifferentBody() throws Exception {
+        send(post("key-1", "{\"name\":\"Apple\"}"), created(1));
+        MockHttpServletResponse reused = send(post("key-1", "{\"name\":\"Pear\"}"), created(2));
+
+        assertThat(executions).hasValue(1);
+        assertThat(reused.getStatus()).isEqualTo(422);
+    }
+
+    @Test
+    void doFilter_shouldFingerprintTheWholeBody_whenTheChainReadsOnlyPartOfItAndClosesIt() throws Exception {
+        FilterChain readsFirstLine = (req, res) -> {
+            executions.incrementAndGet();
+            try (var reader = req.getReader()) {
+                reader.readLine();
+            }
+            ((HttpServletResponse) res).setStatus(202);
+        };
+        send(post("key-1", "{\"name\":\"Apple\"}\n{\"name\":\"Pear\"}\n"), readsFirstLine);
+
+        MockHttpServletResponse same = send(post("key-1", "{\"name\":\"Apple\"}\n{\"name\":\"Pear\"}\n"), readsFirstLine);
+        MockHttpServletResponse other = send(post("key-1", "{\"name\":\"Apple\"}\n{\"name\":\"Fig\"}\n"), readsFirstLine);
+
+        assertThat(executions).hasValue(1);
+        assertThat(same.getStatus()).isEqualTo(202);
+        assertThat(other.getStatus()).isEqualTo(422);
+    }
+
+    @Test
+    void doFilter_shouldRunAgain_whenOriginalFailedWithServerError() throws Exception {
+        send(post("key-1", "{}"), (req, res) -> {
+            executions.incrementAndGet();
+            ((HttpServletResponse) res).setStatus(503);
+        });
+        MockHttpServletResponse retry = send(post("key-1", "{}"), created(1));
+
+        assertThat(executions).hasValue(2);
+        assertThat(retry.getStatus()).isEqualTo(201);
+    }
+
+    @Test
+    void doFilter_shouldMakeConcurrentDuplicateWaitForTheOriginal() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<MockHttpServletResponse> original = CompletableFuture.supplyAsync(() ->
+                send(post("key-1", "{}"), (req, res) -> {
+                    entered.countDown();
+                    await(release);
+                    created(7).doFilter(req, res);
+                }));
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<MockHttpServletResponse> duplicate =
+                CompletableFuture.supplyAsync(() -> send(post("key-1", "{}"), created(8)));
+        Thread.sleep(100);
+        assertThat(duplicate).isNotDone();
+
+        release.countDown();
+        assertThat(original.get(5, TimeUnit.SECONDS).getContentAsString()).isEqualTo("{\"id\":7}");
+        assertThat(duplicate.get(5, TimeUnit.SECONDS).getContentAsString()).isEqualTo("{\"id\":7}");
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void doFilter_shouldReturnTheResponse_whenStoringItFails() throws Exception {
+        IdempotencyStore failing = mock(IdempotencyStore.class);
+        when(failing.find("key-1")).thenReturn(Optional.empty());
+        when(failing.reserve(eq("key-1"), any())).thenReturn(true);
+        doThrow(new IllegalStateException("store is down")).when(failing).save(eq("key-1"), any());
+        filter = new IdempotencyFilter(failing, Duration.ofSeconds(5), Duration.ofMinutes(1),
+                new ObjectMapper().registerModule(new JavaTimeModule()));
+
+        MockHttpServletResponse response = send(post("key-1", "{}"), created(1));
+
+        assertThat(response.getStatus()).isEqualTo(201);
+        assertThat(response.getContentAsString()).isEqualTo("{\"id\":1}");
+        verify(failing).release("key-1");
+    }
+
+    @Test
+    void doFilter_shouldWaitForAnotherInstance_whileItHoldsTheKey() throws Exception {
+        send(post("key-1", "{}"), created(9));
+        IdempotentResponse stored = store.find("key-1").orElseThrow();
+        IdempotencyStore shared = mock(IdempotencyStore.class);
+        when(shared.find("key-1")).thenReturn(Optional.empty()).thenReturn(Optional.empty())
+                .thenReturn(Optional.of(stored));
+        when(shared.reserve(eq("key-1"), any())).thenReturn(false);
+        filter = new IdempotencyFilter(shared, Duration.ofSeconds(5), Duration.ofMinutes(1),
+                new ObjectMapper().registerModule(new JavaTimeModule()));
+
+        MockHttpServletResponse response = send(post("key-1", "{}"), created(1));
+
+        assertThat(executions).hasValue(1);
+        assertThat(response.getContentAsString()).isEqualTo("{\"id\":9}");
+        assertThat(response.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    void doFilter_shouldPassThrough_whenNoKeyIsSent() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/suppliers");
+        send(request, created(1));
+        send(request, created(2));
+
+        assertThat(executions).hasValue(2);
+    }
+
+    private MockHttpServletRequest post(String key, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/suppliers");
+        request.addHeader(IdempotencyFilter.HEADER, key);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private FilterChain created(long id) {
+        return (req, res) -> {
+            executions.incrementAndGet();
+            req.getInputStream().readAllBytes();
+            HttpServletResponse response = (HttpServletResponse) res;
+            response.setStatus(201);
+            response.setContentType("application/json");
+            response.setHeader("Location", "/suppliers/" + id);
+            response.getOutputStream().write(("{\"id\":" + id + "}").getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request, FilterChain chain) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            filter.doFilter(request, response, chain);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return response;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
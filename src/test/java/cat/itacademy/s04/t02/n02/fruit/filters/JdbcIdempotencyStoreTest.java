@@ -0,0 +1,83 @@
+package cat.itacademy.s04.t02.n02.fruit.filters;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class JdbcIdempotencyStoreTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Clock clock = Clock.fixed(Instant.parse("2026-01-01T00:00:00Z"), ZoneOffset.UTC);
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("delete from idempotency_keys");
+    }
+
+    @Test
+    void storedResponseIsVisibleToAnotherInstance() {
+        IdempotentResponse response = new IdempotentResponse("abc", 201, "application/json",
+                Map.of("Location", "/fruits/1", "ETag", "\"0\""), "{\"id\":1}".getBytes(StandardCharsets.UTF_8));
+        store().save("key-1", response);
+        store().save("key-1", response);
+
+        IdempotentResponse found = store().find("key-1").orElseThrow();
+
+        assertThat(found.status()).isEqualTo(201);
+        assertThat(found.contentType()).isEqualTo("application/json");
+        assertThat(found.headers()).containsEntry("Location", "/fruits/1").containsEntry("ETag", "\"0\"");
+        assertThat(found.body()).isEqualTo(response.body());
+    }
+
+    @Test
+    void reservationKeepsOtherInstancesOutUntilReleasedOrExpired() {
+        assertThat(store().reserve("key-1", Duration.ofMinutes(1))).isTrue();
+        assertThat(store().reserve("key-1", Duration.ofMinutes(1))).isFalse();
+        assertThat(store().find("key-1")).isEmpty();
+
+        store().release("key-1");
+        assertThat(store().reserve("key-1", Duration.ZERO)).isTrue();
+        assertThat(store().reserve("key-1", Duration.ofMinutes(1))).isTrue();
+    }
+
+    @Test
+    void savingReplacesTheReservation() {
+        assertThat(store().reserve("key-1", Duration.ofMinutes(1))).isTrue();
+        store().save("key-1", new IdempotentResponse("abc", 200, null, Map.of(), new byte[0]));
+
+        assertThat(store().find("key-1")).hasValueSatisfying(found -> assertThat(found.status()).isEqualTo(200));
+        store().release("key-1");
+        assertThat(store().find("key-1")).isPresent();
+    }
+
+    @Test
+    void purgeExpiredRemovesRowsPastTheirTtl() {
+        new JdbcIdempotencyStore(jdbcTemplate, memory(), Duration.ZERO, clock)
+                .save("key-1", new IdempotentResponse("abc", 200, null, Map.of(), new byte[0]));
+
+        assertThat(store().find("key-1")).isEmpty();
+        assertThat(store().purgeExpired()).isEqualTo(1);
+    }
+
+    private JdbcIdempotencyStore store() {
+        return new JdbcIdempotencyStore(jdbcTemplate, memory(), Duration.ofHours(1), clock);
+    }
+
+    private InMemoryIdempotencyStore memory() {
+        return new InMemoryIdempotencyStore(1_000_000, Duration.ofHours(1));
+    }
+}
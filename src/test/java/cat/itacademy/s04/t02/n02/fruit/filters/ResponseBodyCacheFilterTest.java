@@ -0,0 +1,182 @@
+package cat.itacademy.s04.t02.n02.fruit.filters;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierRequestDTO;
+import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import cat.itacademy.s04.t02.n02.fruit.repository.SupplierRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = {"fruits.response-cache.enabled=true", "server.compression.enabled=true"})
+@AutoConfigureMockMvc
+class ResponseBodyCacheFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ResponseBodyCache responseBodyCache;
+
+    @Autowired
+    private FruitRepository fruitRepository;
+
+    @Autowired
+    private SupplierRepository supplierRepository;
+
+    @BeforeEach
+    void setUp() {
+        fruitRepository.deleteAll();
+        supplierRepository.deleteAll();
+        responseBodyCache.entries().invalidateAll();
+    }
+
+    @Test
+    void getSuppliers_isServedFromCache_untilASupplierChanges() throws Exception {
+        createSupplier("FreshFarm");
+        mockMvc.perform(get("/suppliers"))
+                .andExpect(header().string(ResponseBodyCacheFilter.CACHE_HEADER, "MISS"));
+        mockMvc.perform(get("/suppliers"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ResponseBodyCacheFilter.CACHE_HEADER, "HIT"))
+                .andExpect(header().exists("ETag"))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(1));
+
+        createSupplier("GreenWorld");
+        mockMvc.perform(get("/suppliers"))
+                .andExpect(header().string(ResponseBodyCacheFilter.CACHE_HEADER, "MISS"))
+                .andExpect(jsonPath("$.length()").value(2));
+
+        // bypasses the service, so no event evicts the entry, but the hit sees the collection version change
+        supplierRepository.save(new Supplier(null, "Unseen", "Spain"));
+        mockMvc.perform(get("/suppliers"))
+                .andExpect(header().string(ResponseBodyCacheFilter.CACHE_HEADER, "MISS"))
+                .andExpect(jsonPath("$.length()").value(3));
+    }
+
+    @Test
+    void getFruitsBySupplier_onlyEvictsTheSupplierThatChanged() throws Exception {
+        long freshFarm = createSupplier("FreshFarm");
+        long greenWorld = createSupplier("GreenWorld");
+        createFruit("Apple", freshFarm);
+        createFruit("Pear", greenWorld);
+        mockMvc.perform(get("/fruits").param("supplierId", String.valueOf(freshFarm)));
+        mockMvc.perform(get("/fruits").param("supplierId", String.valueOf(greenWorld)));
+
+        createFruit("Kiwi", freshFarm);
+
+        mockMvc.perform(get("/fruits").param("supplierId", String.valueOf(freshFarm)))
+                .andExpect(header().string(ResponseBodyCacheFilter.CACHE_HEADER, "MISS"))
+                .andExpect(jsonPath("$.length()").value(2));
+        mockMvc.perform(get("/fruits").param("supplierId", String.valueOf(greenWorld)))
+                .andExpect(header().string(ResponseBodyCacheFilter.CACHE_HEADER, "HIT"))
+                .andExpect(jsonPath("$[0].name").value("Pear"));
+
+        mockMvc.perform(put("/suppliers/" + greenWorld)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new SupplierRequestDTO("GreenWorld", "Italy"))))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/fruits").param("supplierId", String.valueOf(greenWorld)))
+                .andExpect(header().string(ResponseBodyCacheFilter.CACHE_HEADER, "MISS"))
+                .andExpect(jsonPath("$[0].supplier.country").value("Italy"));
+    }
+
+    @Test
+    void hit_answersConditionalRequestsAndKeepsFormatsApart() throws Exception {
+        createSupplier("FreshFarm");
+        String eTag = mockMvc.perform(get("/suppliers"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/suppliers").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(ResponseBodyCacheFilter.CACHE_HEADER, "HIT"));
+        mockMvc.perform(get("/suppliers").accept("application/cbor"))
+                .andExpect(header().string(ResponseBodyCacheFilter.CACHE_HEADER, "MISS"))
+                .andExpect(content().contentType("application/cbor"));
+        mockMvc.perform(get("/suppliers").accept("application/cbor"))
+                .andExpect(header().string(ResponseBodyCacheFilter.CACHE_HEADER, "HIT"))
+                .andExpect(content().contentType("application/cbor"));
+    }
+
+    @Test
+    void hit_sendsThePreGzippedBody_whenTheClientAcceptsGzip() throws Exception {
+        long supplierId = createSupplier("FreshFarm");
+        for (int i = 0; i < 60; i++) {
+            createFruit("Fruit number " + i, supplierId);
+        }
+        String plain = mockMvc.perform(get("/fruits").param("supplierId", String.valueOf(supplierId)))
+                .andReturn().getResponse().getContentAsString();
+
+        byte[] gzipped = mockMvc.perform(get("/fruits").param("supplierId", String.valueOf(supplierId))
+                        .header("Accept-Encoding", "br, gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ResponseBodyCacheFilter.CACHE_HEADER, "HIT"))
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertThat(plain.length()).isGreaterThan(2048);
+        assertThat(gzipped.length).isLessThan(plain.length());
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(plain);
+        }
+    }
+
+    @Test
+    void hit_fallsThroughToTheChain_whenTheSupplierIsGone() throws Exception {
+        ResponseBodyCache cache = new ResponseBodyCache(1 << 20, Duration.ofMinutes(1), Long.MAX_VALUE);
+        ResponseBodyCache.Key key = new ResponseBodyCache.Key(ResponseBodyCache.FRUITS_BY_SUPPLIER, 7L, "*/*");
+        cache.put(key, "\"7-1\"", MediaType.APPLICATION_JSON_VALUE, "[]".getBytes(StandardCharsets.UTF_8), cache.stamp());
+        ResponseBodyCacheFilter filter = new ResponseBodyCacheFilter(cache, k -> {
+            throw new EntityNotFoundException("Supplier with id 7 not found");
+        });
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/fruits");
+        request.setParameter("supplierId", "7");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (req, res) -> ((HttpServletResponse) res).setStatus(404));
+
+        assertThat(response.getStatus()).isEqualTo(404);
+        assertThat(response.getHeader(ResponseBodyCacheFilter.CACHE_HEADER)).isNull();
+        assertThat(cache.find(key)).isEmpty();
+    }
+
+    private long createSupplier(String name) throws Exception {
+        String body = mockMvc.perform(post("/suppliers")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new SupplierRequestDTO(name, "Spain"))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("id").asLong();
+    }
+
+    private void createFruit(String name, long supplierId) throws Exception {
+        mockMvc.perform(post("/fruits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new FruitRequestDTO(name, 3, supplierId))))
+                .andExpect(status().isCreated());
+    }
+}
@@ -0,0 +1,141 @@
+package cat.itacademy.s04.t02.n02.fruit.load;
+
+import cat.itacademy.s04.t02.n02.fruit.FruitApiMySqlApplication;
+import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import cat.itacademy.s04.t02.n02.fruit.repository.SupplierRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the platform-thread and virtual-thread execution modes under the same request mix.
+ * Run with {@code mvn test -Pload-test}; tune with {@code -Dload.requests}, {@code -Dload.concurrency}
+ * and point {@code -Dload.datasource-url} at a real MySQL to include network I/O in the numbers.
+ */
+@Tag("load")
+class ExecutionModeLoadTest {
+
+    private static final int REQUESTS = Integer.getInteger("load.requests", 10_000);
+    private static final int WARMUP_REQUESTS = Integer.getInteger("load.warmup", 1_000);
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 200);
+    private static final String DATASOURCE_URL = System.getProperty("load.datasource-url");
+
+    @Test
+    void compareThroughputAndP99_betweenPlatformAndVirtualThreads() throws Exception {
+        Result platform = run("platform", false);
+        Result virtual = run("virtual", true);
+
+        System.out.printf("%n%-10s %12s %10s %10s %8s%n", "mode", "req/s", "p50 ms", "p99 ms", "errors");
+        for (Result result : List.of(platform, virtual)) {
+            System.out.printf("%-10s %12.1f %10.2f %10.2f %8d%n",
+                    result.mode(), result.throughput(), result.p50Millis(), result.p99Millis(), result.errors());
+        }
+
+        assertThat(platform.errors()).isZero();
+        assertThat(virtual.errors()).isZero();
+    }
+
+    private Result run(String mode, boolean virtualThreads) throws Exception {
+        List<String> properties = new ArrayList<>(List.of(
+                "server.port=0",
+                "spring.threads.virtual.enabled=" + virtualThreads,
+                "fruits.concurrency.limit-enabled=" + virtualThreads,
+                "fruits.concurrency.max-in-flight=10",
+                "fruits.concurrency.acquire-timeout=5s",
+                "spring.datasource.hikari.maximum-pool-size=10"));
+        properties.add("spring.datasource.url=" + (DATASOURCE_URL != null
+                ? DATASOURCE_URL
+                : "jdbc:h2:mem:load-" + mode + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1"));
+
+        try (ConfigurableApplicationContext app = new SpringApplicationBuilder(FruitApiMySqlApplication.class)
+                .properties(properties.toArray(String[]::new))
+                .run()) {
+            List<String> paths = seed(app);
+            int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+            try (HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+                fire(client, port, paths, WARMUP_REQUESTS, new long[WARMUP_REQUESTS], new AtomicInteger());
+
+                long[] latencies = new long[REQUESTS];
+                AtomicInteger errors = new AtomicInteger();
+                long start = System.nanoTime();
+                fire(client, port, paths, REQUESTS, latencies, errors);
+                long elapsed = System.nanoTime() - start;
+
+                Arrays.sort(latencies);
+                return new Result(mode, errors.get(),
+                        REQUESTS / (elapsed / 1_000_000_000.0),
+                        latencies[(int) (REQUESTS * 0.50)] / 1_000_000.0,
+                        latencies[(int) Math.min(REQUESTS - 1, REQUESTS * 0.99)] / 1_000_000.0);
+            }
+        }
+    }
+
+    private void fire(HttpClient client, int port, List<String> paths, int requests,
+                      long[] latencies, AtomicInteger errors) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests; i++) {
+                int index = i;
+                inFlight.acquire();
+                executor.submit(() -> {
+                    HttpRequest request = HttpRequest.newBuilder(
+                            URI.create("http://localhost:" + port + paths.get(index % paths.size()))).GET().build();
+                    long started = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    } finally {
+                        latencies[index] = System.nanoTime() - started;
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+    }
+
+    private List<String> seed(ConfigurableApplicationContext app) {
+        SupplierRepository supplierRepository = app.getBean(SupplierRepository.class);
+        FruitRepository fruitRepository = app.getBean(FruitRepository.class);
+        List<Supplier> suppliers = supplierRepository.saveAll(IntStream.range(0, 20)
+                .mapToObj(i -> new Supplier(null, "LoadSupplier" + i, "Spain"))
+                .toList());
+        List<Fruit> fruits = fruitRepository.saveAll(IntStream.range(0, 2_000)
+                .mapToObj(i -> new Fruit(null, "LoadFruit" + i, i % 50 + 1, suppliers.get(i % suppliers.size())))
+                .toList());
+
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            paths.add("/fruits/" + fruits.get(i * 17 % fruits.size()).getId());
+            paths.add("/suppliers/" + suppliers.get(i % suppliers.size()).getId());
+            paths.add("/fruits?supplierId=" + suppliers.get(i % suppliers.size()).getId());
+            paths.add("/fruits?limit=50");
+        }
+        return paths;
+    }
+
+    private record Result(String mode, int errors, double throughput, double p50Millis, double p99Millis) {
+    }
+}
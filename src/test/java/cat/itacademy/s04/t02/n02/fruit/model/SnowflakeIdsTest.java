@@ -0,0 +1,65 @@
+package cat.itacademy.s04.t02.n02.fruit.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+class SnowflakeIdsTest {
+
+    private static final long NOW = SnowflakeIds.EPOCH + 1_000;
+
+    @Test
+    void nextId_packsTimestampNodeAndSequence() {
+        SnowflakeIds ids = new SnowflakeIds(5, () -> NOW);
+
+        long first = ids.nextId();
+        long second = ids.nextId();
+
+        assertThat(first >>> 22).isEqualTo(1_000);
+        assertThat((first >>> 12) & 1023).isEqualTo(5);
+        assertThat(first & 4095).isZero();
+        assertThat(second).isEqualTo(first + 1);
+    }
+
+    @Test
+    void nextId_keepsIncreasing_whenClockStepsBackOrSequenceOverflows() {
+        AtomicLong clock = new AtomicLong(NOW);
+        SnowflakeIds ids = new SnowflakeIds(1, clock::get);
+
+        long previous = ids.nextId();
+        for (int i = 0; i < 10_000; i++) {
+            if (i == 5_000) {
+                clock.addAndGet(-500);
+            }
+            long next = ids.nextId();
+            assertThat(next).isGreaterThan(previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    void differentNodes_neverShareIds() {
+        SnowflakeIds first = new SnowflakeIds(1, () -> NOW);
+        SnowflakeIds second = new SnowflakeIds(2, () -> NOW);
+
+        assertThat(first.nextId()).isNotEqualTo(second.nextId());
+    }
+
+    @Test
+    void constructor_rejectsNodeIdOutOfRange() {
+        assertThatThrownBy(() -> new SnowflakeIds(SnowflakeIds.MAX_NODE_ID + 1, () -> NOW))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Node id must be between 0 and 1023");
+    }
+
+    @Test
+    void maxIdAt_boundsEveryIdGeneratedUpToThatMillisecond() {
+        long id = new SnowflakeIds(SnowflakeIds.MAX_NODE_ID, () -> NOW).nextId();
+
+        assertThat(SnowflakeIds.timestampOf(id)).isEqualTo(NOW);
+        assertThat(SnowflakeIds.maxIdAt(NOW)).isGreaterThanOrEqualTo(id);
+        assertThat(SnowflakeIds.maxIdAt(NOW - 1)).isLessThan(id);
+    }
+}
@@ -0,0 +1,112 @@
+package cat.itacademy.s04.t02.n02.fruit.repository;
+
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class FruitRepositoryTest {
+
+    @Autowired
+    private FruitRepository fruitRepository;
+
+    @Autowired
+    private SupplierRepository supplierRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        fruitRepository.deleteAll();
+        supplierRepository.deleteAll();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 50})
+    void findAllDtos_issuesSingleStatement_regardlessOfSupplierCount(int suppliers) {
+        seed(suppliers, 2);
+        statistics.clear();
+
+        List<FruitResponseDTO> fruits = fruitRepository.findAllDtos();
+
+        assertThat(fruits).hasSize(suppliers * 2);
+        assertThat(fruits).allSatisfy(f -> assertThat(f.supplier().name()).startsWith("Supplier"));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 50})
+    void findDtoPageAfter_issuesSingleStatement_regardlessOfPageSize(int suppliers) {
+        seed(suppliers, 1);
+        statistics.clear();
+
+        List<FruitResponseDTO> page = fruitRepository.findDtoPageAfter(0L, Limit.of(suppliers));
+
+        assertThat(page).hasSize(suppliers);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void findDtosBySupplierId_issuesSingleStatement() {
+        List<Supplier> suppliers = seed(3, 20);
+        statistics.clear();
+
+        List<FruitResponseDTO> fruits = fruitRepository.findDtosBySupplierId(suppliers.get(1).getId());
+
+        assertThat(fruits).hasSize(20);
+        assertThat(fruits).allSatisfy(f -> assertThat(f.supplier().id()).isEqualTo(suppliers.get(1).getId()));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void reassignSupplier_bumpsVersionOfEveryMovedFruit() {
+        List<Supplier> suppliers = seed(2, 3);
+        Long movedId = fruitRepository.findDtosBySupplierId(suppliers.get(0).getId()).get(0).id();
+        long before = fruitRepository.findVersionById(movedId).orElseThrow();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                fruitRepository.reassignSupplier(suppliers.get(0), suppliers.get(1)));
+
+        assertThat(fruitRepository.findVersionById(movedId)).contains(before + 1);
+        assertThat(fruitRepository.findDtosBySupplierId(suppliers.get(1).getId())).hasSize(6);
+    }
+
+    private List<Supplier> seed(int suppliers, int fruitsPerSupplier) {
+        List<Supplier> saved = supplierRepository.saveAll(
+                IntStream.range(0, suppliers)
+                        .mapToObj(i -> new Supplier(null, "Supplier" + i, "Spain"))
+                        .toList());
+        for (Supplier supplier : saved) {
+            for (int i = 0; i < fruitsPerSupplier; i++) {
+                fruitRepository.save(new Fruit(null, "Fruit" + i, i + 1, supplier));
+            }
+        }
+        return saved;
+    }
+}
@@ -0,0 +1,161 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardRouter;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.events.FruitChangedEvent;
+import cat.itacademy.s04.t02.n02.fruit.events.SupplierChangedEvent;
+import cat.itacademy.s04.t02.n02.fruit.events.SupplierFruitsRemovedEvent;
+import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import cat.itacademy.s04.t02.n02.fruit.repository.SupplierRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CatalogSearchServiceImplTest {
+
+    @Mock
+    private FruitRepository fruitRepository;
+
+    @Mock
+    private SupplierRepository supplierRepository;
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter(1, mock(PlatformTransactionManager.class));
+
+    @InjectMocks
+    private CatalogSearchServiceImpl searchService;
+
+    private final SupplierResponseDTO freshFarm = new SupplierResponseDTO(1L, "FreshFarm", "Spain");
+    private final SupplierResponseDTO greenWorld = new SupplierResponseDTO(2L, "Green World", "Italy");
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(fruitRepository.findDtoPageAfter(eq(0L), any())).thenReturn(List.of(
+                new FruitResponseDTO(1L, "Banana", 5, freshFarm),
+                new FruitResponseDTO(2L, "Blood Orange", 3, freshFarm),
+                new FruitResponseDTO(3L, "Bananito", 1, greenWorld),
+                new FruitResponseDTO(4L, "Piña", 8, greenWorld)));
+        when(supplierRepository.findByIdGreaterThanOrderById(eq(0L), any())).thenReturn(List.of(
+                new Supplier(1L, "FreshFarm", "Spain"),
+                new Supplier(2L, "Green World", "Italy")));
+        searchService.rebuild();
+    }
+
+    @Test
+    void searchFruits_shouldMatchPrefixesCaseInsensitively_exactMatchesFirst() {
+        assertThat(searchService.searchFruits("BANAN", false, null, null, null, null))
+                .extracting(FruitResponseDTO::id).containsExactly(1L, 3L);
+        assertThat(searchService.searchFruits("bananit", true, null, null, null, null))
+                .extracting(FruitResponseDTO::id).containsExactly(3L, 1L);
+        assertThat(searchService.searchFruits("orange", false, null, null, null, null))
+                .extracting(FruitResponseDTO::id).containsExactly(2L);
+    }
+
+    @Test
+    void searchFruits_shouldIgnoreAccents() {
+        assertThat(searchService.searchFruits("pina", false, null, null, null, null))
+                .extracting(FruitResponseDTO::id).containsExactly(4L);
+    }
+
+    @Test
+    void searchFruits_shouldTolerateTyposOnlyWhenFuzzy() {
+        assertThat(searchService.searchFruits("bananna", false, null, null, null, null)).isEmpty();
+        assertThat(searchService.searchFruits("bananna", true, null, null, null, null))
+                .extracting(FruitResponseDTO::id).containsExactly(1L);
+    }
+
+    @Test
+    void searchFruits_shouldApplyWeightAndCountryFilters() {
+        assertThat(searchService.searchFruits("ban", false, 2, 10, null, null))
+                .extracting(FruitResponseDTO::id).containsExactly(1L);
+        assertThat(searchService.searchFruits("ban", false, null, null, "italy", null))
+                .extracting(FruitResponseDTO::id).containsExactly(3L);
+        assertThatThrownBy(() -> searchService.searchFruits("ban", false, 5, 1, null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void searchFruits_shouldRejectBlankQueries() {
+        assertThatThrownBy(() -> searchService.searchFruits(" ", false, null, null, null, null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Search query must not be blank");
+    }
+
+    @Test
+    void searchSuppliers_shouldRequireEveryTerm() {
+        assertThat(searchService.searchSuppliers("green wor", false, null, null))
+                .containsExactly(greenWorld);
+        assertThat(searchService.searchSuppliers("green farm", false, null, null)).isEmpty();
+    }
+
+    @Test
+    void events_shouldKeepTheIndexCurrentWithoutQuerying() {
+        searchService.onFruitChanged(FruitChangedEvent.created(new FruitResponseDTO(5L, "Mango", 2, freshFarm)));
+        searchService.onFruitChanged(FruitChangedEvent.deleted(new FruitResponseDTO(1L, "Banana", 5, freshFarm)));
+        SupplierResponseDTO renamed = new SupplierResponseDTO(1L, "FreshFarm", "Portugal");
+        searchService.onSupplierChanged(SupplierChangedEvent.updated(freshFarm, renamed));
+
+        assertThat(searchService.searchFruits("mango", false, null, null, "portugal", null))
+                .containsExactly(new FruitResponseDTO(5L, "Mango", 2, renamed));
+        assertThat(searchService.searchFruits("banan", false, null, null, null, null))
+                .extracting(FruitResponseDTO::id).containsExactly(3L);
+        verify(fruitRepository, times(1)).findDtoPageAfter(any(), any());
+    }
+
+    @Test
+    void onSupplierFruitsRemoved_shouldMoveOrDropTheSuppliersFruits() {
+        searchService.onSupplierFruitsRemoved(new SupplierFruitsRemovedEvent(greenWorld, freshFarm));
+        assertThat(searchService.searchFruits("pina", false, null, null, "spain", null)).hasSize(1);
+
+        searchService.onSupplierFruitsRemoved(new SupplierFruitsRemovedEvent(freshFarm, null));
+        assertThat(searchService.searchFruits("b", false, null, null, null, null)).isEmpty();
+    }
+
+    @Test
+    void onSupplierChanged_shouldLeaveFruitsMovedToAnotherSupplierAlone() {
+        searchService.onFruitChanged(FruitChangedEvent.updated(new FruitResponseDTO(1L, "Banana", 5, freshFarm),
+                new FruitResponseDTO(1L, "Banana", 5, greenWorld)));
+        searchService.onSupplierChanged(SupplierChangedEvent.updated(freshFarm,
+                new SupplierResponseDTO(1L, "FreshFarm", "Portugal")));
+
+        assertThat(searchService.searchFruits("banana", false, null, null, null, null))
+                .extracting(fruit -> fruit.supplier().name()).containsExactly("Green World");
+        assertThat(searchService.searchFruits("orange", false, null, null, "portugal", null)).hasSize(1);
+    }
+
+    @Test
+    void rebuild_shouldReadTheCatalogInKeysetPages() {
+        List<FruitResponseDTO> firstPage = LongStream.rangeClosed(1, CatalogSearchServiceImpl.REBUILD_PAGE_SIZE)
+                .mapToObj(id -> new FruitResponseDTO(id, "Fruit " + id, 1, freshFarm))
+                .toList();
+        long lastId = CatalogSearchServiceImpl.REBUILD_PAGE_SIZE;
+        when(fruitRepository.findDtoPageAfter(eq(0L), any())).thenReturn(firstPage);
+        when(fruitRepository.findDtoPageAfter(eq(lastId), any()))
+                .thenReturn(List.of(new FruitResponseDTO(lastId + 1, "Kiwi", 1, freshFarm)));
+
+        searchService.rebuild();
+
+        assertThat(searchService.searchFruits("kiwi", false, null, null, null, null)).hasSize(1);
+        verify(fruitRepository).findDtoPageAfter(eq(lastId), any());
+    }
+
+    @Test
+    void distance_shouldStopEarly_whenAboveTheBound() {
+        assertThat(NameIndex.distance("banana", "bananna", 2)).isEqualTo(1);
+        assertThat(NameIndex.distance("kiwi", "banana", 1)).isEqualTo(2);
+    }
+}
@@ -0,0 +1,89 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardRouter;
+import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class FruitExportServiceImplTest {
+
+    @Mock
+    private FruitRepository fruitRepository;
+    @Mock
+    private EntityManager entityManager;
+
+    private FruitExportServiceImpl exportService;
+    private Supplier supplier;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        exportService = new FruitExportServiceImpl(fruitRepository, entityManager, new ObjectMapper(),
+                new ShardRouter(1, mock(PlatformTransactionManager.class)));
+        supplier = new Supplier(1L, "FreshFarm", "Spain");
+    }
+
+    @Test
+    void exportFruits_shouldWriteOneJsonLinePerFruit_andDetachEachRow() throws Exception {
+        when(fruitRepository.streamAllWithSupplier()).thenReturn(fruits(3));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.exportFruits(FruitExportFormat.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(3);
+        assertThat(lines[0]).isEqualTo(
+                "{\"id\":1,\"name\":\"Fruit1\",\"weightInKilos\":1,\"supplier\":{\"id\":1,\"name\":\"FreshFarm\",\"country\":\"Spain\"}}");
+        verify(entityManager, times(3)).detach(any(Fruit.class));
+    }
+
+    @Test
+    void exportFruits_shouldWriteCsvHeaderAndEscapeQuotes() throws Exception {
+        when(fruitRepository.streamAllWithSupplier())
+                .thenReturn(Stream.of(new Fruit(7L, "Say \"hi\"", 2, supplier)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.exportFruits(FruitExportFormat.CSV, out);
+
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+                FruitExportServiceImpl.CSV_HEADER + "\n7,\"Say \"\"hi\"\"\",2,1,FreshFarm,Spain\n");
+    }
+
+    @Test
+    void exportFruits_shouldWriteNothing_whenCatalogIsEmpty() throws Exception {
+        when(fruitRepository.streamAllWithSupplier()).thenReturn(Stream.empty());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.exportFruits(FruitExportFormat.NDJSON, out);
+
+        assertThat(out.size()).isZero();
+    }
+
+    @Test
+    void from_shouldRejectUnknownFormat() {
+        assertThatThrownBy(() -> FruitExportFormat.from("xml"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Unsupported export format: xml");
+    }
+
+    private Stream<Fruit> fruits(int count) {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(i -> new Fruit((long) i, "Fruit" + i, i, supplier));
+    }
+}
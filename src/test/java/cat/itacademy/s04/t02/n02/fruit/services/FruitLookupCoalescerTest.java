@@ -0,0 +1,97 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardRouter;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class FruitLookupCoalescerTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final FruitRepository fruitRepository = mock(FruitRepository.class);
+    private final ShardRouter shardRouter = new ShardRouter(1, mock(PlatformTransactionManager.class));
+    private final SupplierResponseDTO supplier = new SupplierResponseDTO(1L, "FreshFarm", "Spain");
+    private FruitLookupCoalescer coalescer;
+
+    @AfterEach
+    void tearDown() {
+        coalescer.shutdown();
+    }
+
+    @Test
+    void lookup_shouldMergeConcurrentIdsIntoOneQuery() {
+        coalescer = new FruitLookupCoalescer(fruitRepository, shardRouter, Duration.ofMillis(50), 100, TIMEOUT);
+        FruitResponseDTO banana = new FruitResponseDTO(1L, "Banana", 5, supplier);
+        when(fruitRepository.findDtosByIdIn(anyCollection())).thenReturn(List.of(banana));
+
+        CompletableFuture<Optional<FruitResponseDTO>> first = coalescer.lookup(1L);
+        CompletableFuture<Optional<FruitResponseDTO>> duplicate = coalescer.lookup(1L);
+        CompletableFuture<Optional<FruitResponseDTO>> missing = coalescer.lookup(2L);
+
+        assertThat(first.join()).contains(banana);
+        assertThat(duplicate).isSameAs(first);
+        assertThat(missing.join()).isEmpty();
+        verify(fruitRepository, times(1)).findDtosByIdIn(argThat((Collection<Long> ids) -> Set.copyOf(ids).equals(Set.of(1L, 2L))));
+    }
+
+    @Test
+    void lookup_shouldFlushImmediately_whenBatchIsFull() {
+        coalescer = new FruitLookupCoalescer(fruitRepository, shardRouter, Duration.ofMinutes(1), 2, TIMEOUT);
+        when(fruitRepository.findDtosByIdIn(anyCollection())).thenReturn(List.of());
+
+        CompletableFuture<Optional<FruitResponseDTO>> first = coalescer.lookup(1L);
+        CompletableFuture<Optional<FruitResponseDTO>> second = coalescer.lookup(2L);
+
+        assertThat(first.orTimeout(5, TimeUnit.SECONDS).join()).isEmpty();
+        assertThat(second.join()).isEmpty();
+    }
+
+    @Test
+    void lookup_shouldFailEveryWaiter_whenQueryFails() {
+        coalescer = new FruitLookupCoalescer(fruitRepository, shardRouter, Duration.ofMillis(10), 100, TIMEOUT);
+        when(fruitRepository.findDtosByIdIn(anyCollection())).thenThrow(new IllegalStateException("boom"));
+
+        CompletableFuture<Optional<FruitResponseDTO>> lookup = coalescer.lookup(1L);
+
+        assertThatThrownBy(lookup::join)
+                .isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void find_shouldGiveUp_whenQueryTakesLongerThanTimeout() {
+        coalescer = new FruitLookupCoalescer(fruitRepository, shardRouter, Duration.ofMillis(10), 100,
+                Duration.ofMillis(50));
+        when(fruitRepository.findDtosByIdIn(anyCollection())).thenAnswer(invocation -> {
+            Thread.sleep(1000);
+            return List.of();
+        });
+
+        assertThatThrownBy(() -> coalescer.find(1L)).isInstanceOf(QueryTimeoutException.class);
+    }
+
+    @Test
+    void isEnabled_shouldBeFalse_whenWindowIsZero() {
+        coalescer = new FruitLookupCoalescer(fruitRepository, shardRouter, Duration.ZERO, 100, TIMEOUT);
+
+        assertThat(coalescer.isEnabled()).isFalse();
+    }
+}
@@ -1,7 +1,13 @@
 package cat.itacademy.s04.t02.n02.fruit.services;
 
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardRouter;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitLookupDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitPageDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.FruitRequestDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.events.FruitChangedEvent;
+import cat.itacademy.s04.t02.n02.fruit.exception.PreconditionFailedException;
 import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
 import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
 import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
@@ -12,9 +18,14 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -26,10 +37,20 @@ class FruitServiceImplTest {
     private FruitRepository fruitRepository;
     @Mock
     private SupplierRepository supplierRepository;
+    @Mock
+    private SupplierService supplierService;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private FruitLookupCoalescer lookupCoalescer;
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter(1, mock(PlatformTransactionManager.class));
+
     @InjectMocks
     private FruitServiceImpl fruitService;
 
     private Supplier supplier;
+    private SupplierResponseDTO supplierDto;
     private Fruit fruit;
 
     @BeforeEach
@@ -39,6 +60,7 @@ class FruitServiceImplTest {
         supplier.setId(1L);
         supplier.setName("FreshFarm");
         supplier.setCountry("Spain");
+        supplierDto = new SupplierResponseDTO(1L, "FreshFarm", "Spain");
 
         fruit = new Fruit();
         fruit.setId(1L);
@@ -50,20 +72,23 @@ class FruitServiceImplTest {
     @Test
     void addFruit_shouldSaveAndReturnDTO_whenSupplierExists() {
         FruitRequestDTO request = new FruitRequestDTO("Banana", 5, 1L);
-        when(supplierRepository.findById(1L)).thenReturn(Optional.of(supplier));
+        when(supplierService.findSupplierById(1L)).thenReturn(Optional.of(supplierDto));
+        when(supplierRepository.getReferenceById(1L)).thenReturn(supplier);
         when(fruitRepository.save(any(Fruit.class))).thenReturn(fruit);
 
         FruitResponseDTO result = fruitService.addFruit(request);
 
         assertThat(result.name()).isEqualTo("Banana");
         assertThat(result.weightInKilos()).isEqualTo(5);
+        assertThat(result.supplier()).isEqualTo(supplierDto);
         verify(fruitRepository, times(1)).save(any(Fruit.class));
+        verify(supplierRepository, never()).findById(any());
     }
 
     @Test
     void addFruit_shouldThrow_whenSupplierNotFound() {
         FruitRequestDTO request = new FruitRequestDTO("Banana", 5, 99L);
-        when(supplierRepository.findById(99L)).thenReturn(Optional.empty());
+        when(supplierService.findSupplierById(99L)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> fruitService.addFruit(request))
                 .isInstanceOf(EntityNotFoundException.class)
@@ -87,10 +112,91 @@ class FruitServiceImplTest {
                 .isInstanceOf(EntityNotFoundException.class);
     }
 
+    @Test
+    void getFruitById_shouldUseCoalescer_whenEnabled() {
+        FruitResponseDTO dto = new FruitResponseDTO(1L, "Banana", 5, supplierDto);
+        when(lookupCoalescer.isEnabled()).thenReturn(true);
+        when(lookupCoalescer.find(1L)).thenReturn(Optional.of(dto));
+        when(lookupCoalescer.find(2L)).thenReturn(Optional.empty());
+
+        assertThat(fruitService.getFruitById(1L)).isEqualTo(dto);
+        assertThatThrownBy(() -> fruitService.getFruitById(2L)).isInstanceOf(EntityNotFoundException.class);
+        verify(fruitRepository, never()).findById(any());
+    }
+
+    @Test
+    void getFruitsByIds_shouldKeepRequestOrderAndMarkMissingIds() {
+        FruitResponseDTO banana = new FruitResponseDTO(1L, "Banana", 5, supplierDto);
+        FruitResponseDTO apple = new FruitResponseDTO(3L, "Apple", 2, supplierDto);
+        when(fruitRepository.findDtosByIdIn(List.of(3L, 2L, 1L))).thenReturn(List.of(banana, apple));
+
+        List<FruitLookupDTO> result = fruitService.getFruitsByIds(List.of(3L, 2L, 1L, 3L));
+
+        assertThat(result).containsExactly(
+                new FruitLookupDTO(3L, 200, apple),
+                new FruitLookupDTO(2L, 404, null),
+                new FruitLookupDTO(1L, 200, banana),
+                new FruitLookupDTO(3L, 200, apple));
+    }
+
+    @Test
+    void getFruitsByIds_shouldQueryInChunks() {
+        List<Long> ids = LongStream.rangeClosed(1, Lookups.CHUNK_SIZE + 1).boxed().toList();
+
+        fruitService.getFruitsByIds(ids);
+
+        verify(fruitRepository).findDtosByIdIn(ids.subList(0, Lookups.CHUNK_SIZE));
+        verify(fruitRepository).findDtosByIdIn(List.of((long) Lookups.CHUNK_SIZE + 1));
+    }
+
+    @Test
+    void getFruitsByIds_shouldThrow_whenTooManyIds() {
+        List<Long> ids = LongStream.rangeClosed(1, Lookups.MAX_IDS + 1).boxed().toList();
+
+        assertThatThrownBy(() -> fruitService.getFruitsByIds(ids))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(fruitRepository);
+    }
+
+    @Test
+    void getFruitsPage_shouldCapLimitAndReturnNextCursor_whenMoreRowsExist() {
+        FruitResponseDTO first = new FruitResponseDTO(1L, "Banana", 5, 1L, "FreshFarm", "Spain");
+        FruitResponseDTO next = new FruitResponseDTO(2L, "Apple", 3, 1L, "FreshFarm", "Spain");
+        when(fruitRepository.findDtoPageAfter(0L, Limit.of(2))).thenReturn(List.of(first, next));
+
+        FruitPageDTO page = fruitService.getFruitsPage(null, 1);
+
+        assertThat(page.fruits()).hasSize(1);
+        assertThat(page.nextCursor()).isNotNull();
+
+        when(fruitRepository.findDtoPageAfter(1L, Limit.of(2))).thenReturn(List.of(next));
+        FruitPageDTO second = fruitService.getFruitsPage(page.nextCursor(), 1);
+
+        assertThat(second.fruits()).extracting(FruitResponseDTO::name).containsExactly("Apple");
+        assertThat(second.nextCursor()).isNull();
+    }
+
+    @Test
+    void getFruitsPage_shouldNeverExceedMaxPageSize() {
+        when(fruitRepository.findDtoPageAfter(0L, Limit.of(FruitServiceImpl.MAX_PAGE_SIZE + 1)))
+                .thenReturn(List.of());
+
+        fruitService.getFruitsPage(null, 1_000_000);
+
+        verify(fruitRepository).findDtoPageAfter(0L, Limit.of(FruitServiceImpl.MAX_PAGE_SIZE + 1));
+    }
+
+    @Test
+    void getFruitsPage_shouldThrow_whenCursorIsInvalid() {
+        assertThatThrownBy(() -> fruitService.getFruitsPage("%%%", 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
     @Test
     void getFruitsBySupplierId_shouldReturnList_whenSupplierExists() {
-        when(supplierRepository.existsById(1L)).thenReturn(true);
-        when(fruitRepository.findBySupplierId(1L)).thenReturn(List.of(fruit));
+        when(supplierService.findSupplierById(1L)).thenReturn(Optional.of(supplierDto));
+        when(fruitRepository.findDtosBySupplierId(1L))
+                .thenReturn(List.of(new FruitResponseDTO(1L, "Banana", 5, 1L, "FreshFarm", "Spain")));
 
         List<FruitResponseDTO> list = fruitService.getFruitsBySupplierId(1L);
 
@@ -100,7 +206,7 @@ class FruitServiceImplTest {
 
     @Test
     void getFruitsBySupplierId_shouldThrow_whenSupplierNotFound() {
-        when(supplierRepository.existsById(2L)).thenReturn(false);
+        when(supplierService.findSupplierById(2L)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> fruitService.getFruitsBySupplierId(2L))
                 .isInstanceOf(EntityNotFoundException.class);
@@ -110,7 +216,8 @@ class FruitServiceImplTest {
     void updateFruit_shouldUpdateAndReturnDTO_whenFound() {
         FruitRequestDTO request = new FruitRequestDTO("Apple", 10, 1L);
         when(fruitRepository.findById(1L)).thenReturn(Optional.of(fruit));
-        when(supplierRepository.findById(1L)).thenReturn(Optional.of(supplier));
+        when(supplierService.findSupplierById(1L)).thenReturn(Optional.of(supplierDto));
+        when(supplierRepository.getReferenceById(1L)).thenReturn(supplier);
         when(fruitRepository.save(any(Fruit.class))).thenReturn(fruit);
 
         FruitResponseDTO result = fruitService.updateFruit(1L, request);
@@ -119,6 +226,31 @@ class FruitServiceImplTest {
         verify(fruitRepository, times(1)).save(any(Fruit.class));
     }
 
+    @Test
+    void updateFruit_shouldPublishBeforeAndAfterSnapshots() {
+        FruitRequestDTO request = new FruitRequestDTO("Apple", 10, null);
+        when(fruitRepository.findById(1L)).thenReturn(Optional.of(fruit));
+        when(supplierService.findSupplierById(1L)).thenReturn(Optional.of(supplierDto));
+        when(fruitRepository.save(any(Fruit.class))).thenReturn(fruit);
+
+        fruitService.updateFruit(1L, request);
+
+        verify(eventPublisher).publishEvent(FruitChangedEvent.updated(
+                new FruitResponseDTO(1L, "Banana", 5, supplierDto),
+                new FruitResponseDTO(1L, "Apple", 10, supplierDto)));
+    }
+
+    @Test
+    void updateFruit_shouldThrow_whenExpectedVersionIsStale() {
+        fruit.setVersion(3);
+        when(fruitRepository.findById(1L)).thenReturn(Optional.of(fruit));
+
+        assertThatThrownBy(() -> fruitService.updateFruit(1L, new FruitRequestDTO("Apple", 10, null), 2L))
+                .isInstanceOf(PreconditionFailedException.class);
+        verify(fruitRepository, never()).save(any(Fruit.class));
+        verifyNoInteractions(eventPublisher);
+    }
+
     @Test
     void deleteFruit_shouldRemove_whenExists() {
         when(fruitRepository.findById(1L)).thenReturn(Optional.of(fruit));
@@ -126,6 +258,8 @@ class FruitServiceImplTest {
         fruitService.deleteFruit(1L);
 
         verify(fruitRepository, times(1)).delete(fruit);
+        verify(eventPublisher).publishEvent(FruitChangedEvent.deleted(
+                new FruitResponseDTO(1L, "Banana", 5, 1L, "FreshFarm", "Spain")));
     }
 
     @Test
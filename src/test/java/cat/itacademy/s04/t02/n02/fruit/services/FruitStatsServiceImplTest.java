@@ -0,0 +1,124 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardRouter;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitStatsDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.FruitStatsGroupDTO;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
+import cat.itacademy.s04.t02.n02.fruit.events.FruitChangedEvent;
+import cat.itacademy.s04.t02.n02.fruit.events.SupplierFruitsRemovedEvent;
+import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class FruitStatsServiceImplTest {
+
+    @Mock
+    private FruitRepository fruitRepository;
+
+    private FruitStatsServiceImpl statsService;
+
+    private final SupplierResponseDTO freshFarm = new SupplierResponseDTO(1L, "FreshFarm", "Spain");
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(fruitRepository.findStatsBySupplier()).thenReturn(List.of(
+                new FruitStatsGroupDTO("FreshFarm", 3, 13, 3, 5),
+                new FruitStatsGroupDTO("GreenWorld", 1, 8, 8, 8)));
+        when(fruitRepository.findStatsByCountry()).thenReturn(List.of(
+                new FruitStatsGroupDTO("Spain", 3, 13, 3, 5),
+                new FruitStatsGroupDTO("Italy", 1, 8, 8, 8)));
+        when(fruitRepository.findStatsByName()).thenReturn(List.of(
+                new FruitStatsGroupDTO("Banana", 3, 18, 5, 8),
+                new FruitStatsGroupDTO("Apple", 1, 3, 3, 3)));
+        statsService = statsService(1, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void getStats_shouldReturnTheGroupsSortedByName_andQueryOnlyOnce() {
+        statsService.getStats();
+        FruitStatsDTO stats = statsService.getStats();
+
+        assertThat(stats.bySupplier()).containsExactly(
+                new FruitStatsGroupDTO("FreshFarm", 3, 13, 3, 5),
+                new FruitStatsGroupDTO("GreenWorld", 1, 8, 8, 8));
+        assertThat(stats.byCountry()).containsExactly(
+                new FruitStatsGroupDTO("Italy", 1, 8, 8, 8),
+                new FruitStatsGroupDTO("Spain", 3, 13, 3, 5));
+        assertThat(stats.byName()).containsExactly(
+                new FruitStatsGroupDTO("Apple", 1, 3, 3, 3),
+                new FruitStatsGroupDTO("Banana", 3, 18, 5, 8));
+        verify(fruitRepository, times(1)).findStatsBySupplier();
+    }
+
+    @Test
+    void getStats_shouldMergeGroupsThatSpanShards() {
+        when(fruitRepository.findStatsByName())
+                .thenReturn(List.of(new FruitStatsGroupDTO("Banana", 2, 10, 5, 5)))
+                .thenReturn(List.of(new FruitStatsGroupDTO("Banana", 1, 8, 8, 8)));
+
+        FruitStatsDTO stats = statsService(2, Duration.ofMinutes(1)).getStats();
+
+        assertThat(stats.byName()).containsExactly(new FruitStatsGroupDTO("Banana", 3, 18, 5, 8));
+    }
+
+    @Test
+    void getStats_shouldQueryAgain_afterAChangeCommits() {
+        statsService.getStats();
+
+        statsService.onFruitChanged(FruitChangedEvent.created(new FruitResponseDTO(10L, "Apple", 20, freshFarm)));
+        statsService.getStats();
+        statsService.onSupplierFruitsRemoved(new SupplierFruitsRemovedEvent(freshFarm, null));
+        statsService.getStats();
+
+        verify(fruitRepository, times(3)).findStatsBySupplier();
+    }
+
+    @Test
+    void getStats_shouldQueryAgain_whenAChangeCommittedWhileTheyWereComputed() {
+        when(fruitRepository.findStatsByName()).thenAnswer(invocation -> {
+            statsService.onFruitChanged(FruitChangedEvent.created(new FruitResponseDTO(10L, "Apple", 20, freshFarm)));
+            return List.of();
+        }).thenReturn(List.of());
+
+        statsService.getStats();
+        statsService.getStats();
+        statsService.getStats();
+
+        verify(fruitRepository, times(2)).findStatsBySupplier();
+    }
+
+    @Test
+    void getStats_shouldQueryAgain_whenOlderThanMaxAge() {
+        FruitStatsServiceImpl alwaysStale = statsService(1, Duration.ZERO);
+
+        alwaysStale.getStats();
+        alwaysStale.getStats();
+
+        verify(fruitRepository, times(2)).findStatsBySupplier();
+    }
+
+    @Test
+    void rebuild_shouldQueryEvenWhenTheStatsAreFresh() {
+        statsService.getStats();
+
+        statsService.rebuild();
+
+        verify(fruitRepository, times(2)).findStatsBySupplier();
+    }
+
+    private FruitStatsServiceImpl statsService(int shards, Duration maxAge) {
+        return new FruitStatsServiceImpl(fruitRepository, new ShardRouter(shards, mock(PlatformTransactionManager.class)),
+                maxAge);
+    }
+}
@@ -1,17 +1,32 @@
 package cat.itacademy.s04.t02.n02.fruit.services;
 
+import cat.itacademy.s04.t02.n02.fruit.datasource.ShardRouter;
 import cat.itacademy.s04.t02.n02.fruit.dto.SupplierRequestDTO;
 import cat.itacademy.s04.t02.n02.fruit.dto.SupplierResponseDTO;
-import cat.itacademy.s04.t02.n02.fruit.model.Fruit;
+import cat.itacademy.s04.t02.n02.fruit.dto.SupplierUpsertDTO;
+import cat.itacademy.s04.t02.n02.fruit.events.SupplierChangedEvent;
+import cat.itacademy.s04.t02.n02.fruit.events.SupplierFruitsRemovedEvent;
+import cat.itacademy.s04.t02.n02.fruit.exception.ConflictException;
 import cat.itacademy.s04.t02.n02.fruit.model.Supplier;
 import cat.itacademy.s04.t02.n02.fruit.repository.FruitRepository;
 import cat.itacademy.s04.t02.n02.fruit.repository.SupplierRepository;
+import cat.itacademy.s04.t02.n02.fruit.repository.SupplierUpsertRepository;
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 import java.util.Optional;
@@ -28,6 +43,18 @@ class SupplierServiceImplTest {
     @Mock
     private FruitRepository fruitRepository;
 
+    @Spy
+    private CacheManager cacheManager = new ConcurrentMapCacheManager();
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private ChangeFeedService changeFeedService;
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter(1, mock(PlatformTransactionManager.class));
+
     @InjectMocks
     private SupplierServiceImpl supplierService;
 
@@ -43,26 +70,26 @@ class SupplierServiceImplTest {
     void addSupplier_shouldSaveAndReturnDTO_whenNameIsUnique() {
         SupplierRequestDTO request = new SupplierRequestDTO("GreenGrow", "Italy");
 
-        when(supplierRepository.existsByName("GreenGrow")).thenReturn(false);
-        when(supplierRepository.save(any(Supplier.class))).thenReturn(supplier);
+        when(supplierRepository.saveAndFlush(any(Supplier.class))).thenReturn(supplier);
 
         SupplierResponseDTO result = supplierService.addSupplier(request);
 
         assertThat(result.name()).isEqualTo("FreshFarm");
         assertThat(result.country()).isEqualTo("Spain");
-        verify(supplierRepository, times(1)).save(any(Supplier.class));
+        verify(supplierRepository, times(1)).saveAndFlush(any(Supplier.class));
     }
 
     @Test
-    void addSupplier_shouldThrow_whenNameAlreadyExists() {
+    void addSupplier_shouldThrowConflict_whenNameAlreadyExists() {
         SupplierRequestDTO request = new SupplierRequestDTO("FreshFarm", "Spain");
-        when(supplierRepository.existsByName("FreshFarm")).thenReturn(true);
+        when(supplierRepository.saveAndFlush(any(Supplier.class)))
+                .thenThrow(new DuplicateKeyException("uk_suppliers_normalized_name"));
 
         assertThatThrownBy(() -> supplierService.addSupplier(request))
-                .isInstanceOf(IllegalArgumentException.class)
+                .isInstanceOf(ConflictException.class)
                 .hasMessage("Supplier name already exists");
 
-        verify(supplierRepository, never()).save(any(Supplier.class));
+        verify(eventPublisher, never()).publishEvent(any());
     }
 
     @Test
@@ -115,13 +142,103 @@ class SupplierServiceImplTest {
         verify(supplierRepository, times(1)).findById(99L);
     }
 
+    @Test
+    void getSupplierById_shouldServeRepeatedLookupsFromCache() {
+        when(supplierRepository.findById(1L)).thenReturn(Optional.of(supplier));
+
+        supplierService.getSupplierById(1L);
+        supplierService.getSupplierById(1L);
+        supplierService.findSupplierById(1L);
+
+        verify(supplierRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    void findSupplierByName_shouldServeRepeatedLookupsFromCache() {
+        when(supplierRepository.findByNormalizedName("freshfarm")).thenReturn(Optional.of(supplier));
+
+        assertThat(supplierService.findSupplierByName("FreshFarm")).isPresent();
+        assertThat(supplierService.findSupplierByName(" freshFARM ")).isPresent();
+
+        verify(supplierRepository, times(1)).findByNormalizedName("freshfarm");
+    }
+
+    @Test
+    void addSupplier_shouldEvictCachedMissForNewSupplier() {
+        Supplier created = new Supplier(2L, "GreenGrow", "Italy");
+        when(supplierRepository.findByNormalizedName("greengrow")).thenReturn(Optional.empty())
+                .thenReturn(Optional.of(created));
+        when(supplierRepository.saveAndFlush(any(Supplier.class))).thenReturn(created);
+        assertThat(supplierService.findSupplierByName("GreenGrow")).isEmpty();
+
+        supplierService.addSupplier(new SupplierRequestDTO("GreenGrow", "Italy"));
+
+        assertThat(supplierService.findSupplierByName("GreenGrow")).isPresent();
+        verify(supplierRepository, times(2)).findByNormalizedName("greengrow");
+    }
+
+    @Test
+    void findSupplierById_shouldNotCacheMisses() {
+        when(supplierRepository.findById(2L)).thenReturn(Optional.empty());
+
+        assertThat(supplierService.findSupplierById(2L)).isEmpty();
+        assertThat(supplierService.findSupplierById(2L)).isEmpty();
+
+        verify(supplierRepository, times(2)).findById(2L);
+    }
+
+    @Test
+    void updateSupplier_shouldEvictOnlyAfterCommit() {
+        when(supplierRepository.findById(1L)).thenReturn(Optional.of(supplier));
+        supplierService.getSupplierById(1L);
+        when(supplierRepository.saveAndFlush(any(Supplier.class))).thenReturn(new Supplier(1L, "Renamed", "France"));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            supplierService.updateSupplier(1L, new SupplierRequestDTO("Renamed", "France"));
+            assertThat(cacheManager.getCache("suppliersById").get(1L)).isNotNull();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(cacheManager.getCache("suppliersById").get(1L)).isNull();
+    }
+
+    @Test
+    void updateSupplier_shouldEvictCachedEntries() {
+        when(supplierRepository.findById(1L)).thenReturn(Optional.of(supplier));
+        when(supplierRepository.findByNormalizedName(any())).thenReturn(Optional.empty());
+        supplierService.getSupplierById(1L);
+        supplierService.findSupplierByName("FreshFarm");
+
+        when(supplierRepository.saveAndFlush(any(Supplier.class))).thenReturn(new Supplier(1L, "Renamed", "France"));
+        supplierService.updateSupplier(1L, new SupplierRequestDTO("Renamed", "France"));
+        when(supplierRepository.findById(1L)).thenReturn(Optional.of(new Supplier(1L, "Renamed", "France")));
+
+        assertThat(supplierService.getSupplierById(1L).name()).isEqualTo("Renamed");
+        supplierService.findSupplierByName("FreshFarm");
+        verify(supplierRepository, times(2)).findByNormalizedName("freshfarm");
+    }
+
+    @Test
+    void deleteSupplier_shouldEvictCachedEntry() {
+        when(supplierRepository.findById(1L)).thenReturn(Optional.of(supplier));
+        when(fruitRepository.existsBySupplierId(1L)).thenReturn(false);
+        supplierService.getSupplierById(1L);
+
+        supplierService.deleteSupplier(1L);
+        when(supplierRepository.findById(1L)).thenReturn(Optional.empty());
+
+        assertThat(supplierService.findSupplierById(1L)).isEmpty();
+    }
+
     @Test
     void updateSupplier_shouldUpdateAndReturnDTO_whenSupplierExistsAndNameUnique() {
         SupplierRequestDTO request = new SupplierRequestDTO("FreshFarmUpdated", "France");
 
         when(supplierRepository.findById(1L)).thenReturn(Optional.of(supplier));
-        when(supplierRepository.existsByName("FreshFarmUpdated")).thenReturn(false);
-        when(supplierRepository.save(any(Supplier.class))).thenReturn(
+        when(supplierRepository.saveAndFlush(any(Supplier.class))).thenReturn(
                 new Supplier(1L, "FreshFarmUpdated", "France")
         );
 
@@ -129,7 +246,7 @@ class SupplierServiceImplTest {
 
         assertThat(result.name()).isEqualTo("FreshFarmUpdated");
         assertThat(result.country()).isEqualTo("France");
-        verify(supplierRepository, times(1)).save(any(Supplier.class));
+        verify(supplierRepository, times(1)).saveAndFlush(any(Supplier.class));
     }
 
     @Test
@@ -141,25 +258,68 @@ class SupplierServiceImplTest {
                 .isInstanceOf(EntityNotFoundException.class)
                 .hasMessageContaining("Supplier with id 99 not found");
 
-        verify(supplierRepository, never()).save(any(Supplier.class));
+        verify(supplierRepository, never()).saveAndFlush(any(Supplier.class));
     }
 
     @Test
-    void updateSupplier_shouldThrow_whenNameAlreadyExists() {
+    void updateSupplier_shouldThrowConflict_whenNameAlreadyExists() {
         SupplierRequestDTO request = new SupplierRequestDTO("ExistingName", "Spain");
 
         when(supplierRepository.findById(1L)).thenReturn(Optional.of(supplier));
-        when(supplierRepository.existsByName("ExistingName")).thenReturn(true);
+        when(supplierRepository.saveAndFlush(any(Supplier.class)))
+                .thenThrow(new DuplicateKeyException("uk_suppliers_normalized_name"));
 
         assertThatThrownBy(() -> supplierService.updateSupplier(1L, request))
-                .isInstanceOf(IllegalArgumentException.class)
+                .isInstanceOf(ConflictException.class)
                 .hasMessage("Supplier name already exists");
     }
 
+    @Test
+    void updateSupplier_shouldRethrow_whenIntegrityViolationIsNotAboutTheName() {
+        when(supplierRepository.findById(1L)).thenReturn(Optional.of(supplier));
+        when(supplierRepository.saveAndFlush(any(Supplier.class)))
+                .thenThrow(new DataIntegrityViolationException("Value too long for column \"COUNTRY\""));
+
+        assertThatThrownBy(() -> supplierService.updateSupplier(1L, new SupplierRequestDTO("FreshFarm", "Spain")))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    void upsertSupplierByName_shouldPublishCreated_whenNameIsNew() {
+        when(supplierRepository.upsertByName("GreenGrow", "Italy")).thenReturn(new SupplierUpsertRepository.Upserted(2L, true));
+
+        SupplierResponseDTO result = supplierService.upsertSupplierByName(" GreenGrow ", new SupplierUpsertDTO("Italy"));
+
+        assertThat(result).isEqualTo(new SupplierResponseDTO(2L, "GreenGrow", "Italy"));
+        verify(eventPublisher).publishEvent(SupplierChangedEvent.created(result));
+    }
+
+    @Test
+    void upsertSupplierByName_shouldPublishUpsertedAndEvictName_whenNameMatchesIgnoringCase() {
+        when(supplierRepository.findByNormalizedName("freshfarm")).thenReturn(Optional.of(supplier));
+        supplierService.findSupplierByName("FreshFarm");
+        when(supplierRepository.upsertByName("FRESHFARM", "France")).thenReturn(new SupplierUpsertRepository.Upserted(1L, false));
+
+        SupplierResponseDTO result = supplierService.upsertSupplierByName("FRESHFARM", new SupplierUpsertDTO("France"));
+
+        verify(eventPublisher).publishEvent(SupplierChangedEvent.upserted(result));
+        supplierService.findSupplierByName("FreshFarm");
+        verify(supplierRepository, times(2)).findByNormalizedName("freshfarm");
+    }
+
+    @Test
+    void upsertSupplierByName_shouldThrow_whenNameIsBlank() {
+        assertThatThrownBy(() -> supplierService.upsertSupplierByName("  ", new SupplierUpsertDTO("Spain")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Supplier name cannot be blank");
+
+        verify(supplierRepository, never()).upsertByName(any(), any());
+    }
+
     @Test
     void deleteSupplier_shouldDelete_whenSupplierExistsAndHasNoFruits() {
         when(supplierRepository.findById(1L)).thenReturn(Optional.of(supplier));
-        when(fruitRepository.findBySupplierId(1L)).thenReturn(List.of());
+        when(fruitRepository.existsBySupplierId(1L)).thenReturn(false);
 
         supplierService.deleteSupplier(1L);
 
@@ -180,7 +340,7 @@ class SupplierServiceImplTest {
     @Test
     void deleteSupplier_shouldThrow_whenHasAssociatedFruits() {
         when(supplierRepository.findById(1L)).thenReturn(Optional.of(supplier));
-        when(fruitRepository.findBySupplierId(1L)).thenReturn(List.of(new Fruit()));
+        when(fruitRepository.existsBySupplierId(1L)).thenReturn(true);
 
         assertThatThrownBy(() -> supplierService.deleteSupplier(1L))
                 .isInstanceOf(IllegalStateException.class)
@@ -188,4 +348,72 @@ class SupplierServiceImplTest {
 
         verify(supplierRepository, never()).delete(any(Supplier.class));
     }
+
+    @Test
+    void deleteSupplier_shouldNeverLoadFruits_whenCheckingForAssociations() {
+        when(supplierRepository.findById(1L)).thenReturn(Optional.of(supplier));
+        when(fruitRepository.existsBySupplierId(1L)).thenReturn(false);
+
+        supplierService.deleteSupplier(1L);
+
+        verify(fruitRepository, never()).findBySupplierId(any());
+    }
+
+    @Test
+    void deleteSupplier_shouldDeleteFruitsInBulk_whenModeIsCascade() {
+        when(supplierRepository.findById(1L)).thenReturn(Optional.of(supplier));
+
+        supplierService.deleteSupplier(1L, SupplierDeleteMode.CASCADE, null);
+
+        InOrder inOrder = inOrder(changeFeedService, fruitRepository);
+        inOrder.verify(changeFeedService).recordSupplierFruitsRemoved(new SupplierResponseDTO(1L, "FreshFarm", "Spain"), null);
+        inOrder.verify(fruitRepository).deleteAllBySupplier(supplier);
+        verify(fruitRepository, never()).findDtosBySupplierId(any());
+        verify(fruitRepository, never()).existsBySupplierId(any());
+        verify(supplierRepository).delete(supplier);
+    }
+
+    @Test
+    void deleteSupplier_shouldMoveFruitsInBulk_whenModeIsReassign() {
+        Supplier target = new Supplier(2L, "GreenWorld", "Italy");
+        when(supplierRepository.findById(1L)).thenReturn(Optional.of(supplier));
+        when(supplierRepository.findById(2L)).thenReturn(Optional.of(target));
+
+        supplierService.deleteSupplier(1L, SupplierDeleteMode.REASSIGN, 2L);
+
+        InOrder inOrder = inOrder(changeFeedService, fruitRepository);
+        inOrder.verify(changeFeedService).recordSupplierFruitsRemoved(
+                new SupplierResponseDTO(1L, "FreshFarm", "Spain"), new SupplierResponseDTO(2L, "GreenWorld", "Italy"));
+        inOrder.verify(fruitRepository).reassignSupplier(supplier, target);
+        verify(supplierRepository).delete(supplier);
+        verify(eventPublisher).publishEvent(new SupplierFruitsRemovedEvent(
+                new SupplierResponseDTO(1L, "FreshFarm", "Spain"),
+                new SupplierResponseDTO(2L, "GreenWorld", "Italy")));
+        verify(eventPublisher).publishEvent(SupplierChangedEvent.deleted(
+                new SupplierResponseDTO(1L, "FreshFarm", "Spain")));
+    }
+
+    @Test
+    void deleteSupplier_shouldThrow_whenReassignTargetIsMissing() {
+        when(supplierRepository.findById(1L)).thenReturn(Optional.of(supplier));
+
+        assertThatThrownBy(() -> supplierService.deleteSupplier(1L, SupplierDeleteMode.REASSIGN, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> supplierService.deleteSupplier(1L, SupplierDeleteMode.REASSIGN, 1L))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        verify(supplierRepository, never()).delete(any(Supplier.class));
+    }
+
+    @Test
+    void deleteSupplier_shouldThrow_whenReassignTargetDoesNotExist() {
+        when(supplierRepository.findById(1L)).thenReturn(Optional.of(supplier));
+        when(supplierRepository.findById(99L)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> supplierService.deleteSupplier(1L, SupplierDeleteMode.REASSIGN, 99L))
+                .isInstanceOf(EntityNotFoundException.class)
+                .hasMessageContaining("Supplier with id 99 not found");
+
+        verify(fruitRepository, never()).reassignSupplier(any(), any());
+    }
 }
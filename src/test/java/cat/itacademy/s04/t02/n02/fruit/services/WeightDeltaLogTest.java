@@ -0,0 +1,72 @@
+package cat.itacademy.s04.t02.n02.fruit.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WeightDeltaLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recover_sumsDeltasLeftInLiveAndRotatedFiles() throws IOException {
+        Path path = dir.resolve("weights.log");
+        try (WeightDeltaLog log = new WeightDeltaLog(path, false)) {
+            assertThat(log.recover(token -> false)).isEmpty();
+            log.append(1L, 3);
+            log.append(2L, 5);
+            log.rotate();
+            log.append(1L, -1);
+        }
+
+        try (WeightDeltaLog log = new WeightDeltaLog(path, true)) {
+            assertThat(log.recover(token -> false)).isEqualTo(Map.of(1L, 2, 2L, 5));
+        }
+        assertThat(dir.resolve("weights.log.flushing")).doesNotExist();
+    }
+
+    @Test
+    void recover_skipsDeltasOfACommittedFlushAndTornLines() throws IOException {
+        Path path = dir.resolve("weights.log");
+        try (WeightDeltaLog log = new WeightDeltaLog(path, false)) {
+            log.recover(token -> false);
+            log.append(1L, 3);
+            log.rotate();
+            log.discardRotated();
+            log.append(2L, 4);
+        }
+        Files.writeString(path, "3 1", StandardOpenOption.APPEND);
+
+        try (WeightDeltaLog log = new WeightDeltaLog(path, false)) {
+            assertThat(log.recover(token -> false)).isEqualTo(Map.of(2L, 4));
+        }
+    }
+
+    @Test
+    void recover_skipsDeltasOfFruitsUnderACommittedToken_andReplaysTheRest() throws IOException {
+        Path path = dir.resolve("weights.log");
+        try (WeightDeltaLog log = new WeightDeltaLog(path, false)) {
+            log.recover(token -> false);
+            log.append(1L, 3);
+            log.append(2L, 5);
+            log.append(3L, 7);
+            log.rotate();
+            log.markApplied("committed", List.of(1L, 2L));
+            log.markApplied("rolled-back", List.of(3L));
+            log.append(1L, 1);
+        }
+
+        try (WeightDeltaLog log = new WeightDeltaLog(path, false)) {
+            assertThat(log.recover("committed"::equals)).isEqualTo(Map.of(1L, 1, 3L, 7));
+        }
+    }
+}
@@ -0,0 +1,9 @@
+-- Schema that ddl-auto=update created for the baseline entities (MySQL dialect), with some catalog data
+create table fruits (weight_in_kilos integer not null, id bigint not null auto_increment, supplier_id bigint not null, name varchar(255) not null, primary key (id)) engine=InnoDB;
+create table suppliers (id bigint not null auto_increment, country varchar(255) not null, name varchar(255) not null, primary key (id)) engine=InnoDB;
+alter table suppliers add constraint UKeegixpn11chp14nb25tl3ucv0 unique (name);
+alter table fruits add constraint FKa5unec4lcu978cgwuw5xjw0p9 foreign key (supplier_id) references suppliers (id);
+
+insert into suppliers (id, country, name) values (1, 'Spain', 'FreshFarm'), (2, 'Italy', 'GreenWorld'),
+    (3, 'Spain', 'freshFarm ');
+insert into fruits (weight_in_kilos, id, supplier_id, name) values (3, 1, 1, 'Apple'), (5, 2, 1, 'Pear'), (2, 3, 2, 'Kiwi');